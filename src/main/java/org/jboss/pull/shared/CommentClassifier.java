@@ -0,0 +1,243 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Recognises the processor and reviewer commands of a github comment in a single pass over its text. It gives the
+ * same answers as {@link Constants#PENDING}, {@link Constants#RUNNING}, {@link Constants#FINISHED},
+ * {@link Constants#MERGE}, {@link Constants#FORCE_MERGE} and {@link Constants#BUILD_OUTCOME}, but doesn't backtrack
+ * over long comments like the {@code .*}-wrapped patterns do.
+ *
+ * @author navssurtani
+ */
+public final class CommentClassifier {
+
+    public enum Command {
+        /** "Build ... merging ... has been triggered" */
+        PENDING,
+        /** "Build ... merging ... has been started" */
+        RUNNING,
+        /** "Build ... merging ... has been finished" */
+        FINISHED,
+        /** "merge this please" */
+        MERGE,
+        /** "force merge this" */
+        FORCE_MERGE,
+        /** "outcome was SUCCESS using a merge of ..." */
+        BUILD_OUTCOME
+    }
+
+    private static final String BUILD = "build";
+    private static final String MERGING = "merging";
+    private static final String OUTCOME = "outcome was ";
+    private static final String USING = " using a merge of ";
+    private static final String[] OUTCOMES = { "SUCCESS", "FAILURE", "ABORTED" };
+
+    private CommentClassifier() {
+    }
+
+    /**
+     * Classifies the comment body.
+     *
+     * @param body the comment body, may be null
+     * @return the classification, never null
+     */
+    public static Classification classify(CharSequence body) {
+        final Set<Command> commands = EnumSet.noneOf(Command.class);
+        if (body == null)
+            return new Classification(commands, null, null);
+
+        final int length = body.length();
+        // end of the first "build" and of the first "merging" after it, -1 until found
+        int buildEnd = -1;
+        int mergingEnd = -1;
+        String outcome = null;
+        String outcomeSha = null;
+        // like Matcher.find(), the search for a build outcome goes on after the end of the previous one
+        int outcomeFrom = 0;
+
+        for (int i = 0; i < length; i++) {
+            switch (lower(body.charAt(i))) {
+                case 'b':
+                    if (buildEnd < 0 && matchesAt(body, i, BUILD))
+                        buildEnd = i + BUILD.length();
+                    break;
+                case 'm':
+                    if (buildEnd >= 0 && i >= buildEnd && mergingEnd < 0 && matchesAt(body, i, MERGING))
+                        mergingEnd = i + MERGING.length();
+                    if (matchWords(body, i, "merge", "this", "please") > 0)
+                        commands.add(Command.MERGE);
+                    break;
+                case 'h':
+                    if (mergingEnd >= 0 && i >= mergingEnd) {
+                        if (matchWords(body, i, "has", "been", "triggered") > 0)
+                            commands.add(Command.PENDING);
+                        else if (matchWords(body, i, "has", "been", "started") > 0)
+                            commands.add(Command.RUNNING);
+                        else if (matchWords(body, i, "has", "been", "finished") > 0)
+                            commands.add(Command.FINISHED);
+                    }
+                    break;
+                case 'f':
+                    if (matchWords(body, i, "force", "merge", "this") > 0)
+                        commands.add(Command.FORCE_MERGE);
+                    break;
+                case 'o':
+                    final int[] match = i >= outcomeFrom ? matchOutcome(body, i) : null;
+                    if (match != null) {
+                        // the last one wins
+                        commands.add(Command.BUILD_OUTCOME);
+                        outcome = OUTCOMES[match[0]];
+                        outcomeSha = body.subSequence(match[1], match[2]).toString();
+                        outcomeFrom = match[2];
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return new Classification(commands, outcome, outcomeSha);
+    }
+
+    /**
+     * Matches {@code outcome was (\*\*)?+(SUCCESS|FAILURE|ABORTED)(\*\*)?+ using a merge of ([a-z0-9]+)}.
+     *
+     * @return index of the outcome, start and end of the sha, or null if it doesn't match
+     */
+    private static int[] matchOutcome(CharSequence body, int start) {
+        if (!matchesAt(body, start, OUTCOME))
+            return null;
+        int i = start + OUTCOME.length();
+        if (matchesAt(body, i, "**"))
+            i += 2;
+
+        int outcome = -1;
+        for (int o = 0; o < OUTCOMES.length; o++) {
+            if (matchesAt(body, i, OUTCOMES[o])) {
+                outcome = o;
+                break;
+            }
+        }
+        if (outcome < 0)
+            return null;
+        i += OUTCOMES[outcome].length();
+        if (matchesAt(body, i, "**"))
+            i += 2;
+
+        if (!matchesAt(body, i, USING))
+            return null;
+        i += USING.length();
+        final int shaStart = i;
+        while (i < body.length() && isAlphanumeric(body.charAt(i)))
+            i++;
+        return i > shaStart ? new int[] { outcome, shaStart, i } : null;
+    }
+
+    /**
+     * Matches the words separated by at least one non-word character, i.e. {@code word1\W+word2\W+...}.
+     *
+     * @return the end of the match, or -1 if it doesn't match
+     */
+    private static int matchWords(CharSequence body, int start, String... words) {
+        int i = start;
+        for (int w = 0; w < words.length; w++) {
+            if (w > 0) {
+                final int separatorStart = i;
+                while (i < body.length() && !isWordChar(body.charAt(i)))
+                    i++;
+                if (i == separatorStart)
+                    return -1;
+            }
+            if (!matchesAt(body, i, words[w]))
+                return -1;
+            i += words[w].length();
+        }
+        return i;
+    }
+
+    /**
+     * Case insensitive comparison of a region, for US-ASCII only like {@link java.util.regex.Pattern#CASE_INSENSITIVE}.
+     */
+    private static boolean matchesAt(CharSequence body, int start, String text) {
+        if (start + text.length() > body.length())
+            return false;
+        for (int j = 0; j < text.length(); j++) {
+            if (lower(body.charAt(start + j)) != lower(text.charAt(j)))
+                return false;
+        }
+        return true;
+    }
+
+    private static char lower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static boolean isAlphanumeric(char c) {
+        final char l = lower(c);
+        return (l >= 'a' && l <= 'z') || (c >= '0' && c <= '9');
+    }
+
+    private static boolean isWordChar(char c) {
+        return isAlphanumeric(c) || c == '_';
+    }
+
+    /**
+     * The commands found in a comment.
+     */
+    public static final class Classification {
+        private final Set<Command> commands;
+        private final String buildOutcome;
+        private final String buildSha;
+
+        private Classification(Set<Command> commands, String buildOutcome, String buildSha) {
+            this.commands = commands;
+            this.buildOutcome = buildOutcome;
+            this.buildSha = buildSha;
+        }
+
+        public boolean is(Command command) {
+            return commands.contains(command);
+        }
+
+        /**
+         * @return the outcome of the last build reported in the comment, in upper case, or null if there is none
+         */
+        public String getBuildOutcome() {
+            return buildOutcome;
+        }
+
+        /**
+         * @return the sha the last reported build merged, or null if there is none
+         */
+        public String getBuildSha() {
+            return buildSha;
+        }
+
+        @Override
+        public String toString() {
+            return "Classification[commands=" + commands + ", buildOutcome=" + buildOutcome + "]";
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Finds the bugzilla, jira and pull request links and the "no upstream required" marker of a pull request description
+ * in a single pass over its text. It recognises what {@link Constants#BUGZILLA_ID_PATTERN},
+ * {@link Constants#RELATED_JIRA_PATTERN}, {@link Constants#RELATED_PR_PATTERN} and
+ * {@link Constants#UPSTREAM_NOT_REQUIRED} do, except that every link of a line is found rather than just the last one
+ * the leading {@code .*} leaves, and without the backtracking of that {@code .*} on long descriptions.
+ *
+ * @author navssurtani
+ */
+public final class DescriptionScanner {
+
+    private static final String BUGZILLA = "bugzilla.redhat.com/show_bug.cgi?id=";
+    private static final String JIRA = "issues.jboss.org/browse/";
+    private static final String GITHUB = "github.com";
+    private static final String PULL = "/pull";
+    private static final String[] UPSTREAM_NOT_REQUIRED = { "no", "upstream", "required" };
+
+    private DescriptionScanner() {
+    }
+
+    /**
+     * Scans the description of a pull request.
+     *
+     * @param description the description, may be null
+     * @return the references found, never null
+     */
+    public static PullRequestReferences scan(CharSequence description) {
+        final Set<Integer> bugIds = new LinkedHashSet<Integer>();
+        final Set<String> jiraKeys = new LinkedHashSet<String>();
+        final Set<PullRequestReferences.RelatedPullRequest> related =
+                new LinkedHashSet<PullRequestReferences.RelatedPullRequest>();
+        boolean upstreamNotRequired = false;
+
+        final int length = description == null ? 0 : description.length();
+        // end of the first "github.com" of the current line, -1 until found
+        int githubEnd = -1;
+        // the words of the marker found so far on the current line, and where the next one may start
+        int upstreamWords = 0;
+        int upstreamFrom = 0;
+
+        for (int i = 0; i < length; i++) {
+            final char c = description.charAt(i);
+            if (isLineTerminator(c)) {
+                githubEnd = -1;
+                upstreamWords = 0;
+                continue;
+            }
+
+            if (!upstreamNotRequired && i >= upstreamFrom
+                    && matchesAt(description, i, UPSTREAM_NOT_REQUIRED[upstreamWords])) {
+                upstreamFrom = i + UPSTREAM_NOT_REQUIRED[upstreamWords].length();
+                upstreamNotRequired = ++upstreamWords == UPSTREAM_NOT_REQUIRED.length;
+            }
+
+            switch (lower(c)) {
+                case 'b':
+                    if (matchesAt(description, i, BUGZILLA)) {
+                        final int start = i + BUGZILLA.length();
+                        final int end = skipDigits(description, start);
+                        if (end > start) {
+                            try {
+                                bugIds.add(Integer.valueOf(description.subSequence(start, end).toString()));
+                            } catch (NumberFormatException ignore) {
+                                System.err.printf("Invalid bug number: %s.\n", ignore);
+                            }
+                        }
+                    }
+                    break;
+                case 'i':
+                    if (matchesAt(description, i, JIRA)) {
+                        final int start = i + JIRA.length();
+                        final int end = skipSegment(description, start);
+                        if (end > start)
+                            jiraKeys.add(description.subSequence(start, end).toString());
+                    }
+                    break;
+                case 'g':
+                    if (githubEnd < 0 && matchesAt(description, i, GITHUB))
+                        githubEnd = i + GITHUB.length();
+                    break;
+                case '/':
+                    if (githubEnd >= 0 && matchesAt(description, i, PULL)) {
+                        final PullRequestReferences.RelatedPullRequest pullRequest =
+                                relatedPullRequest(description, i, githubEnd);
+                        if (pullRequest != null)
+                            related.add(pullRequest);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return new PullRequestReferences(bugIds, jiraKeys, related, upstreamNotRequired);
+    }
+
+    /**
+     * Reads the "/organization/repository" before the "/pull" at {@code pull} and the number after "/pull/" or
+     * "/pulls/", as in "https://github.com/uselessorg/jboss-eap/pull/4".
+     *
+     * @return the pull request, or null if the link isn't complete
+     */
+    private static PullRequestReferences.RelatedPullRequest relatedPullRequest(CharSequence description, int pull,
+                                                                             int githubEnd) {
+        // the number: "pull" is followed by at most one character, then a slash and the digits
+        int numberStart = numberStart(description, pull + PULL.length() + 1);
+        if (numberStart < 0)
+            numberStart = numberStart(description, pull + PULL.length());
+        if (numberStart < 0)
+            return null;
+        final int numberEnd = skipDigits(description, numberStart);
+
+        // the repository and organization segments, each preceded by a slash after "github.com"
+        final int repositoryStart = segmentStart(description, pull);
+        final int organizationEnd = repositoryStart - 1;
+        if (organizationEnd < githubEnd || description.charAt(organizationEnd) != '/')
+            return null;
+        final int organizationStart = segmentStart(description, organizationEnd);
+        if (organizationStart - 1 < githubEnd || description.charAt(organizationStart - 1) != '/'
+                || organizationStart == organizationEnd || repositoryStart == pull)
+            return null;
+
+        try {
+            return new PullRequestReferences.RelatedPullRequest(
+                    description.subSequence(organizationStart, organizationEnd).toString(),
+                    description.subSequence(repositoryStart, pull).toString(),
+                    Integer.parseInt(description.subSequence(numberStart, numberEnd).toString()));
+        } catch (NumberFormatException ignore) {
+            System.err.printf("Invalid pull request number: %s.\n", ignore);
+            return null;
+        }
+    }
+
+    /**
+     * @return the start of the digits after the slash at {@code slash}, or -1 if there is no such slash or digit
+     */
+    private static int numberStart(CharSequence description, int slash) {
+        if (slash + 1 >= description.length() || description.charAt(slash) != '/'
+                || isLineTerminator(description.charAt(slash - 1)))
+            return -1;
+        final char c = description.charAt(slash + 1);
+        return c >= '0' && c <= '9' ? slash + 1 : -1;
+    }
+
+    /**
+     * @return the start of the run of segment characters ending at {@code end}
+     */
+    private static int segmentStart(CharSequence description, int end) {
+        int i = end;
+        while (i > 0 && isSegmentChar(description.charAt(i - 1)))
+            i--;
+        return i;
+    }
+
+    private static int skipSegment(CharSequence description, int start) {
+        int i = start;
+        while (i < description.length() && isSegmentChar(description.charAt(i)))
+            i++;
+        return i;
+    }
+
+    private static int skipDigits(CharSequence description, int start) {
+        int i = start;
+        while (i < description.length() && description.charAt(i) >= '0' && description.charAt(i) <= '9')
+            i++;
+        return i;
+    }
+
+    /**
+     * Case insensitive comparison of a region, for US-ASCII only like {@link java.util.regex.Pattern#CASE_INSENSITIVE}.
+     */
+    private static boolean matchesAt(CharSequence description, int start, String text) {
+        if (start + text.length() > description.length())
+            return false;
+        for (int j = 0; j < text.length(); j++) {
+            if (lower(description.charAt(start + j)) != lower(text.charAt(j)))
+                return false;
+        }
+        return true;
+    }
+
+    private static char lower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * The characters of {@code [a-zA-Z_0-9-]}, which the patterns allow in keys, organizations and repositories.
+     */
+    private static boolean isSegmentChar(char c) {
+        final char l = lower(c);
+        return (l >= 'a' && l <= 'z') || (c >= '0' && c <= '9') || c == '_' || c == '-';
+    }
+
+    /**
+     * The characters {@code .} doesn't match in a {@link java.util.regex.Pattern}.
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
@@ -25,17 +25,29 @@ import org.eclipse.egit.github.core.Comment;
 import org.eclipse.egit.github.core.Milestone;
 import org.eclipse.egit.github.core.PullRequest;
 import org.eclipse.egit.github.core.RepositoryBranch;
-import org.jboss.pull.shared.connectors.IssueHelper;
 import org.jboss.pull.shared.connectors.bugzilla.BZHelper;
+import org.jboss.pull.shared.connectors.DependencyIndex;
+import org.jboss.pull.shared.connectors.PullRequestIdentityMap;
 import org.jboss.pull.shared.connectors.RedhatPullRequest;
+import org.jboss.pull.shared.connectors.bugzilla.Bug;
+import org.jboss.pull.shared.connectors.common.Issue;
 import org.jboss.pull.shared.connectors.github.GithubHelper;
+import org.jboss.pull.shared.connectors.github.PullRequestCoordinates;
 import org.jboss.pull.shared.connectors.jira.JiraHelper;
+import org.jboss.pull.shared.connectors.jira.JiraIssue;
 import org.jboss.pull.shared.evaluators.PullEvaluatorFacade;
 import org.jboss.pull.shared.spi.PullEvaluator;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * A shared functionality regarding mergeable PRs, Github and Bugzilla.
@@ -45,15 +57,24 @@ import java.util.Properties;
  */
 public class PullHelper {
 
+    public static final String ISSUE_RESOLVER_THREADS_PROPERTY = "issue.resolver.threads";
+    private static final int DEFAULT_ISSUE_RESOLVER_THREADS = 4;
+
     // private final Properties props;
     private final PullEvaluatorFacade evaluatorFacade;
 
     private final UserList adminList;
 
+    // resolves the issues and related pull requests in the background, null if they are resolved on first access
+    private final ExecutorService issueResolver;
+
+    // the open pull requests by the bugs, jira issues and pull requests they reference
+    private final DependencyIndex dependencyIndex = new DependencyIndex();
+
     // ------- Specific Helpers
     private GithubHelper ghHelper;
-    private IssueHelper bzHelper;
-    private IssueHelper jiraHelper;
+    private BZHelper bzHelper;
+    private JiraHelper jiraHelper;
 
 
     private final Properties props;
@@ -75,6 +96,9 @@ public class PullHelper {
 
             adminList = UserList.loadUserList(Util.require(props, "admin.list.file"));
 
+            issueResolver = createIssueResolver(Integer.parseInt(Util.get(props, ISSUE_RESOLVER_THREADS_PROPERTY,
+                    String.valueOf(DEFAULT_ISSUE_RESOLVER_THREADS))));
+
         } catch (Exception e) {
             System.err.printf("Cannot initialize: %s\n", e);
             e.printStackTrace(System.err);
@@ -103,13 +127,102 @@ public class PullHelper {
 
         List<RedhatPullRequest> redhatPullRequests = new ArrayList<RedhatPullRequest>();
 
+        // resolve the bugs and jira issues of all the pull requests in bulk rather than one by one
+        final List<PullRequestReferences> references = new ArrayList<PullRequestReferences>(pullRequests.size());
+        for (PullRequest pullRequest : pullRequests) {
+            references.add(DescriptionScanner.scan(pullRequest.getBody()));
+        }
+        final Map<String, Issue> resolvedIssues = new HashMap<String, Issue>();
+        for (Bug bug : bzHelper.findBugs(getBugIds(references)).values()) {
+            resolvedIssues.put(bug.getUrl().toString(), bug);
+        }
+        final Set<String> jiraKeys = getJiraKeys(references);
+        final Map<String, JiraIssue> jiraIssues = jiraHelper.findIssues(jiraKeys);
+        for (String key : jiraKeys) {
+            JiraIssue jiraIssue = jiraIssues.get(key.toUpperCase());
+            if (jiraIssue != null)
+                resolvedIssues.put(Constants.JIRA_BASE_BROWSE + key, jiraIssue);
+        }
+
+        // the pull requests of this cycle, each upstream pull request is fetched once however many refer to it
+        final PullRequestIdentityMap identityMap = new PullRequestIdentityMap(bzHelper, jiraHelper, ghHelper,
+                issueResolver);
         for (PullRequest pullRequest : pullRequests) {
-            redhatPullRequests.add(new RedhatPullRequest(pullRequest, bzHelper, jiraHelper, ghHelper));
+            redhatPullRequests.add(identityMap.register(new RedhatPullRequest(pullRequest, bzHelper, jiraHelper,
+                    ghHelper, resolvedIssues, issueResolver, identityMap)));
         }
+        dependencyIndex.reindex(redhatPullRequests);
 
         return redhatPullRequests;
     }
 
+    /**
+     * Returns the index of the open pull requests as of the last {@link #getOpenPullRequests()}, kept up to date by
+     * {@link #getAffectedPullRequests(Collection)}.
+     */
+    public DependencyIndex getDependencyIndex() {
+        return dependencyIndex;
+    }
+
+    /**
+     * Fetches again the open pull requests affected by the changed bugs, jira issues or pull requests, so that they
+     * can be evaluated against the current state of what has changed. The changed bugs are dropped from the bug
+     * cache first, and pull requests which are not open any more are dropped from the index.
+     *
+     * @param changedKeys - keys of the changed bugs, jira issues and pull requests, see {@link DependencyIndex}
+     * @return the affected pull requests which are still open
+     */
+    public List<RedhatPullRequest> getAffectedPullRequests(Collection<String> changedKeys) {
+        for (String key : changedKeys) {
+            try {
+                bzHelper.getBugCache().invalidate(Integer.parseInt(key.trim()));
+            } catch (NumberFormatException ignore) {
+                // not a bug
+            }
+        }
+
+        final List<PullRequestCoordinates> coordinates = new ArrayList<PullRequestCoordinates>();
+        for (RedhatPullRequest pullRequest : dependencyIndex.getAffected(changedKeys)) {
+            coordinates.add(pullRequest.getCoordinates());
+        }
+
+        final PullRequestIdentityMap identityMap = new PullRequestIdentityMap(bzHelper, jiraHelper, ghHelper,
+                issueResolver);
+        final List<RedhatPullRequest> affected = new ArrayList<RedhatPullRequest>(coordinates.size());
+        for (RedhatPullRequest pullRequest : identityMap.getAll(coordinates)) {
+            if ("open".equals(pullRequest.getState())) {
+                dependencyIndex.index(pullRequest);
+                affected.add(pullRequest);
+            } else {
+                dependencyIndex.remove(pullRequest.getCoordinates());
+            }
+        }
+        return affected;
+    }
+
+    private static ExecutorService createIssueResolver(int threads) {
+        if (threads <= 0)
+            return null;
+
+        return Executors.newFixedThreadPool(threads, Util.daemonThreadFactory("issue-resolver"));
+    }
+
+    private Set<Integer> getBugIds(List<PullRequestReferences> references) {
+        final Set<Integer> ids = new LinkedHashSet<Integer>();
+        for (PullRequestReferences reference : references) {
+            ids.addAll(reference.getBugIds());
+        }
+        return ids;
+    }
+
+    private Set<String> getJiraKeys(List<PullRequestReferences> references) {
+        final Set<String> keys = new LinkedHashSet<String>();
+        for (PullRequestReferences reference : references) {
+            keys.addAll(reference.getJiraKeys());
+        }
+        return keys;
+    }
+
     public RedhatPullRequest getPullRequest(String organization, String repository, int id) {
         PullRequest pullRequest = ghHelper.getPullRequest(organization, repository, id);
         return new RedhatPullRequest(pullRequest, bzHelper, jiraHelper, ghHelper);
@@ -134,24 +247,26 @@ public class PullHelper {
 
         final List<Comment> comments = pullRequest.getGithubComments();
         for (Comment comment : comments) {
+            // one pass over the comment finds all the commands
+            final CommentClassifier.Classification classification = CommentClassifier.classify(comment.getBody());
             if (ghHelper.getGithubLogin().equals(comment.getUser().getLogin())) {
-                if (Constants.PENDING.matcher(comment.getBody()).matches()) {
+                if (classification.is(CommentClassifier.Command.PENDING)) {
                     result = ProcessorPullState.PENDING;
                     continue;
                 }
 
-                if (Constants.RUNNING.matcher(comment.getBody()).matches()) {
+                if (classification.is(CommentClassifier.Command.RUNNING)) {
                     result = ProcessorPullState.RUNNING;
                     continue;
                 }
 
-                if (Constants.FINISHED.matcher(comment.getBody()).matches()) {
+                if (classification.is(CommentClassifier.Command.FINISHED)) {
                     result = ProcessorPullState.FINISHED;
                     continue;
                 }
             }
 
-            if (Constants.MERGE.matcher(comment.getBody()).matches()) {
+            if (classification.is(CommentClassifier.Command.MERGE)) {
                 result = ProcessorPullState.MERGEABLE;
                 continue;
             }
@@ -159,14 +274,17 @@ public class PullHelper {
 
         if (result == ProcessorPullState.MERGEABLE || result == ProcessorPullState.NEW) {
             // check other conditions, i.e. upstream pull request and bugzilla and jira...
-            final PullEvaluator.Result mergeable = evaluatorFacade.isMergeable(pullRequest);
+            // only the outcome is needed, not why
+            final PullEvaluator.Result mergeable = evaluatorFacade.isMergeable(pullRequest,
+                    PullEvaluator.Mode.FAST_FAIL);
             if (!mergeable.isMergeable()) {
                 result = ProcessorPullState.INCOMPLETE;
             }
 
             if (result == ProcessorPullState.INCOMPLETE && !comments.isEmpty()) {
                 Comment lastComment = comments.get(comments.size() - 1);
-                if (Constants.FORCE_MERGE.matcher(lastComment.getBody()).matches() && isAdminUser(lastComment.getUser().getLogin()))
+                if (CommentClassifier.classify(lastComment.getBody()).is(CommentClassifier.Command.FORCE_MERGE)
+                        && isAdminUser(lastComment.getUser().getLogin()))
                     result = ProcessorPullState.MERGEABLE;
             }
         }
@@ -0,0 +1,132 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The references found in the description of a pull request by {@link DescriptionScanner}. Each reference is listed
+ * once, in the order of its first appearance.
+ *
+ * @author navssurtani
+ */
+public final class PullRequestReferences {
+
+    private final List<Integer> bugIds;
+    private final List<String> jiraKeys;
+    private final List<RelatedPullRequest> relatedPullRequests;
+    private final boolean upstreamNotRequired;
+
+    PullRequestReferences(Set<Integer> bugIds, Set<String> jiraKeys, Set<RelatedPullRequest> relatedPullRequests,
+                          boolean upstreamNotRequired) {
+        this.bugIds = Collections.unmodifiableList(new ArrayList<Integer>(bugIds));
+        this.jiraKeys = Collections.unmodifiableList(new ArrayList<String>(jiraKeys));
+        this.relatedPullRequests = Collections.unmodifiableList(
+                new ArrayList<RelatedPullRequest>(relatedPullRequests));
+        this.upstreamNotRequired = upstreamNotRequired;
+    }
+
+    /**
+     * @return the ids of the bugzilla links, like {@link Constants#BUGZILLA_ID_PATTERN}
+     */
+    public List<Integer> getBugIds() {
+        return bugIds;
+    }
+
+    /**
+     * @return the keys of the jira links, like {@link Constants#RELATED_JIRA_PATTERN}
+     */
+    public List<String> getJiraKeys() {
+        return jiraKeys;
+    }
+
+    /**
+     * @return the pull requests linked, like {@link Constants#RELATED_PR_PATTERN}
+     */
+    public List<RelatedPullRequest> getRelatedPullRequests() {
+        return relatedPullRequests;
+    }
+
+    /**
+     * @return whether a line says no upstream is required, like {@link Constants#UPSTREAM_NOT_REQUIRED}
+     */
+    public boolean isUpstreamNotRequired() {
+        return upstreamNotRequired;
+    }
+
+    @Override
+    public String toString() {
+        return "PullRequestReferences[bugIds=" + bugIds + ", jiraKeys=" + jiraKeys + ", relatedPullRequests="
+                + relatedPullRequests + ", upstreamNotRequired=" + upstreamNotRequired + "]";
+    }
+
+    /**
+     * A pull request linked from the description.
+     */
+    public static final class RelatedPullRequest {
+        private final String organization;
+        private final String repository;
+        private final int number;
+
+        public RelatedPullRequest(String organization, String repository, int number) {
+            this.organization = organization;
+            this.repository = repository;
+            this.number = number;
+        }
+
+        public String getOrganization() {
+            return organization;
+        }
+
+        public String getRepository() {
+            return repository;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof RelatedPullRequest))
+                return false;
+            final RelatedPullRequest other = (RelatedPullRequest) o;
+            return number == other.number && organization.equals(other.organization)
+                    && repository.equals(other.repository);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * organization.hashCode() + repository.hashCode()) + number;
+        }
+
+        @Override
+        public String toString() {
+            return organization + "/" + repository + "#" + number;
+        }
+    }
+}
@@ -32,6 +32,8 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @author Jason T. Greene
@@ -81,6 +83,23 @@ public class Util {
         return (value == null) ? defaultValue : value;
     }
 
+    /**
+     * Creates daemon threads named {@code <prefix>-<n>}, so that a forgotten background task doesn't keep the
+     * processor running.
+     */
+    public static ThreadFactory daemonThreadFactory(final String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
     public static String getTime() {
         Date date = new Date();
         return getTime(date);
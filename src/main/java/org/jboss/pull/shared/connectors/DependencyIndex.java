@@ -0,0 +1,189 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.pull.shared.PullRequestReferences;
+import org.jboss.pull.shared.connectors.github.PullRequestCoordinates;
+
+/**
+ * Maps each bug, jira issue and pull request referenced from the description of a pull request to the pull requests
+ * referencing it, so that a change of one of them leads to the pull requests it affects without looking at all the
+ * others.
+ * <p>
+ * The keys are the bug id ({@code 953471}), the jira key ({@code WFLY-1234}) and the pull request as
+ * {@code organization/repository#number}. They are compared ignoring case and surrounding white space, see
+ * {@link #normalize(String)}.
+ *
+ * @author navssurtani
+ */
+public class DependencyIndex {
+
+    // the keys of each indexed pull request, so they can be dropped when it changes
+    private final Map<PullRequestCoordinates, IndexedPullRequest> pullRequests =
+            new HashMap<PullRequestCoordinates, IndexedPullRequest>();
+    private final Map<String, Set<PullRequestCoordinates>> dependents = new HashMap<String, Set<PullRequestCoordinates>>();
+
+    public static String bugKey(int id) {
+        return Integer.toString(id);
+    }
+
+    public static String jiraKey(String key) {
+        return key.trim().toUpperCase(Locale.ENGLISH);
+    }
+
+    public static String pullRequestKey(String organization, String repository, int number) {
+        return (organization + "/" + repository + "#" + number).toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * Brings a key from an outside source, e.g. a notification, to the form of the index.
+     */
+    public static String normalize(String key) {
+        final String trimmed = key.trim();
+        if (trimmed.indexOf('#') >= 0)
+            return trimmed.toLowerCase(Locale.ENGLISH);
+        try {
+            return bugKey(Integer.parseInt(trimmed));
+        } catch (NumberFormatException e) {
+            return jiraKey(trimmed);
+        }
+    }
+
+    /**
+     * Adds the pull request, or replaces the references it had when it was indexed before.
+     */
+    public synchronized void index(RedhatPullRequest pullRequest) {
+        final PullRequestCoordinates coordinates = pullRequest.getCoordinates();
+        remove(coordinates);
+
+        final Set<String> keys = keysOf(coordinates, pullRequest.getReferences());
+        pullRequests.put(coordinates, new IndexedPullRequest(pullRequest, keys));
+        for (String key : keys) {
+            Set<PullRequestCoordinates> pulls = dependents.get(key);
+            if (pulls == null) {
+                pulls = new HashSet<PullRequestCoordinates>();
+                dependents.put(key, pulls);
+            }
+            pulls.add(coordinates);
+        }
+    }
+
+    /**
+     * Indexes the given pull requests and drops all the others, e.g. those which are not open any more.
+     */
+    public synchronized void reindex(Collection<RedhatPullRequest> pullRequests) {
+        final Set<PullRequestCoordinates> kept = new HashSet<PullRequestCoordinates>();
+        for (RedhatPullRequest pullRequest : pullRequests) {
+            index(pullRequest);
+            kept.add(pullRequest.getCoordinates());
+        }
+        for (PullRequestCoordinates coordinates : new ArrayList<PullRequestCoordinates>(this.pullRequests.keySet())) {
+            if (!kept.contains(coordinates))
+                remove(coordinates);
+        }
+    }
+
+    public synchronized void remove(PullRequestCoordinates coordinates) {
+        final IndexedPullRequest indexed = pullRequests.remove(coordinates);
+        if (indexed == null)
+            return;
+
+        for (String key : indexed.keys) {
+            final Set<PullRequestCoordinates> pulls = dependents.get(key);
+            pulls.remove(coordinates);
+            if (pulls.isEmpty())
+                dependents.remove(key);
+        }
+    }
+
+    /**
+     * Returns the pull requests referencing any of the changed bugs, jira issues or pull requests, each once. A
+     * changed pull request which is indexed itself is included too.
+     *
+     * @param changedKeys - keys of the changed bugs, jira issues and pull requests, normalized on the way in
+     * @return the pull requests as they were last indexed
+     */
+    public synchronized List<RedhatPullRequest> getAffected(Collection<String> changedKeys) {
+        final Set<PullRequestCoordinates> affected = new LinkedHashSet<PullRequestCoordinates>();
+        for (String changedKey : changedKeys) {
+            final String key = normalize(changedKey);
+            final Set<PullRequestCoordinates> pulls = dependents.get(key);
+            if (pulls != null)
+                affected.addAll(pulls);
+        }
+
+        final List<RedhatPullRequest> result = new ArrayList<RedhatPullRequest>(affected.size());
+        for (PullRequestCoordinates coordinates : affected) {
+            result.add(pullRequests.get(coordinates).pullRequest);
+        }
+        return result;
+    }
+
+    /**
+     * @return - the keys the pull request is found by, its own and those it references, empty if it is not indexed
+     */
+    public synchronized Set<String> getKeys(PullRequestCoordinates coordinates) {
+        final IndexedPullRequest indexed = pullRequests.get(coordinates);
+        return indexed == null ? Collections.<String>emptySet() : indexed.keys;
+    }
+
+    public synchronized int size() {
+        return pullRequests.size();
+    }
+
+    private static Set<String> keysOf(PullRequestCoordinates coordinates, PullRequestReferences references) {
+        final Set<String> keys = new LinkedHashSet<String>();
+        // a change of the pull request itself affects it too
+        keys.add(pullRequestKey(coordinates.getOrganization(), coordinates.getRepository(), coordinates.getNumber()));
+        for (Integer id : references.getBugIds()) {
+            keys.add(bugKey(id));
+        }
+        for (String key : references.getJiraKeys()) {
+            keys.add(jiraKey(key));
+        }
+        for (PullRequestReferences.RelatedPullRequest related : references.getRelatedPullRequests()) {
+            keys.add(pullRequestKey(related.getOrganization(), related.getRepository(), related.getNumber()));
+        }
+        return Collections.unmodifiableSet(keys);
+    }
+
+    private static class IndexedPullRequest {
+        private final RedhatPullRequest pullRequest;
+        private final Set<String> keys;
+
+        private IndexedPullRequest(RedhatPullRequest pullRequest, Set<String> keys) {
+            this.pullRequest = pullRequest;
+            this.keys = keys;
+        }
+    }
+}
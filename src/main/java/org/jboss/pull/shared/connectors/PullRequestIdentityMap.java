@@ -0,0 +1,182 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.jboss.pull.shared.connectors.common.Issue;
+import org.jboss.pull.shared.connectors.github.GithubHelper;
+import org.jboss.pull.shared.connectors.github.PullRequestCoordinates;
+
+/**
+ * Holds one {@link RedhatPullRequest} per pull request for a processing cycle, so that a pull request referenced by
+ * many others, e.g. the upstream pull request of several backports, is fetched from github and has its issues
+ * resolved once. The pull requests are fetched in parallel by the given executor. Fetching a pull request never
+ * fetches the pull requests it references, which are only looked up here when asked for, so references going round
+ * in a cycle lead back to the same instances rather than to endless fetching.
+ *
+ * @author navssurtani
+ */
+public class PullRequestIdentityMap {
+
+    private final ConcurrentMap<PullRequestCoordinates, FutureTask<RedhatPullRequest>> pullRequests =
+            new ConcurrentHashMap<PullRequestCoordinates, FutureTask<RedhatPullRequest>>();
+
+    private final IssueHelper bzHelper;
+    private final IssueHelper jiraHelper;
+    private final GithubHelper ghHelper;
+    private final Executor resolver;
+
+    private final AtomicInteger fetches = new AtomicInteger();
+
+    /**
+     * @param resolver - executor to fetch the pull requests and resolve their issues with, or null to do it in the
+     *                 calling thread
+     */
+    public PullRequestIdentityMap(IssueHelper bzHelper, IssueHelper jiraHelper, GithubHelper ghHelper,
+                                  Executor resolver) {
+        this.bzHelper = bzHelper;
+        this.jiraHelper = jiraHelper;
+        this.ghHelper = ghHelper;
+        this.resolver = resolver;
+    }
+
+    /**
+     * Adds a pull request which has been fetched already, e.g. one of the open pull requests, unless the map holds
+     * that pull request already.
+     *
+     * @return the pull request held by the map
+     */
+    public RedhatPullRequest register(final RedhatPullRequest pullRequest) {
+        final FutureTask<RedhatPullRequest> task = new FutureTask<RedhatPullRequest>(
+                new Callable<RedhatPullRequest>() {
+                    @Override
+                    public RedhatPullRequest call() {
+                        return pullRequest;
+                    }
+                });
+        task.run();
+        final FutureTask<RedhatPullRequest> existing = pullRequests.putIfAbsent(pullRequest.getCoordinates(), task);
+        return existing == null ? pullRequest : resolve(existing, pullRequest.getCoordinates());
+    }
+
+    /**
+     * @return the pull request, fetched on first use, or null if it cannot be fetched
+     */
+    public RedhatPullRequest get(PullRequestCoordinates coordinates) {
+        return resolve(submit(coordinates), coordinates);
+    }
+
+    /**
+     * Fetches the pull requests which haven't been fetched yet in parallel.
+     *
+     * @return the pull requests in the given order, without those which cannot be fetched
+     */
+    public List<RedhatPullRequest> getAll(Collection<PullRequestCoordinates> coordinates) {
+        final List<FutureTask<RedhatPullRequest>> tasks = new ArrayList<FutureTask<RedhatPullRequest>>(
+                coordinates.size());
+        for (PullRequestCoordinates c : coordinates) {
+            tasks.add(submit(c));
+        }
+
+        final List<RedhatPullRequest> result = new ArrayList<RedhatPullRequest>(tasks.size());
+        int i = 0;
+        for (PullRequestCoordinates c : coordinates) {
+            final RedhatPullRequest pullRequest = resolve(tasks.get(i++), c);
+            if (pullRequest != null)
+                result.add(pullRequest);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private FutureTask<RedhatPullRequest> submit(final PullRequestCoordinates coordinates) {
+        FutureTask<RedhatPullRequest> task = pullRequests.get(coordinates);
+        if (task != null)
+            return task;
+
+        task = new FutureTask<RedhatPullRequest>(new Callable<RedhatPullRequest>() {
+            @Override
+            public RedhatPullRequest call() {
+                fetches.incrementAndGet();
+                final PullRequest pullRequest = ghHelper.getPullRequest(coordinates);
+                if (pullRequest == null)
+                    return null;
+                return new RedhatPullRequest(pullRequest, bzHelper, jiraHelper, ghHelper,
+                        Collections.<String, Issue>emptyMap(), resolver, PullRequestIdentityMap.this);
+            }
+        });
+        final FutureTask<RedhatPullRequest> existing = pullRequests.putIfAbsent(coordinates, task);
+        if (existing != null)
+            return existing;
+
+        if (resolver != null) {
+            try {
+                resolver.execute(task);
+            } catch (RejectedExecutionException ignore) {
+                // fetched by the first caller then
+            }
+        }
+        return task;
+    }
+
+    /**
+     * Waits for a pull request fetched in the background, or fetches it in the calling thread if nobody has started
+     * to yet.
+     */
+    private RedhatPullRequest resolve(FutureTask<RedhatPullRequest> task, PullRequestCoordinates coordinates) {
+        // no-op if the task has already been run
+        task.run();
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fetching pull request " + coordinates, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("Cannot fetch pull request " + coordinates, e.getCause());
+        }
+    }
+
+    /**
+     * @return the number of pull requests fetched from github, i.e. not registered or found in the map
+     */
+    public int getFetches() {
+        return fetches.get();
+    }
+
+    public int size() {
+        return pullRequests.size();
+    }
+}
@@ -25,9 +25,15 @@ package org.jboss.pull.shared.connectors;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.regex.Pattern;
 
 import org.eclipse.egit.github.core.Comment;
@@ -35,20 +41,39 @@ import org.eclipse.egit.github.core.Milestone;
 import org.eclipse.egit.github.core.PullRequest;
 import org.eclipse.egit.github.core.User;
 import org.jboss.pull.shared.BuildResult;
+import org.jboss.pull.shared.CommentClassifier;
 import org.jboss.pull.shared.Constants;
+import org.jboss.pull.shared.DescriptionScanner;
+import org.jboss.pull.shared.PullRequestReferences;
 import org.jboss.pull.shared.connectors.bugzilla.BZHelper;
 import org.jboss.pull.shared.connectors.bugzilla.Bug;
 import org.jboss.pull.shared.connectors.common.Issue;
+import org.jboss.pull.shared.connectors.github.CommentStore;
 import org.jboss.pull.shared.connectors.github.GithubHelper;
+import org.jboss.pull.shared.connectors.github.PullRequestCoordinates;
 import org.jboss.pull.shared.connectors.jira.JiraHelper;
 import org.jboss.pull.shared.connectors.jira.JiraIssue;
 
 public class RedhatPullRequest {
     private PullRequest pullRequest;
 
-    private List<Issue> bugs = null;
-    private List<Issue> jiraIssues = null;
+    // the issue links are parsed once, the issues themselves are resolved asynchronously or on first access
+    private final List<URL> bugUrls;
+    private final List<URL> jiraUrls;
+    private final FutureTask<List<Issue>> bugs;
+    private final FutureTask<List<Issue>> jiraIssues;
     private List<RedhatPullRequest> relatedPullRequests = null;
+    // shares the related pull requests with the other pull requests of the cycle
+    private final PullRequestIdentityMap identityMap;
+    // parsed once, the getters and the maps keyed by pull request use it
+    private final PullRequestCoordinates coordinates;
+    // the links and markers of the description, found once
+    private final PullRequestReferences references;
+
+    // comments fetched once and shared by all the checks, dropped when a comment is posted
+    private List<Comment> comments = null;
+    // the comment pages read by the searches while the comments haven't been fetched
+    private CommentStore.Search commentSearch = null;
 
     private IssueHelper bzHelper;
     private IssueHelper jiraHelper;
@@ -56,6 +81,44 @@ public class RedhatPullRequest {
 
     public RedhatPullRequest(PullRequest pullRequest, IssueHelper bzHelper, IssueHelper jiraHelper,
                              GithubHelper ghHelper) {
+        this(pullRequest, bzHelper, jiraHelper, ghHelper, Collections.<String, Issue>emptyMap());
+    }
+
+    /**
+     * Creates a pull request whose issues are taken from {@code resolvedIssues} where possible, so that issues fetched
+     * in bulk for many pull requests are not fetched again one by one.
+     *
+     * @param resolvedIssues - already resolved issues keyed by their URL string
+     */
+    public RedhatPullRequest(PullRequest pullRequest, IssueHelper bzHelper, IssueHelper jiraHelper,
+                             GithubHelper ghHelper, Map<String, ? extends Issue> resolvedIssues) {
+        this(pullRequest, bzHelper, jiraHelper, ghHelper, resolvedIssues, null);
+    }
+
+    /**
+     * Creates a pull request whose issues are resolved in the background by {@code issueResolver}, so that creating
+     * many pull requests doesn't wait for the issue trackers and their lookups overlap.
+     *
+     * @param resolvedIssues - already resolved issues keyed by their URL string
+     * @param issueResolver - executor to resolve the issues with, or null to resolve them on first access
+     */
+    public RedhatPullRequest(PullRequest pullRequest, IssueHelper bzHelper, IssueHelper jiraHelper,
+                             GithubHelper ghHelper, Map<String, ? extends Issue> resolvedIssues,
+                             Executor issueResolver) {
+        this(pullRequest, bzHelper, jiraHelper, ghHelper, resolvedIssues, issueResolver, null);
+    }
+
+    /**
+     * Creates a pull request whose related pull requests are taken from {@code identityMap}, so that a pull request
+     * related to many others is fetched once.
+     *
+     * @param resolvedIssues - already resolved issues keyed by their URL string
+     * @param issueResolver - executor to resolve the issues with, or null to resolve them on first access
+     * @param identityMap - the related pull requests of the cycle, or null to keep them to this pull request
+     */
+    public RedhatPullRequest(PullRequest pullRequest, IssueHelper bzHelper, IssueHelper jiraHelper,
+                             GithubHelper ghHelper, final Map<String, ? extends Issue> resolvedIssues,
+                             Executor issueResolver, PullRequestIdentityMap identityMap) {
         this.pullRequest = pullRequest;
         if (bzHelper instanceof BZHelper && jiraHelper instanceof JiraHelper) {
             this.bzHelper = bzHelper;
@@ -66,45 +129,69 @@ public class RedhatPullRequest {
         }
 
         this.ghHelper = ghHelper;
-
-        this.bugs = getBugsFromDescription();
-        this.jiraIssues = getJiraIssuesFromDescription();
+        this.identityMap = identityMap != null ? identityMap
+                : new PullRequestIdentityMap(bzHelper, jiraHelper, ghHelper, issueResolver);
+
+        this.coordinates = PullRequestCoordinates.of(pullRequest);
+        this.references = DescriptionScanner.scan(pullRequest.getBody());
+        this.bugUrls = extractURLs(Constants.BUGZILLA_BASE_ID, references.getBugIds(), bzHelper);
+        this.jiraUrls = extractURLs(Constants.JIRA_BASE_BROWSE, references.getJiraKeys(), jiraHelper);
+
+        this.bugs = new FutureTask<List<Issue>>(new Callable<List<Issue>>() {
+            @Override
+            public List<Issue> call() {
+                return getBugsFromDescription(resolvedIssues);
+            }
+        });
+        this.jiraIssues = new FutureTask<List<Issue>>(new Callable<List<Issue>>() {
+            @Override
+            public List<Issue> call() {
+                return getJiraIssuesFromDescription(resolvedIssues);
+            }
+        });
+        if (issueResolver != null) {
+            try {
+                if (!bugUrls.isEmpty())
+                    issueResolver.execute(bugs);
+                if (!jiraUrls.isEmpty())
+                    issueResolver.execute(jiraIssues);
+            } catch (RejectedExecutionException ignore) {
+                // resolved on first access then
+            }
+        }
 
         // Can't call getPRFromDescription here. If two PR's reference each other a loop occurs.
     }
 
-    private List<Issue> getBugsFromDescription() {
-        final List<URL> urls = extractURLs(Constants.BUGZILLA_BASE_ID, Constants.BUGZILLA_ID_PATTERN);
-        final ArrayList<Issue> bugs = new ArrayList<Issue>();
-        for (URL url: urls) {
-            if (bzHelper.accepts(url)) {
-                Bug bug = (Bug) bzHelper.findIssue(url);
-                bugs.add(bug);
-            }
+    private List<Issue> getBugsFromDescription(Map<String, ? extends Issue> resolvedIssues) {
+        final ArrayList<Issue> bugs = new ArrayList<Issue>(bugUrls.size());
+        for (URL url: bugUrls) {
+            Bug bug = (Bug) resolvedIssues.get(url.toString());
+            if (bug == null)
+                bug = (Bug) bzHelper.findIssue(url);
+            bugs.add(bug);
         }
         return bugs;
     }
 
-    private List<Issue> getJiraIssuesFromDescription() {
-        final List<URL> urls = extractURLs(Constants.JIRA_BASE_BROWSE, Constants.RELATED_JIRA_PATTERN);
-        final List<Issue> jiraIssues = new ArrayList<Issue>();
-        for (URL url : urls) {
-            if (jiraHelper.accepts(url)) {
-                JiraIssue jiraIssue = (JiraIssue) jiraHelper.findIssue(url);
-                jiraIssues.add(jiraIssue);
-            }
+    private List<Issue> getJiraIssuesFromDescription(Map<String, ? extends Issue> resolvedIssues) {
+        final List<Issue> jiraIssues = new ArrayList<Issue>(jiraUrls.size());
+        for (URL url : jiraUrls) {
+            JiraIssue jiraIssue = (JiraIssue) resolvedIssues.get(url.toString());
+            if (jiraIssue == null)
+                jiraIssue = (JiraIssue) jiraHelper.findIssue(url);
+            jiraIssues.add(jiraIssue);
         }
         return jiraIssues;
     }
 
-    private List<URL> extractURLs(String urlBase, Pattern toMatch) {
-        final List<URL> urls = new ArrayList<URL>();
-        final Matcher matcher = toMatch.matcher(pullRequest.getBody());
-        while (matcher.find()) {
+    private List<URL> extractURLs(String urlBase, List<?> ids, IssueHelper helper) {
+        final List<URL> urls = new ArrayList<URL>(ids.size());
+        for (Object id : ids) {
             try {
-                urls.add(new URL(urlBase + matcher.group(1)));
-            } catch (NumberFormatException ignore) {
-                System.err.printf("Invalid bug number: %s.\n", ignore);
+                URL url = new URL(urlBase + id);
+                if (helper.accepts(url))
+                    urls.add(url);
             } catch (MalformedURLException malformed) {
                 System.err.printf("Invalid URL formed: %s. \n", malformed);
             }
@@ -113,11 +200,20 @@ public class RedhatPullRequest {
     }
 
     public int getNumber() {
-        return pullRequest.getNumber();
+        return coordinates.getNumber();
+    }
+
+    /**
+     * Returns the organization, repository, number, base ref and head sha of the pull request, parsed when it was
+     * created.
+     */
+    public PullRequestCoordinates getCoordinates() {
+        return coordinates;
     }
 
     public void postGithubComment(String comment) {
         ghHelper.postGithubComment(pullRequest, comment);
+        invalidateGithubComments();
     }
 
     public Milestone getMilestone() {
@@ -132,19 +228,42 @@ public class RedhatPullRequest {
     }
 
     public String getTargetBranchTitle() {
-        return pullRequest.getBase().getRef();
+        return coordinates.getBaseRef();
     }
 
     public String getSourceBranchSha() {
-        return pullRequest.getHead().getSha();
+        return coordinates.getHeadSha();
     }
 
     public User getGithubUser() {
         return pullRequest.getUser();
     }
 
-    public List<Comment> getGithubComments() {
-        return ghHelper.getComments(pullRequest);
+    /**
+     * Returns the comments of the pull request. They are fetched from github once and shared by all the callers
+     * until {@link #invalidateGithubComments()} is called.
+     */
+    public synchronized List<Comment> getGithubComments() {
+        if (comments == null)
+            comments = Collections.unmodifiableList(ghHelper.getComments(pullRequest));
+        return comments;
+    }
+
+    /**
+     * Returns the comments if they have been fetched already, without calling github.
+     *
+     * @return the comments, or null if they haven't been fetched
+     */
+    public synchronized List<Comment> getFetchedGithubComments() {
+        return comments;
+    }
+
+    /**
+     * Makes the next {@link #getGithubComments()} fetch the comments again, e.g. after they were changed elsewhere.
+     */
+    public synchronized void invalidateGithubComments() {
+        comments = null;
+        commentSearch = null;
     }
 
     public void postGithubStatus(String targetUrl, String status) {
@@ -155,20 +274,67 @@ public class RedhatPullRequest {
         return pullRequest.getBody();
     }
 
+    /**
+     * Returns the bugzilla, jira and pull request links and the markers found in the description.
+     */
+    public PullRequestReferences getReferences() {
+        return references;
+    }
+
     public Date getGithubUpdatedAt() {
         return pullRequest.getUpdatedAt();
     }
 
     /**
-     * Searches for last github comment that contains the pattern.
+     * Searches for last github comment that contains the pattern. If the comments haven't been fetched, they are
+     * searched newest first and the pages read are kept for the later searches, until
+     * {@link #invalidateGithubComments()} is called.
      * @param pattern - REGEX pattern to match against comment body.
      * @return Last comment that matches the pattern or null if no comments match.
      */
     public Comment getLastMatchingGithubComment(Pattern pattern) {
-        return ghHelper.getLastMatchingComment(pullRequest, pattern);
+        final CommentStore.Search search;
+        synchronized (this) {
+            if (comments != null)
+                return GithubHelper.getLastMatchingComment(comments, pattern);
+            search = getCommentSearch();
+        }
+        // searching newest first is cheaper than fetching all the comments
+        return ghHelper.getLastMatchingComment(search, pattern);
+    }
+
+    /**
+     * Searches for the last github comment that contains the command, like
+     * {@link #getLastMatchingGithubComment(Pattern)}.
+     * @param command - the command recognised by {@link CommentClassifier}
+     * @return Last comment with the command or null if no comments contain it.
+     */
+    public Comment getLastGithubComment(CommentClassifier.Command command) {
+        final CommentStore.Search search;
+        synchronized (this) {
+            if (comments != null)
+                return GithubHelper.getLastComment(comments, command);
+            search = getCommentSearch();
+        }
+        return ghHelper.getLastComment(search, command);
+    }
+
+    private CommentStore.Search getCommentSearch() {
+        if (commentSearch == null)
+            commentSearch = ghHelper.searchComments(pullRequest);
+        return commentSearch;
+    }
+
+    /**
+     * Returns the related pull requests if they have been fetched already, without calling github.
+     *
+     * @return the related pull requests, or null if they haven't been fetched
+     */
+    public synchronized List<RedhatPullRequest> getFetchedRelatedPullRequests() {
+        return relatedPullRequests;
     }
 
-    public List<RedhatPullRequest> getRelatedPullRequests() {
+    public synchronized List<RedhatPullRequest> getRelatedPullRequests() {
         if (relatedPullRequests != null) {
             return relatedPullRequests;
         } else {
@@ -177,18 +343,14 @@ public class RedhatPullRequest {
     }
 
     private List<RedhatPullRequest> getPRFromDescription() {
-        Matcher matcher = Constants.RELATED_PR_PATTERN.matcher(getGithubDescription());
-
-        List<RedhatPullRequest> relatedPullRequests = new ArrayList<RedhatPullRequest>();
-        while (matcher.find()) {
-            PullRequest relatedPullRequest = ghHelper.getPullRequest(matcher.group(1), matcher.group(2),
-                    Integer.valueOf(matcher.group(3)));
-            if (relatedPullRequest != null) {
-                relatedPullRequests.add(new RedhatPullRequest(relatedPullRequest, bzHelper, jiraHelper, ghHelper));
-            }
+        final List<PullRequestCoordinates> coordinates = new ArrayList<PullRequestCoordinates>();
+        for (PullRequestReferences.RelatedPullRequest related : references.getRelatedPullRequests()) {
+            coordinates.add(new PullRequestCoordinates(related.getOrganization(), related.getRepository(),
+                    related.getNumber(), null, null));
         }
 
-        return relatedPullRequests;
+        // fetched in parallel, and only once however many pull requests refer to them
+        return identityMap.getAll(coordinates);
     }
 
     public String getState() {
@@ -200,7 +362,14 @@ public class RedhatPullRequest {
     }
 
     public boolean isMerged() {
-        return ghHelper.isMerged(pullRequest);
+        return ghHelper.isMerged(pullRequest, coordinates);
+    }
+
+    /**
+     * @return whether the pull request is merged, or null if github couldn't be asked
+     */
+    public Boolean getMergedState() {
+        return ghHelper.getMergedState(pullRequest, coordinates);
     }
 
     /**
@@ -209,18 +378,37 @@ public class RedhatPullRequest {
      * @return
      */
     public List<Issue> getIssues() {
-        List<Issue> toReturn = new ArrayList<Issue>(bugs.size() + jiraIssues.size());
-        toReturn.addAll(bugs);
-        toReturn.addAll(jiraIssues);
+        List<Issue> toReturn = new ArrayList<Issue>(bugUrls.size() + jiraUrls.size());
+        toReturn.addAll(resolve(bugs));
+        toReturn.addAll(resolve(jiraIssues));
         return toReturn;
     }
 
+    /**
+     * Waits for the issues resolved in the background, or resolves them in the calling thread if nobody has started
+     * to yet.
+     */
+    private List<Issue> resolve(FutureTask<List<Issue>> issues) {
+        // no-op if the task has already been run
+        issues.run();
+        try {
+            return issues.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while resolving the issues of pull request " + getNumber(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("Cannot resolve the issues of pull request " + getNumber(), e.getCause());
+        }
+    }
+
     /**
      * Returns true if BZ link is in the PR description
      * @return
      */
     public boolean isBZInDescription(){
-        return bugs.size() > 0;
+        return !bugUrls.isEmpty();
     }
 
     /**
@@ -228,40 +416,29 @@ public class RedhatPullRequest {
      * @return
      */
     public boolean isJiraInDescription(){
-        return jiraIssues.size() > 0;
+        return !jiraUrls.isEmpty();
     }
 
     public boolean isUpstreamRequired(){
-        return !Constants.UPSTREAM_NOT_REQUIRED.matcher(pullRequest.getBody()).find();
+        return !references.isUpstreamNotRequired();
     }
     public BuildResult getBuildResult() {
         BuildResult buildResult = BuildResult.UNKNOWN;
-        Comment comment = ghHelper.getLastMatchingComment(pullRequest, Constants.BUILD_OUTCOME);
+        Comment comment = getLastGithubComment(CommentClassifier.Command.BUILD_OUTCOME);
 
         if (comment != null) {
-            Matcher matcher = Constants.BUILD_OUTCOME.matcher(comment.getBody());
-            while (matcher.find()) {
-                buildResult = BuildResult.valueOf(matcher.group(2));
-            }
+            buildResult = BuildResult.valueOf(CommentClassifier.classify(comment.getBody()).getBuildOutcome());
         }
 
         return buildResult;
     }
 
     public String getOrganization() {
-        Matcher matcher = Constants.RELATED_PR_PATTERN.matcher(pullRequest.getUrl());
-        if (matcher.matches()) {
-            return matcher.group(1);
-        }
-        return null;
+        return coordinates.getOrganization();
     }
 
     public String getRepository() {
-        Matcher matcher = Constants.RELATED_PR_PATTERN.matcher(pullRequest.getUrl());
-        if (matcher.matches()) {
-            return matcher.group(2);
-        }
-        return null;
+        return coordinates.getRepository();
     }
 
     public boolean updateStatus(Issue issue, Enum status) throws IllegalArgumentException {
@@ -27,16 +27,27 @@ import org.jboss.pull.shared.Constants;
 import org.jboss.pull.shared.Util;
 import org.jboss.pull.shared.connectors.IssueHelper;
 import org.jboss.pull.shared.connectors.common.AbstractCommonIssueHelper;
+import org.jboss.pull.shared.connectors.common.Flag;
 import org.jboss.pull.shared.connectors.common.Issue;
 
 import java.net.URL;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Properties;
 
 public class BZHelper extends AbstractCommonIssueHelper implements IssueHelper {
 
     private final String BUGZILLA_LOGIN;
     private final String BUGZILLA_PASSWORD;
 
+    public static final String CACHE_TTL_PROPERTY = "bugzilla.cache.ttl";
+    public static final String CACHE_SIZE_PROPERTY = "bugzilla.cache.size";
+
+    private static final long DEFAULT_CACHE_TTL = 5 * 60 * 1000;
+    private static final int DEFAULT_CACHE_SIZE = 2000;
+
     private final Bugzilla bugzillaClient;
+    private final BugCache bugCache;
 
     public BZHelper(final String configurationFileProperty, final String configurationFileDefault) throws Exception {
         super(configurationFileProperty, configurationFileDefault);
@@ -45,7 +56,11 @@ public class BZHelper extends AbstractCommonIssueHelper implements IssueHelper {
             BUGZILLA_PASSWORD = Util.require(fromUtil, "bugzilla.password");
 
             // initialize bugzilla client
-            bugzillaClient = new Bugzilla(Constants.BUGZILLA_BASE, BUGZILLA_LOGIN, BUGZILLA_PASSWORD);
+            bugzillaClient = new Bugzilla(Constants.BUGZILLA_BASE, BUGZILLA_LOGIN, BUGZILLA_PASSWORD,
+                    BugzillaSettings.fromProperties(fromUtil));
+            bugCache = new BugCache(bugzillaClient, Bug.Profile.MERGE_CHECK,
+                    Long.parseLong(Util.get(fromUtil, CACHE_TTL_PROPERTY, String.valueOf(DEFAULT_CACHE_TTL))),
+                    Integer.parseInt(Util.get(fromUtil, CACHE_SIZE_PROPERTY, String.valueOf(DEFAULT_CACHE_SIZE))));
         } catch (Exception e) {
             System.err.printf("Cannot initialize: %s\n", e);
             e.printStackTrace(System.err);
@@ -53,9 +68,35 @@ public class BZHelper extends AbstractCommonIssueHelper implements IssueHelper {
         }
     }
 
+    /**
+     * Exists to test the updates against a mocked client
+     */
+    public BZHelper(Bugzilla bugzillaClient, BugCache bugCache) {
+        super(new Properties());
+        BUGZILLA_LOGIN = null;
+        BUGZILLA_PASSWORD = null;
+        this.bugzillaClient = bugzillaClient;
+        this.bugCache = bugCache;
+    }
+
     @Override
     public Issue findIssue(URL url) throws IllegalArgumentException {
-        return bugzillaClient.getBug(cutIdFromURL(url));
+        return bugCache.get(cutIdFromURL(url));
+    }
+
+    /**
+     * Finds the given bugs with as few Bugzilla round trips as possible. Only the fields needed to evaluate
+     * a pull request are fetched, the rest is loaded on demand. Cached bugs are reused until they change in Bugzilla.
+     *
+     * @param ids - the bug ids
+     * @return - the bugs keyed by their id, bugs which could not be retrieved are left out.
+     */
+    public Map<Integer, Bug> findBugs(Collection<Integer> ids) {
+        return bugCache.getAll(ids);
+    }
+
+    public BugCache getBugCache() {
+        return bugCache;
     }
 
     @Override
@@ -63,6 +104,35 @@ public class BZHelper extends AbstractCommonIssueHelper implements IssueHelper {
         return url.getHost().equalsIgnoreCase(Constants.BUGZILLA_HOST);
     }
 
+    /**
+     * Changes the status of the bug, see {@link Bugzilla#updateBugzillaStatus(Integer, Bug.Status)}. Like the other
+     * updates, it drops the bug from the cache once Bugzilla has taken the change, so that the next lookup sees it.
+     */
+    public boolean updateBugzillaStatus(Integer bugzillaId, Bug.Status status) {
+        return invalidateIfUpdated(bugzillaClient.updateBugzillaStatus(bugzillaId, status), bugzillaId);
+    }
+
+    public boolean updateBugzillaTargetMilestone(int id, String targetMilestone) {
+        return invalidateIfUpdated(bugzillaClient.updateBugzillaTargetMilestone(id, targetMilestone), id);
+    }
+
+    public boolean updateBugzillaTargetRelease(int id, String... targetRelease) {
+        return invalidateIfUpdated(bugzillaClient.updateBugzillaTargetRelease(id, targetRelease), id);
+    }
+
+    public boolean updateBugzillaFlag(Integer[] ids, String name, Flag.Status status) {
+        return invalidateIfUpdated(bugzillaClient.updateBugzillaFlag(ids, name, status), ids);
+    }
+
+    private boolean invalidateIfUpdated(boolean updated, Integer... ids) {
+        if (updated) {
+            for (Integer id : ids) {
+                bugCache.invalidate(id);
+            }
+        }
+        return updated;
+    }
+
     // FIXME: This has to be implemented properly.
     @Override
     public boolean updateStatus(URL url, Enum status) {
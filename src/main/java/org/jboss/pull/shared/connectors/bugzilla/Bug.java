@@ -21,16 +21,25 @@
  */
 package org.jboss.pull.shared.connectors.bugzilla;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.apache.xmlrpc.XmlRpcException;
 import org.jboss.pull.shared.connectors.common.Flag;
+import org.jboss.pull.shared.connectors.common.FlagVocabulary;
 import org.jboss.pull.shared.connectors.common.Issue;
+import org.jboss.pull.shared.connectors.common.SortedIntSet;
+import org.jboss.pull.shared.connectors.common.StringPool;
 
 
 public class Bug implements Issue {
@@ -45,7 +54,40 @@ public class Bug implements Issue {
     // includes attributes for Bug.get execution
     public static final Object[] include_fields = { "id", "alias", "product", "component", "version", "priority", "severity",
             "target_milestone", "creator", "assigned_to", "qa_contact", "docs_contact", "status", "resolution", "flags",
-            "groups", "depends_on", "blocks", "target_release", "summary", "description" };
+            "groups", "depends_on", "blocks", "target_release", "summary", "description", "last_change_time" };
+
+    /**
+     * Named sets of fields to be included in a Bug.get execution. Fields left out of the fetched profile are
+     * loaded lazily on first access.
+     */
+    public enum Profile {
+        /**
+         * The {@code MERGE_CHECK} {@link Profile} holds just the fields the pull request evaluators read.
+         */
+        MERGE_CHECK("id", "status", "flags", "blocks", "target_release", "last_change_time"),
+
+        /**
+         * The {@code FULL} {@link Profile} holds all the known fields of a bug.
+         */
+        FULL(include_fields);
+
+        private final Object[] fields;
+
+        private Profile(Object... fields) {
+            this.fields = fields;
+        }
+
+        public Object[] getFields() {
+            return fields.clone();
+        }
+    }
+
+    private static final Map<String, Integer> FIELD_INDEXES = new HashMap<String, Integer>();
+    static {
+        for (int i = 0; i < include_fields.length; i++) {
+            FIELD_INDEXES.put((String) include_fields[i], i);
+        }
+    }
 
     private int id;
     private List<String> alias;
@@ -62,104 +104,172 @@ public class Bug implements Issue {
     private Status status;
     private String resolution;
     private List<Flag> flags;
+    // ordinals are only valid in the JVM which gave them, so the mask is computed again when read back
+    private transient long positiveFlagMask;
     private List<String> groups;
-    private Set<Integer> dependsOn;
-    private Set<Integer> blocks;
+    private SortedIntSet dependsOn;
+    private SortedIntSet blocks;
     private Set<String> targetRelease;
     private String summary;
     private String description;
+    private Date lastChangeTime;
     private URL url;        // The issue URL.
 
-    public Bug(Map<String, Object> bugMap) {
-        id = (Integer) bugMap.get("id");
+    // bit i is set when include_fields[i] has been loaded
+    private int loadedFields;
+    private transient Bugzilla loader;
 
-        Object[] aliasObjs = (Object[]) bugMap.get("alias");
-        alias = new ArrayList<String>(aliasObjs.length);
-        for (Object obj : aliasObjs) {
-            alias.add((String) obj);
-        }
+    public Bug(Map<String, Object> bugMap) {
+        this(bugMap, null);
+    }
 
-        product = (String) bugMap.get("product");
+    /**
+     * Creates a possibly partially loaded bug. Fields which are missing in {@code bugMap} are fetched through
+     * {@code loader} on first access.
+     *
+     * @param bugMap - the fields returned by Bug.get
+     * @param loader - client to load the missing fields with, or null if they should stay unset
+     */
+    Bug(Map<String, Object> bugMap, Bugzilla loader) {
+        this.loader = loader;
+        id = (Integer) bugMap.get("id");
+        load(bugMap);
 
-        Object[] componentObjs = (Object[]) bugMap.get("component");
-        component = new ArrayList<String>(componentObjs.length);
-        for (Object obj : componentObjs) {
-            component.add((String) obj);
+        try {
+            this.url = new URL("https://bugzilla.redhat.com/show_bug.cgi?id=" + id);
+        } catch (MalformedURLException malformed) {
+            System.err.printf("Invalid URL formed: %s. \n", malformed);
         }
+    }
 
-        Object[] versionObjs = (Object[]) bugMap.get("version");
-        version = new HashSet<String>(versionObjs.length);
-        for (Object obj : versionObjs) {
-            version.add((String) obj);
+    private void load(Map<String, Object> bugMap) {
+        // the strings which repeat across bugs are pooled and the collections are immutable and compact, so that many
+        // bugs can be cached
+        if (bugMap.containsKey("alias")) {
+            Object[] aliasObjs = (Object[]) bugMap.get("alias");
+            alias = aliasObjs.length == 0 ? Collections.<String>emptyList()
+                    : Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(aliasObjs, aliasObjs.length,
+                    String[].class)));
         }
 
-        priority = (String) bugMap.get("priority");
-        severity = (String) bugMap.get("severity");
-        targetMilestone = (String) bugMap.get("target_milestone");
-        creator = (String) bugMap.get("creator");
-        assignedTo = (String) bugMap.get("assigned_to");
-        qaContact = (String) bugMap.get("qa_contact");
-        docsContact = (String) bugMap.get("docs_contact");
-        status = Status.valueOf((String) bugMap.get("status"));
-        resolution = (String) bugMap.get("resolution");
-
-        flags = new ArrayList<Flag>();
-        Object[] flagObjs = (Object[]) bugMap.get("flags");
-        for (Object obj : flagObjs) {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> flag = (Map<String, Object>) obj;
-            String name = (String) flag.get("name");
-            String setter = (String) flag.get("setter");
-            String s = (String) flag.get("status");
-            Flag.Status status;
-
-            if (s.equals(" ")) {
-                status = Flag.Status.UNSET;
-            } else if (s.equals("?")) {
-                status = Flag.Status.UNKNOWN;
-            } else if (s.equals("+")) {
-                status = Flag.Status.POSITIVE;
-            } else if (s.equals("-")) {
-                status = Flag.Status.NEGATIVE;
-            } else {
-                throw new IllegalStateException("Unknown flag state");
+        if (bugMap.containsKey("product"))
+            product = StringPool.intern((String) bugMap.get("product"));
+        if (bugMap.containsKey("component"))
+            component = StringPool.list((Object[]) bugMap.get("component"));
+        if (bugMap.containsKey("version"))
+            version = StringPool.set((Object[]) bugMap.get("version"));
+        if (bugMap.containsKey("priority"))
+            priority = StringPool.intern((String) bugMap.get("priority"));
+        if (bugMap.containsKey("severity"))
+            severity = StringPool.intern((String) bugMap.get("severity"));
+        if (bugMap.containsKey("target_milestone"))
+            targetMilestone = StringPool.intern((String) bugMap.get("target_milestone"));
+        if (bugMap.containsKey("creator"))
+            creator = StringPool.intern((String) bugMap.get("creator"));
+        if (bugMap.containsKey("assigned_to"))
+            assignedTo = StringPool.intern((String) bugMap.get("assigned_to"));
+        if (bugMap.containsKey("qa_contact"))
+            qaContact = StringPool.intern((String) bugMap.get("qa_contact"));
+        if (bugMap.containsKey("docs_contact"))
+            docsContact = StringPool.intern((String) bugMap.get("docs_contact"));
+        if (bugMap.containsKey("status"))
+            status = Status.valueOf((String) bugMap.get("status"));
+        if (bugMap.containsKey("resolution"))
+            resolution = StringPool.intern((String) bugMap.get("resolution"));
+
+        if (bugMap.containsKey("flags")) {
+            Object[] flagObjs = (Object[]) bugMap.get("flags");
+            flags = new ArrayList<Flag>(flagObjs.length);
+            for (Object obj : flagObjs) {
+                @SuppressWarnings("unchecked")
+                Map<String, Object> flag = (Map<String, Object>) obj;
+                String name = (String) flag.get("name");
+                String setter = (String) flag.get("setter");
+                String s = (String) flag.get("status");
+                Flag.Status status;
+
+                if (s.equals(" ")) {
+                    status = Flag.Status.UNSET;
+                } else if (s.equals("?")) {
+                    status = Flag.Status.UNKNOWN;
+                } else if (s.equals("+")) {
+                    status = Flag.Status.POSITIVE;
+                } else if (s.equals("-")) {
+                    status = Flag.Status.NEGATIVE;
+                } else {
+                    throw new IllegalStateException("Unknown flag state");
+                }
+
+                // shared by all the bugs
+                flags.add(FlagVocabulary.flag(name, setter, status));
             }
-
-            flags.add(new Flag(name, setter, status));
+            positiveFlagMask = FlagVocabulary.positiveMask(flags);
         }
 
-        Object[] groupsObjs = (Object[]) bugMap.get("groups");
-        groups = new ArrayList<String>(groupsObjs.length);
-        for (Object obj : groupsObjs) {
-            groups.add((String) obj);
+        if (bugMap.containsKey("groups"))
+            groups = StringPool.list((Object[]) bugMap.get("groups"));
+        if (bugMap.containsKey("depends_on"))
+            dependsOn = SortedIntSet.of((Object[]) bugMap.get("depends_on"));
+        if (bugMap.containsKey("blocks"))
+            blocks = SortedIntSet.of((Object[]) bugMap.get("blocks"));
+        if (bugMap.containsKey("target_release"))
+            targetRelease = StringPool.set((Object[]) bugMap.get("target_release"));
+
+        if (bugMap.containsKey("summary"))
+            summary = (String) bugMap.get("summary");
+        if (bugMap.containsKey("description"))
+            description = (String) bugMap.get("description");
+        if (bugMap.containsKey("last_change_time"))
+            lastChangeTime = (Date) bugMap.get("last_change_time");
+
+        for (int i = 0; i < include_fields.length; i++) {
+            if (bugMap.containsKey(include_fields[i]))
+                loadedFields |= 1 << i;
         }
+    }
 
-        Object[] dependsOnObjs = (Object[]) bugMap.get("depends_on");
-        dependsOn = new HashSet<Integer>(dependsOnObjs.length);
-        for (Object obj : dependsOnObjs) {
-            dependsOn.add((Integer) obj);
+    /**
+     * Makes sure the given field has been loaded. The first access to a field outside of the fetched
+     * {@link Profile} loads all the remaining fields in one call.
+     */
+    private synchronized void ensureLoaded(String field) {
+        if (isLoaded(field) || loader == null)
+            return;
+
+        final List<Object> missing = new ArrayList<Object>();
+        for (int i = 0; i < include_fields.length; i++) {
+            if ((loadedFields & (1 << i)) == 0)
+                missing.add(include_fields[i]);
         }
 
-        Object[] blockObjs = (Object[]) bugMap.get("blocks");
-        blocks = new HashSet<Integer>(blockObjs.length);
-        for (Object obj : blockObjs) {
-            blocks.add((Integer) obj);
+        final Map<String, Object> bugMap;
+        try {
+            bugMap = loader.getBugFields(id, missing.toArray());
+        } catch (XmlRpcException e) {
+            // the next access tries again
+            System.err.println("Can not load the fields " + missing + " of bug with id : " + id);
+            e.printStackTrace(System.err);
+            return;
         }
+        if (bugMap != null)
+            load(bugMap);
 
-        Object[] targetReleaseObjs = (Object[]) bugMap.get("target_release");
-        targetRelease = new HashSet<String>(targetReleaseObjs.length);
-        for (Object obj : targetReleaseObjs) {
-            targetRelease.add((String) obj);
-        }
+        // don't try again if the server didn't return the field
+        loader = null;
+    }
 
-        summary = (String) bugMap.get("summary");
-        description = (String) bugMap.get("description");
+    /**
+     * Returns whether the given Bug.get field has been loaded already.
+     */
+    public synchronized boolean isLoaded(String field) {
+        final Integer index = FIELD_INDEXES.get(field);
+        return index != null && (loadedFields & (1 << index)) != 0;
+    }
 
-        try {
-            this.url = new URL("https://bugzilla.redhat.com/show_bug.cgi?id=" + id);
-        } catch (MalformedURLException malformed) {
-            System.err.printf("Invalid URL formed: %s. \n", malformed);
-        }
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (flags != null)
+            positiveFlagMask = FlagVocabulary.positiveMask(flags);
     }
 
     public int getId() {
@@ -167,87 +277,139 @@ public class Bug implements Issue {
     }
 
     public List<String> getAlias() {
+        ensureLoaded("alias");
         return alias;
     }
 
     public String getProduct() {
+        ensureLoaded("product");
         return product;
     }
 
     public List<String> getComponent() {
+        ensureLoaded("component");
         return component;
     }
 
     public Set<String> getVersion() {
+        ensureLoaded("version");
         return version;
     }
 
     public String getPriority() {
+        ensureLoaded("priority");
         return priority;
     }
 
     public String getSeverity() {
+        ensureLoaded("severity");
         return severity;
     }
 
     public String getTargetMilestone() {
+        ensureLoaded("target_milestone");
         return targetMilestone;
     }
 
     public String getCreator() {
+        ensureLoaded("creator");
         return creator;
     }
 
     public String getAssignedTo() {
+        ensureLoaded("assigned_to");
         return assignedTo;
     }
 
     public String getQaContact() {
+        ensureLoaded("qa_contact");
         return qaContact;
     }
 
     public String getDocsContact() {
+        ensureLoaded("docs_contact");
         return docsContact;
     }
 
     @Override
     public String getStatus() {
+        ensureLoaded("status");
         return status.toString();
     }
 
     public String getResolution() {
+        ensureLoaded("resolution");
         return resolution;
     }
 
     @Override
     public List<Flag> getFlags() {
+        ensureLoaded("flags");
         return flags;
     }
 
+    /**
+     * @return the {@link FlagVocabulary} mask of the names of the flags set to '+'
+     */
+    public long getPositiveFlagMask() {
+        ensureLoaded("flags");
+        return positiveFlagMask;
+    }
+
     public List<String> getGroups() {
+        ensureLoaded("groups");
         return groups;
     }
 
     public Set<Integer> getDependsOn() {
+        ensureLoaded("depends_on");
         return dependsOn;
     }
 
     public Set<Integer> getBlocks() {
+        ensureLoaded("blocks");
         return blocks;
     }
 
+    /**
+     * @return whether this bug blocks the given one, without boxing its id
+     */
+    public boolean isBlocking(int bugId) {
+        ensureLoaded("blocks");
+        return blocks != null && blocks.contains(bugId);
+    }
+
+    /**
+     * @return whether this bug depends on the given one, without boxing its id
+     */
+    public boolean isDependingOn(int bugId) {
+        ensureLoaded("depends_on");
+        return dependsOn != null && dependsOn.contains(bugId);
+    }
+
     public Set<String> getTargetRelease() {
+        ensureLoaded("target_release");
         return targetRelease;
     }
 
     public String getSummary() {
+        ensureLoaded("summary");
         return summary;
     }
 
     public String getDescription() {
+        ensureLoaded("description");
         return description;
     }
 
+    /**
+     * Returns the time of the last change of the bug, which tells whether a cached copy is still up to date.
+     */
+    public Date getLastChangeTime() {
+        ensureLoaded("last_change_time");
+        return lastChangeTime;
+    }
+
     @Override
     public String getNumber() {
         return Integer.toString(id);
@@ -260,6 +422,7 @@ public class Bug implements Issue {
 
     @Override
     public Set<String> getFixVersions() {
+        ensureLoaded("target_release");
         return targetRelease;
     }
 
@@ -0,0 +1,272 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.pull.shared.connectors.bugzilla;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded LRU cache of Bugzilla bugs. Entries older than the TTL are not thrown away but revalidated: a single
+ * Bug.get asking only for {@code id,last_change_time} of all the expired entries tells which bugs changed, and only
+ * those are fetched again.
+ *
+ * @author navssurtani
+ */
+public class BugCache {
+
+    private final Bugzilla bugzilla;
+    private final Bug.Profile profile;
+    private final long ttl;
+    private final int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong refetches = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private final LinkedHashMap<Integer, CachedBug> entries;
+
+    /**
+     * @param bugzilla - the client to fetch the bugs with
+     * @param profile - the fields to fetch
+     * @param ttl - time in milliseconds an entry is used without revalidation
+     * @param maxSize - maximum number of cached bugs, the least recently used ones are evicted first
+     */
+    public BugCache(Bugzilla bugzilla, Bug.Profile profile, long ttl, final int maxSize) {
+        if (ttl < 0 || maxSize < 1)
+            throw new IllegalArgumentException("TTL must not be negative and size has to be positive");
+
+        this.bugzilla = bugzilla;
+        this.profile = profile;
+        this.ttl = ttl;
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<Integer, CachedBug>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CachedBug> eldest) {
+                if (size() > BugCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return - the bug, or null if it doesn't exist
+     */
+    public Bug get(int id) {
+        return getAll(Collections.singleton(id)).get(id);
+    }
+
+    /**
+     * Returns the given bugs, fetching the missing ones and the changed ones in bulk.
+     *
+     * @return - the bugs keyed by their id, bugs which don't exist are left out
+     */
+    public Map<Integer, Bug> getAll(Collection<Integer> ids) {
+        final Map<Integer, Bug> result = new HashMap<Integer, Bug>();
+        final List<Integer> toFetch = new ArrayList<Integer>();
+        boolean expired = false;
+
+        synchronized (entries) {
+            final long now = System.currentTimeMillis();
+            for (Integer id : ids) {
+                CachedBug entry = entries.get(id);
+                if (entry == null) {
+                    misses.incrementAndGet();
+                    toFetch.add(id);
+                } else if (now - entry.validatedAt >= ttl) {
+                    expired = true;
+                } else {
+                    hits.incrementAndGet();
+                    result.put(id, entry.bug);
+                }
+            }
+        }
+
+        if (expired) {
+            // every expired entry is revalidated in the same call, they are likely to be asked for soon too
+            toFetch.addAll(revalidate(false));
+            synchronized (entries) {
+                for (Integer id : ids) {
+                    CachedBug entry = entries.get(id);
+                    if (entry != null && !result.containsKey(id) && !toFetch.contains(id)) {
+                        hits.incrementAndGet();
+                        result.put(id, entry.bug);
+                    }
+                }
+            }
+        }
+
+        if (!toFetch.isEmpty()) {
+            final Map<Integer, Bug> fetched = bugzilla.getBugs(toFetch, profile);
+            synchronized (entries) {
+                final long now = System.currentTimeMillis();
+                for (Bug bug : fetched.values()) {
+                    entries.put(bug.getId(), new CachedBug(bug, now));
+                }
+            }
+            for (Integer id : ids) {
+                Bug bug = fetched.get(id);
+                if (bug != null)
+                    result.put(id, bug);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Revalidates all the cached bugs at once, e.g. at the beginning of a polling cycle, and fetches the changed ones.
+     */
+    public void revalidate() {
+        final List<Integer> changed = revalidate(true);
+        if (!changed.isEmpty()) {
+            final Map<Integer, Bug> fetched = bugzilla.getBugs(changed, profile);
+            synchronized (entries) {
+                final long now = System.currentTimeMillis();
+                for (Bug bug : fetched.values()) {
+                    entries.put(bug.getId(), new CachedBug(bug, now));
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the last change time of the cached bugs. The unchanged ones are marked valid again, the changed and the
+     * vanished ones are dropped. If Bugzilla can't be asked, the entries are kept as they are and revalidated on the
+     * next access.
+     *
+     * @param all - whether to revalidate all the entries or the expired ones only
+     * @return - ids of the changed bugs
+     */
+    private List<Integer> revalidate(boolean all) {
+        final Map<Integer, Date> cachedTimes = new HashMap<Integer, Date>();
+        synchronized (entries) {
+            final long now = System.currentTimeMillis();
+            for (Map.Entry<Integer, CachedBug> e : entries.entrySet()) {
+                if (all || now - e.getValue().validatedAt >= ttl)
+                    cachedTimes.put(e.getKey(), e.getValue().bug.getLastChangeTime());
+            }
+        }
+        if (cachedTimes.isEmpty())
+            return Collections.emptyList();
+
+        revalidations.incrementAndGet();
+        final Map<Integer, Date> currentTimes = bugzilla.getLastChangeTimes(cachedTimes.keySet());
+        if (currentTimes == null)
+            return Collections.emptyList();
+
+        final List<Integer> changed = new ArrayList<Integer>();
+        synchronized (entries) {
+            final long now = System.currentTimeMillis();
+            for (Map.Entry<Integer, Date> e : cachedTimes.entrySet()) {
+                final Integer id = e.getKey();
+                final Date current = currentTimes.get(id);
+                if (current != null && current.equals(e.getValue())) {
+                    CachedBug entry = entries.get(id);
+                    if (entry != null)
+                        entry.validatedAt = now;
+                } else {
+                    entries.remove(id);
+                    if (current != null) {
+                        refetches.incrementAndGet();
+                        changed.add(id);
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    public void invalidate(int id) {
+        synchronized (entries) {
+            entries.remove(id);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return - number of last change time checks sent to Bugzilla
+     */
+    public long getRevalidations() {
+        return revalidations.get();
+    }
+
+    /**
+     * @return - number of bugs fetched again because they had changed
+     */
+    public long getRefetches() {
+        return refetches.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public String toString() {
+        return "BugCache[size=" + size() + ", hits=" + hits + ", misses=" + misses + ", revalidations=" + revalidations
+                + ", refetches=" + refetches + ", evictions=" + evictions + "]";
+    }
+
+    private static class CachedBug {
+        private final Bug bug;
+        private long validatedAt;
+
+        private CachedBug(Bug bug, long validatedAt) {
+            this.bug = bug;
+            this.validatedAt = validatedAt;
+        }
+    }
+}
@@ -23,13 +23,23 @@ package org.jboss.pull.shared.connectors.bugzilla;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
 import org.apache.xmlrpc.XmlRpcException;
 import org.apache.xmlrpc.client.XmlRpcClient;
 import org.apache.xmlrpc.client.XmlRpcClientConfigImpl;
+import org.apache.xmlrpc.client.XmlRpcCommonsTransportFactory;
 
+import org.jboss.pull.shared.connectors.common.ConcurrencyLimiter;
 import org.jboss.pull.shared.connectors.common.Flag.Status;
 
 public class Bugzilla {
@@ -37,33 +47,88 @@ public class Bugzilla {
     private String baseURL;
     private String login;
     private String password;
+    private final BugzillaSettings settings;
+
+    // One client per instance, it is thread-safe once configured.
+    private final XmlRpcClient rpcClient;
+    private final MultiThreadedHttpConnectionManager connectionManager;
+    private final ConcurrencyLimiter limiter;
 
     public Bugzilla(String serverUrl, String login, String password) {
+        this(serverUrl, login, password, BugzillaSettings.getDefault());
+    }
+
+    public Bugzilla(String serverUrl, String login, String password, BugzillaSettings settings) {
         this.baseURL = serverUrl;
         this.login = login;
         this.password = password;
+        this.settings = settings;
+
+        if (settings.isPooled()) {
+            connectionManager = new MultiThreadedHttpConnectionManager();
+            HttpConnectionManagerParams params = connectionManager.getParams();
+            params.setDefaultMaxConnectionsPerHost(settings.getPoolSize());
+            params.setMaxTotalConnections(settings.getPoolSize());
+            params.setConnectionTimeout(settings.getConnectTimeout());
+            params.setSoTimeout(settings.getReadTimeout());
+            params.setStaleCheckingEnabled(true);
+        } else {
+            connectionManager = null;
+        }
+        this.rpcClient = createClient();
+        this.limiter = new ConcurrencyLimiter("bugzilla", settings.getMaxConcurrent());
     }
 
     /**
-     * Get a new XmlRpcClient instance from server URL
+     * Creates the XmlRpcClient instance for the server URL. Unless pooling is disabled in the settings
+     * it runs on a keep-alive connection pool shared by all the calls of this instance.
      *
      * @return XmlRpcClient
      */
-    private XmlRpcClient getClient() {
+    private XmlRpcClient createClient() {
         try {
             String apiURL = baseURL + "xmlrpc.cgi";
-            XmlRpcClient rpcClient;
-            XmlRpcClientConfigImpl config;
-            config = new XmlRpcClientConfigImpl();
+            XmlRpcClientConfigImpl config = new XmlRpcClientConfigImpl();
             config.setServerURL(new URL(apiURL));
-            rpcClient = new XmlRpcClient();
-            rpcClient.setConfig(config);
-            return rpcClient;
+            config.setConnectionTimeout(settings.getConnectTimeout());
+            config.setReplyTimeout(settings.getReadTimeout());
+            config.setGzipRequesting(settings.isGzipResponses());
+            config.setGzipCompressing(settings.isGzipRequests());
+
+            XmlRpcClient client = new XmlRpcClient();
+            client.setConfig(config);
+            if (connectionManager != null) {
+                XmlRpcCommonsTransportFactory transportFactory = new XmlRpcCommonsTransportFactory(client);
+                transportFactory.setHttpClient(new HttpClient(connectionManager));
+                client.setTransportFactory(transportFactory);
+            }
+            return client;
         } catch (MalformedURLException e) {
             throw new RuntimeException("Can not get XmlRpcClient from " + baseURL);
         }
     }
 
+    private Object execute(String methodName, Object[] params) throws XmlRpcException {
+        limiter.acquire();
+        try {
+            return rpcClient.execute(methodName, params);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    public ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Releases the pooled connections of this client.
+     */
+    public void close() {
+        if (connectionManager != null)
+            connectionManager.shutdown();
+    }
+
     /**
      * Get an initialized parameter map with login and password
      *
@@ -82,35 +147,154 @@ public class Bugzilla {
      * @return - Bug retrieved from Bugzilla, or null if no bug was found.
      */
     public Bug getBug(int bugzillaId) {
+        return getBug(bugzillaId, Bug.Profile.FULL);
+    }
+
+    /**
+     * Gets the bugId from bugzilla, fetching only the fields of the given profile. The other fields are loaded
+     * when first accessed.
+     * @param bugzillaId
+     * @param profile - the fields to fetch
+     * @return - Bug retrieved from Bugzilla, or null if no bug was found.
+     */
+    public Bug getBug(int bugzillaId, Bug.Profile profile) {
+        try {
+            Map<String, Object> bugMap = getBugFields(bugzillaId, profile.getFields());
+            return bugMap == null ? null : new Bug(bugMap, this);
+        } catch (XmlRpcException e) {
+            System.err.println("Can not get bug with id : " + bugzillaId);
+            e.printStackTrace(System.err);
+        }
+        return null;
+    }
+
+    /**
+     * Gets the given fields of a bug.
+     * @param bugzillaId
+     * @param fields - the Bug.get fields to include
+     * @return - the fields retrieved from Bugzilla, or null if no bug was found.
+     * @throws XmlRpcException - if Bugzilla couldn't be asked, so that the caller can tell it from a missing bug
+     */
+    Map<String, Object> getBugFields(int bugzillaId, Object[] fields) throws XmlRpcException {
         Map<Object, Object> params = getParameterMap();
-        params.put("include_fields", Bug.include_fields);
+        params.put("include_fields", withId(fields));
         params.put("ids", bugzillaId);
         params.put("permissive", true);
         Object[] objs = { params };
 
-        XmlRpcClient rpcClient = getClient();
+        Object resultObj = execute("Bug.get", objs);
+        @SuppressWarnings("unchecked")
+        Map<Object, Object> resultMap = (Map<Object, Object>) resultObj;
 
-        try {
-            Object resultObj = rpcClient.execute("Bug.get", objs);
+        Object[] bugs = (Object[]) resultMap.get("bugs");
+        if (bugs.length == 1) {
             @SuppressWarnings("unchecked")
-            Map<Object, Object> resultMap = (Map<Object, Object>) resultObj;
+            Map<String, Object> bugMap = (Map<String, Object>) bugs[0];
+            return bugMap;
+        } else {
+            System.out.println("Zero or more than one bug found with id: " + bugzillaId);
+        }
+        return null;
+    }
+
+    /**
+     * Gets the given bugs from bugzilla.
+     * @param bugzillaIds
+     * @return - map of the bugs retrieved from Bugzilla keyed by their id. Bugs which were not found are left out.
+     * @see #getBugs(Collection, Bug.Profile)
+     */
+    public Map<Integer, Bug> getBugs(Collection<Integer> bugzillaIds) {
+        return getBugs(bugzillaIds, Bug.Profile.FULL);
+    }
 
-            Object[] bugs = (Object[]) resultMap.get("bugs");
-            if (bugs.length == 1) {
+    /**
+     * Gets the given bugs from bugzilla. The ids are sent in chunks of at most {@link BugzillaSettings#getBatchSize()}
+     * ids per Bug.get call, so a whole polling cycle needs a few round trips instead of one per bug.
+     * @param bugzillaIds
+     * @param profile - the fields to fetch, the other fields are loaded when first accessed
+     * @return - map of the bugs retrieved from Bugzilla keyed by their id. Bugs which were not found are left out.
+     */
+    public Map<Integer, Bug> getBugs(Collection<Integer> bugzillaIds, Bug.Profile profile) {
+        final Map<Integer, Bug> result = new HashMap<Integer, Bug>();
+        for (Map<String, Object> bugMap : getBugMaps(bugzillaIds, profile.getFields())) {
+            Bug bug = new Bug(bugMap, this);
+            result.put(bug.getId(), bug);
+        }
+        return result;
+    }
+
+    /**
+     * Gets just the time of the last change of the given bugs, which is a cheap way to find out which of them
+     * changed since they were fetched.
+     * @param bugzillaIds
+     * @return - the last change time of the bugs keyed by their id. Bugs which were not found are left out. Null if
+     *         any of the Bug.get calls failed, so that a failure can't be taken for vanished bugs.
+     */
+    public Map<Integer, Date> getLastChangeTimes(Collection<Integer> bugzillaIds) {
+        final List<Map<String, Object>> bugMaps = new ArrayList<Map<String, Object>>();
+        if (!getBugMaps(bugzillaIds, new Object[] { "id", "last_change_time" }, bugMaps))
+            return null;
+
+        final Map<Integer, Date> result = new HashMap<Integer, Date>();
+        for (Map<String, Object> bugMap : bugMaps) {
+            result.put((Integer) bugMap.get("id"), (Date) bugMap.get("last_change_time"));
+        }
+        return result;
+    }
+
+    private List<Map<String, Object>> getBugMaps(Collection<Integer> bugzillaIds, Object[] fields) {
+        final List<Map<String, Object>> result = new ArrayList<Map<String, Object>>();
+        getBugMaps(bugzillaIds, fields, result);
+        return result;
+    }
+
+    /**
+     * Adds the fields of the given bugs to {@code result}.
+     * @return - whether all the Bug.get calls succeeded
+     */
+    private boolean getBugMaps(Collection<Integer> bugzillaIds, Object[] fields, List<Map<String, Object>> result) {
+        final List<Integer> ids = new ArrayList<Integer>(new LinkedHashSet<Integer>(bugzillaIds));
+        boolean succeeded = true;
+
+        for (int from = 0; from < ids.size(); from += settings.getBatchSize()) {
+            final List<Integer> chunk = ids.subList(from, Math.min(from + settings.getBatchSize(), ids.size()));
+
+            Map<Object, Object> params = getParameterMap();
+            params.put("include_fields", fields);
+            params.put("ids", chunk.toArray());
+            params.put("permissive", true);
+            Object[] objs = { params };
+
+            try {
+                Object resultObj = execute("Bug.get", objs);
                 @SuppressWarnings("unchecked")
-                Map<String, Object> bugMap = (Map<String, Object>) bugs[0];
-                Bug bug = new Bug(bugMap);
-                return bug;
-            } else {
-                System.out.println("Zero or more than one bug found with id: " + bugzillaId);
+                Map<Object, Object> resultMap = (Map<Object, Object>) resultObj;
+
+                Object[] bugs = (Object[]) resultMap.get("bugs");
+                for (Object obj : bugs) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> bugMap = (Map<String, Object>) obj;
+                    result.add(bugMap);
+                }
+            } catch (XmlRpcException e) {
+                System.err.println("Can not get bugs with ids : " + chunk);
+                e.printStackTrace(System.err);
+                succeeded = false;
             }
-        } catch (XmlRpcException e) {
-            System.err.println("Can not get bug with id : " + bugzillaId);
-            e.printStackTrace(System.err);
-        } finally {
-            rpcClient = null;
         }
-        return null;
+
+        return succeeded;
+    }
+
+    private static Object[] withId(Object[] fields) {
+        for (Object field : fields) {
+            if ("id".equals(field))
+                return fields;
+        }
+        Object[] result = new Object[fields.length + 1];
+        result[0] = "id";
+        System.arraycopy(fields, 0, result, 1, fields.length);
+        return result;
     }
 
     /**
@@ -126,17 +310,11 @@ public class Bugzilla {
         params.put("comment", comment);
         Object[] objs = { params };
 
-        XmlRpcClient rpcClient = getClient();
-
-        if (rpcClient != null) {
-            try {
-                rpcClient.execute("Bug.add_comment", objs);
-                return true;
-            } catch (XmlRpcException e) {
-                e.printStackTrace();
-            } finally {
-                rpcClient = null;
-            }
+        try {
+            execute("Bug.add_comment", objs);
+            return true;
+        } catch (XmlRpcException e) {
+            e.printStackTrace();
         }
         return false;
     }
@@ -155,14 +333,11 @@ public class Bugzilla {
         params.put("status", status);
         Object[] objParams = { params };
 
-        XmlRpcClient rpcClient = getClient();
         try {
-            rpcClient.execute("Bug.update", objParams);
+            execute("Bug.update", objParams);
             return true;
         } catch (XmlRpcException e) {
             e.printStackTrace();
-        } finally {
-            rpcClient = null;
         }
         return false;
     }
@@ -174,14 +349,11 @@ public class Bugzilla {
         params.put("target_milestone", taregtMilestone);
         Object[] objParams = { params };
 
-        XmlRpcClient rpcClient = getClient();
         try {
-            rpcClient.execute("Bug.update", objParams);
+            execute("Bug.update", objParams);
             return true;
         } catch (XmlRpcException e) {
             e.printStackTrace();
-        } finally {
-            rpcClient = null;
         }
         return false;
     }
@@ -193,14 +365,11 @@ public class Bugzilla {
         params.put("target_release", targetRelease);
         Object[] objParams = { params };
 
-        XmlRpcClient rpcClient = getClient();
         try {
-            rpcClient.execute("Bug.update", objParams);
+            execute("Bug.update", objParams);
             return true;
         } catch (XmlRpcException e) {
             e.printStackTrace();
-        } finally {
-            rpcClient = null;
         }
         return false;
     }
@@ -235,15 +404,11 @@ public class Bugzilla {
         params.put("permissive", true);
         Object[] objs = { params };
 
-        XmlRpcClient rpcClient = getClient();
-
         try {
-            rpcClient.execute("Flag.update", objs);
+            execute("Flag.update", objs);
             return true;
         } catch (XmlRpcException e) {
             e.printStackTrace();
-        } finally {
-            rpcClient = null;
         }
         return false;
     }
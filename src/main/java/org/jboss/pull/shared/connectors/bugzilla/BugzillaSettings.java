@@ -0,0 +1,140 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.pull.shared.connectors.bugzilla;
+
+import org.jboss.pull.shared.Util;
+
+import java.util.Properties;
+
+/**
+ * Connection settings of the {@link Bugzilla} client, read from the processor properties.
+ *
+ * @author navssurtani
+ */
+public class BugzillaSettings {
+
+    public static final String BATCH_SIZE_PROPERTY = "bugzilla.batch.size";
+    public static final String POOL_SIZE_PROPERTY = "bugzilla.pool.size";
+    public static final String CONNECT_TIMEOUT_PROPERTY = "bugzilla.connect.timeout";
+    public static final String READ_TIMEOUT_PROPERTY = "bugzilla.read.timeout";
+    public static final String GZIP_RESPONSES_PROPERTY = "bugzilla.gzip";
+    public static final String GZIP_REQUESTS_PROPERTY = "bugzilla.gzip.requests";
+    public static final String MAX_CONCURRENT_PROPERTY = "bugzilla.max.concurrent";
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+    public static final int DEFAULT_POOL_SIZE = 10;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    public static final int DEFAULT_READ_TIMEOUT = 60000;
+    public static final int DEFAULT_MAX_CONCURRENT = 4;
+
+    private final int batchSize;
+    private final int poolSize;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final boolean gzipResponses;
+    private final boolean gzipRequests;
+    private final int maxConcurrent;
+
+    /**
+     * @param batchSize - maximum number of ids sent in a single Bug.get call
+     * @param poolSize - maximum number of pooled keep-alive connections, 0 disables the pooled transport
+     * @param connectTimeout - connect timeout in milliseconds, 0 means no timeout
+     * @param readTimeout - socket read timeout in milliseconds, 0 means no timeout
+     * @param gzipResponses - whether to ask the server for gzip compressed responses
+     * @param gzipRequests - whether to gzip compress the requests
+     */
+    public BugzillaSettings(int batchSize, int poolSize, int connectTimeout, int readTimeout, boolean gzipResponses,
+                            boolean gzipRequests) {
+        this(batchSize, poolSize, connectTimeout, readTimeout, gzipResponses, gzipRequests, DEFAULT_MAX_CONCURRENT);
+    }
+
+    /**
+     * @param maxConcurrent - maximum number of calls in flight at once, 0 means no limit
+     */
+    public BugzillaSettings(int batchSize, int poolSize, int connectTimeout, int readTimeout, boolean gzipResponses,
+                            boolean gzipRequests, int maxConcurrent) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size has to be positive: " + batchSize);
+        if (poolSize < 0 || connectTimeout < 0 || readTimeout < 0 || maxConcurrent < 0)
+            throw new IllegalArgumentException("Pool size, timeouts and concurrency limit must not be negative");
+
+        this.batchSize = batchSize;
+        this.poolSize = poolSize;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.gzipResponses = gzipResponses;
+        this.gzipRequests = gzipRequests;
+        this.maxConcurrent = maxConcurrent;
+    }
+
+    public static BugzillaSettings getDefault() {
+        return new BugzillaSettings(DEFAULT_BATCH_SIZE, DEFAULT_POOL_SIZE, DEFAULT_CONNECT_TIMEOUT,
+                DEFAULT_READ_TIMEOUT, true, false);
+    }
+
+    public static BugzillaSettings fromProperties(Properties props) {
+        return new BugzillaSettings(getInt(props, BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE),
+                getInt(props, POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE),
+                getInt(props, CONNECT_TIMEOUT_PROPERTY, DEFAULT_CONNECT_TIMEOUT),
+                getInt(props, READ_TIMEOUT_PROPERTY, DEFAULT_READ_TIMEOUT),
+                Boolean.parseBoolean(Util.get(props, GZIP_RESPONSES_PROPERTY, "true").trim()),
+                Boolean.parseBoolean(Util.get(props, GZIP_REQUESTS_PROPERTY, "false").trim()),
+                getInt(props, MAX_CONCURRENT_PROPERTY, DEFAULT_MAX_CONCURRENT));
+    }
+
+    private static int getInt(Properties props, String name, int defaultValue) {
+        return Integer.parseInt(Util.get(props, name, String.valueOf(defaultValue)).trim());
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public boolean isPooled() {
+        return poolSize > 0;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public boolean isGzipResponses() {
+        return gzipResponses;
+    }
+
+    public boolean isGzipRequests() {
+        return gzipRequests;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+}
@@ -49,5 +49,11 @@ public abstract class AbstractCommonIssueHelper implements IssueHelper {
 
     }
 
+    /**
+     * Exists to test the helpers without a configuration file
+     */
+    protected AbstractCommonIssueHelper(final Properties fromUtil) {
+        this.fromUtil = fromUtil;
+    }
 
 }
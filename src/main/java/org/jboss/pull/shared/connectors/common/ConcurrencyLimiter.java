@@ -0,0 +1,126 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.common;
+
+import org.jboss.pull.shared.Util;
+
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the number of calls in flight to a single remote service, e.g. when pull requests are evaluated in
+ * parallel. Every call has to be wrapped in {@link #acquire()} and {@link #release()}.
+ *
+ * @author navssurtani
+ */
+public class ConcurrencyLimiter {
+
+    // calls made by each thread to any of the services, tells what a piece of work in that thread cost
+    private static final ThreadLocal<long[]> THREAD_CALLS = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    private final String service;
+    private final int limit;
+    // null if the number of concurrent calls is not limited
+    private final Semaphore permits;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+
+    /**
+     * @param service - name of the remote service, for logging
+     * @param limit - maximum number of concurrent calls, 0 means no limit
+     */
+    public ConcurrencyLimiter(String service, int limit) {
+        if (limit < 0)
+            throw new IllegalArgumentException("Concurrency limit must not be negative: " + limit);
+
+        this.service = service;
+        this.limit = limit;
+        this.permits = limit > 0 ? new Semaphore(limit, true) : null;
+    }
+
+    /**
+     * Reads the limit from the {@code <service>.max.concurrent} property.
+     */
+    public static ConcurrencyLimiter fromProperties(Properties props, String service, int defaultLimit) {
+        return new ConcurrencyLimiter(service, Integer.parseInt(Util.get(props, service + ".max.concurrent",
+                String.valueOf(defaultLimit)).trim()));
+    }
+
+    /**
+     * Blocks until the call may proceed.
+     */
+    public void acquire() {
+        calls.incrementAndGet();
+        THREAD_CALLS.get()[0]++;
+        if (permits != null && !permits.tryAcquire()) {
+            waits.incrementAndGet();
+            permits.acquireUninterruptibly();
+        }
+    }
+
+    public void release() {
+        if (permits != null)
+            permits.release();
+    }
+
+    public String getService() {
+        return service;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return - number of calls made so far
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * @return - number of calls which had to wait for another one to finish
+     */
+    public long getWaits() {
+        return waits.get();
+    }
+
+    /**
+     * @return - number of calls the current thread has made so far to all the limited services
+     */
+    public static long getCurrentThreadCalls() {
+        return THREAD_CALLS.get()[0];
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrencyLimiter[service=" + service + ", limit=" + limit + ", calls=" + calls + ", waits=" + waits
+                + "]";
+    }
+}
@@ -52,11 +52,23 @@ public class Flag implements Serializable {
     private String name;
     private String setter;
     private Status status;
+    // whether the flag is shared through the FlagVocabulary, and the ordinal of its name there
+    private final boolean shared;
+    private final int ordinal;
 
     public Flag(String name, String setter, Status status) {
+        this(name, setter, status, false, -1);
+    }
+
+    /**
+     * Creates a flag shared through the {@link FlagVocabulary}, which cannot be changed.
+     */
+    Flag(String name, String setter, Status status, boolean shared, int ordinal) {
         this.name = name;
         this.setter = setter;
         this.status = status;
+        this.shared = shared;
+        this.ordinal = ordinal;
     }
 
     public String getName() {
@@ -64,6 +76,7 @@ public class Flag implements Serializable {
     }
 
     public void setName(String name) {
+        checkNotShared();
         this.name = name;
     }
 
@@ -72,6 +85,7 @@ public class Flag implements Serializable {
     }
 
     public void setSetter(String setter) {
+        checkNotShared();
         this.setter = setter;
     }
 
@@ -80,9 +94,37 @@ public class Flag implements Serializable {
     }
 
     public void setStatus(Status status) {
+        checkNotShared();
         this.status = status;
     }
 
+    /**
+     * @return the ordinal of the name in the {@link FlagVocabulary} if the flag is shared and its name has one, -1
+     *         otherwise
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * @return whether this is one of the flags shared by all the issues, see {@link FlagVocabulary#flag}
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /**
+     * The ordinals are only valid in the JVM which gave them, so a shared flag is interned again when read back.
+     */
+    private Object readResolve() {
+        return shared ? FlagVocabulary.flag(name, setter, status) : this;
+    }
+
+    private void checkNotShared() {
+        if (isShared())
+            throw new UnsupportedOperationException("Shared flag " + name + " cannot be changed");
+    }
+
     public String toString() {
         return setter + " set " + name + " to " + status + "\n";
     }
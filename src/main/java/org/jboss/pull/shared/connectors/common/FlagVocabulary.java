@@ -0,0 +1,154 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The flag names seen by the processor. The first 64 names get an ordinal, so that a set of them fits in a
+ * {@code long} mask and checking that an issue has all the required flags set is a single mask comparison. Flags are
+ * interned: all the issues share one immutable {@link Flag} per name, setter and status.
+ *
+ * @author navssurtani
+ */
+public final class FlagVocabulary {
+
+    /**
+     * Number of names which get an ordinal.
+     */
+    public static final int MAX_ORDINALS = Long.SIZE;
+
+    private static final String NO_SETTER = "";
+
+    private static final ConcurrentMap<String, Name> names = new ConcurrentHashMap<String, Name>();
+    private static final AtomicReferenceArray<String> byOrdinal = new AtomicReferenceArray<String>(MAX_ORDINALS);
+
+    private FlagVocabulary() {
+    }
+
+    /**
+     * Returns the shared flag with the given name, setter and status.
+     */
+    public static Flag flag(String name, String setter, Flag.Status status) {
+        return name(name).flag(setter, status);
+    }
+
+    /**
+     * @return the ordinal of the name, or -1 if all the ordinals have been given to other names
+     */
+    public static int ordinal(String name) {
+        return name(name).ordinal;
+    }
+
+    /**
+     * @return the mask of the names, or null if one of them has no ordinal
+     */
+    public static Long mask(Collection<String> names) {
+        long mask = 0L;
+        for (String name : names) {
+            final int ordinal = ordinal(name);
+            if (ordinal < 0)
+                return null;
+            mask |= 1L << ordinal;
+        }
+        return mask;
+    }
+
+    /**
+     * @return the mask of the names of the flags set to '+'
+     */
+    public static long positiveMask(Collection<Flag> flags) {
+        long mask = 0L;
+        for (Flag flag : flags) {
+            if (flag.getStatus() == Flag.Status.POSITIVE) {
+                final int ordinal = flag.getOrdinal() >= 0 ? flag.getOrdinal() : ordinal(flag.getName());
+                if (ordinal >= 0)
+                    mask |= 1L << ordinal;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * @return the names in the mask, in the order of their ordinals
+     */
+    public static List<String> names(long mask) {
+        final List<String> result = new ArrayList<String>(Long.bitCount(mask));
+        for (long rest = mask; rest != 0L; rest &= rest - 1) {
+            result.add(byOrdinal.get(Long.numberOfTrailingZeros(rest)));
+        }
+        return result;
+    }
+
+    private static Name name(String name) {
+        Name entry = names.get(name);
+        if (entry != null)
+            return entry;
+
+        synchronized (names) {
+            entry = names.get(name);
+            if (entry == null) {
+                final int ordinal = names.size() < MAX_ORDINALS ? names.size() : -1;
+                entry = new Name(name, ordinal);
+                if (ordinal >= 0)
+                    byOrdinal.set(ordinal, name);
+                names.put(name, entry);
+            }
+        }
+        return entry;
+    }
+
+    private static final class Name {
+        private final String name;
+        private final int ordinal;
+        // the flags of each setter, indexed by status
+        private final ConcurrentMap<String, AtomicReferenceArray<Flag>> flags =
+                new ConcurrentHashMap<String, AtomicReferenceArray<Flag>>();
+
+        Name(String name, int ordinal) {
+            this.name = name;
+            this.ordinal = ordinal;
+        }
+
+        Flag flag(String setter, Flag.Status status) {
+            final String key = setter == null ? NO_SETTER : setter;
+            AtomicReferenceArray<Flag> statuses = flags.get(key);
+            if (statuses == null) {
+                final AtomicReferenceArray<Flag> created = new AtomicReferenceArray<Flag>(Flag.Status.values().length);
+                statuses = flags.putIfAbsent(key, created);
+                if (statuses == null)
+                    statuses = created;
+            }
+
+            final Flag flag = statuses.get(status.ordinal());
+            if (flag != null)
+                return flag;
+            statuses.compareAndSet(status.ordinal(), null, new Flag(name, setter, status, true, ordinal));
+            return statuses.get(status.ordinal());
+        }
+    }
+}
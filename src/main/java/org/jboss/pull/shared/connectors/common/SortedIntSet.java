@@ -0,0 +1,121 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.common;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable set of ints kept in a sorted array, e.g. the ids of the bugs a bug blocks. It takes a fraction of the
+ * memory of a {@code HashSet<Integer>} and {@link #contains(int)} is a binary search without boxing.
+ *
+ * @author navssurtani
+ */
+public final class SortedIntSet extends AbstractSet<Integer> implements Serializable {
+
+    private static final long serialVersionUID = 2816453375318563427L;
+
+    public static final SortedIntSet EMPTY = new SortedIntSet(new int[0]);
+
+    private final int[] values;
+
+    private SortedIntSet(int[] values) {
+        this.values = values;
+    }
+
+    /**
+     * Creates the set of the given {@code Integer}s, e.g. as returned by an XML-RPC call.
+     */
+    public static SortedIntSet of(Object[] integers) {
+        if (integers == null || integers.length == 0)
+            return EMPTY;
+
+        final int[] values = new int[integers.length];
+        for (int i = 0; i < integers.length; i++) {
+            values[i] = (Integer) integers[i];
+        }
+        return of(values);
+    }
+
+    public static SortedIntSet of(int... integers) {
+        if (integers.length == 0)
+            return EMPTY;
+
+        final int[] values = integers.clone();
+        Arrays.sort(values);
+        // drop the duplicates
+        int size = 1;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] != values[size - 1])
+                values[size++] = values[i];
+        }
+        return new SortedIntSet(size == values.length ? values : Arrays.copyOf(values, size));
+    }
+
+    public boolean contains(int value) {
+        return Arrays.binarySearch(values, value) >= 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Integer && contains(((Integer) o).intValue());
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @return a copy of the values, in ascending order
+     */
+    public int[] toIntArray() {
+        return values.clone();
+    }
+
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < values.length;
+            }
+
+            @Override
+            public Integer next() {
+                if (next >= values.length)
+                    throw new NoSuchElementException();
+                return values[next++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.common;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps one copy of the strings which repeat across many issues, like products, priorities, versions or the e-mails
+ * of the people working on them, and builds compact immutable collections of them. It is meant for values from a
+ * limited vocabulary only, since it never forgets a string.
+ *
+ * @author navssurtani
+ */
+public final class StringPool {
+
+    private static final ConcurrentMap<String, String> pool = new ConcurrentHashMap<String, String>();
+
+    private StringPool() {
+    }
+
+    /**
+     * @return the pooled copy of the string, or null if it is null
+     */
+    public static String intern(String value) {
+        if (value == null)
+            return null;
+
+        final String pooled = pool.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+
+    /**
+     * @return an immutable list of the pooled copies of the strings
+     */
+    public static List<String> list(Object[] values) {
+        if (values.length == 0)
+            return Collections.emptyList();
+        if (values.length == 1)
+            return Collections.singletonList(intern((String) values[0]));
+
+        final String[] strings = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            strings[i] = intern((String) values[i]);
+        }
+        return Collections.unmodifiableList(Arrays.asList(strings));
+    }
+
+    /**
+     * @return an immutable set of the pooled copies of the strings, which keeps their order
+     */
+    public static Set<String> set(Object[] values) {
+        if (values.length == 0)
+            return Collections.emptySet();
+        if (values.length == 1)
+            return Collections.singleton(intern((String) values[0]));
+
+        // the sets are small, e.g. the target releases of a bug, an array is enough to back them
+        final String[] strings = new String[values.length];
+        int size = 0;
+        for (Object value : values) {
+            final String string = intern((String) value);
+            if (!contains(strings, size, string))
+                strings[size++] = string;
+        }
+        return new ArraySet(size == strings.length ? strings : Arrays.copyOf(strings, size));
+    }
+
+    private static boolean contains(String[] strings, int size, String pooled) {
+        for (int i = 0; i < size; i++) {
+            // equal pooled strings are the same
+            if (strings[i] == pooled)
+                return true;
+        }
+        return false;
+    }
+
+    private static final class ArraySet extends AbstractSet<String> implements Serializable {
+        private static final long serialVersionUID = -6081384232524720711L;
+
+        private final String[] values;
+
+        ArraySet(String[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            for (String value : values) {
+                if (value.equals(o))
+                    return true;
+            }
+            return false;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            // the iterator of Arrays.asList doesn't support remove()
+            return Arrays.asList(values).iterator();
+        }
+
+        @Override
+        public int size() {
+            return values.length;
+        }
+    }
+}
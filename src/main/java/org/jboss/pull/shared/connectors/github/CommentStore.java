@@ -0,0 +1,321 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_COMMENTS;
+import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_ISSUES;
+import static org.eclipse.egit.github.core.client.IGitHubConstants.SEGMENT_REPOS;
+
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.egit.github.core.Comment;
+import org.eclipse.egit.github.core.IRepositoryIdProvider;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Keeps the comment history of pull requests between polls. The first poll of a pull request fetches all its
+ * comments, the later ones only ask github for the comments created or updated since the last seen change, so the
+ * cost of a poll depends on the new activity rather than on the length of the discussion.
+ * <p>
+ * Deleted comments are not noticed, {@link #forget(IRepositoryIdProvider, int)} makes the next poll start over.
+ * <p>
+ * The last comment matching a pattern can also be searched newest first, without reading the whole discussion.
+ *
+ * @author navssurtani
+ */
+public class CommentStore {
+
+    private static final int PAGE_SIZE = 100;
+    private static final Pattern PAGE_PARAM = Pattern.compile("[?&]page=(\\d+)");
+
+    private final GitHubClient client;
+    private final int maxThreads;
+
+    private final Map<String, CommentThread> threads;
+
+    /**
+     * @param client - the client to fetch the comments with
+     * @param maxThreads - maximum number of pull requests to remember, the least recently polled ones are dropped
+     */
+    public CommentStore(GitHubClient client, final int maxThreads) {
+        this.client = client;
+        this.maxThreads = maxThreads;
+        this.threads = new LinkedHashMap<String, CommentThread>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CommentThread> eldest) {
+                return size() > CommentStore.this.maxThreads;
+            }
+        };
+    }
+
+    /**
+     * Returns all the comments of the pull request in the order they were created, fetching only what has changed
+     * since the previous call.
+     */
+    public List<Comment> getComments(IRepositoryIdProvider repository, int number) throws IOException {
+        final String key = repository.generateId() + "#" + number;
+        CommentThread thread;
+        synchronized (threads) {
+            thread = threads.get(key);
+            if (thread == null) {
+                thread = new CommentThread();
+                threads.put(key, thread);
+            }
+        }
+
+        synchronized (thread) {
+            for (Comment comment : fetch(getUri(repository, number), thread.lastUpdate)) {
+                thread.merge(comment);
+            }
+            return new ArrayList<Comment>(thread.comments);
+        }
+    }
+
+    /**
+     * Finds the last comment of the pull request which contains the pattern. For a pull request already in the store
+     * the history is synchronized and searched. Otherwise the pages are read newest first, starting with the last one
+     * the {@code Link} header points to, until a match is found.
+     *
+     * @param maxPages - maximum number of pages to read, the older comments are not searched
+     * @return the last matching comment, or null if there is none in the pages read
+     */
+    public Comment findLastMatching(IRepositoryIdProvider repository, int number, final Pattern pattern, int maxPages)
+            throws IOException {
+        return findLast(repository, number, matching(pattern), maxPages);
+    }
+
+    /**
+     * @return a filter accepting the comments which contain the pattern
+     */
+    public static Filter matching(final Pattern pattern) {
+        return new Filter() {
+            @Override
+            public boolean accept(Comment comment) {
+                return comment.getBody() != null && pattern.matcher(comment.getBody()).find();
+            }
+        };
+    }
+
+    /**
+     * Finds the last comment of the pull request accepted by the filter, the same way as
+     * {@link #findLastMatching(IRepositoryIdProvider, int, Pattern, int)}.
+     */
+    public Comment findLast(IRepositoryIdProvider repository, int number, Filter filter, int maxPages)
+            throws IOException {
+        return search(repository, number, maxPages).findLast(filter);
+    }
+
+    /**
+     * Starts a search of the comments of the pull request which keeps the pages it has read, so that looking for
+     * several kinds of comments reads each page at most once.
+     *
+     * @param maxPages - maximum number of pages to read, the older comments are not searched
+     */
+    public Search search(IRepositoryIdProvider repository, int number, int maxPages) {
+        return new Search(repository, number, maxPages);
+    }
+
+    /**
+     * @return the last of the comments accepted by the filter, or null if there is none
+     */
+    public static Comment findLast(List<Comment> comments, Filter filter) {
+        for (int i = comments.size() - 1; i >= 0; i--) {
+            final Comment comment = comments.get(i);
+            if (filter.accept(comment))
+                return comment;
+        }
+        return null;
+    }
+
+    public void forget(IRepositoryIdProvider repository, int number) {
+        synchronized (threads) {
+            threads.remove(repository.generateId() + "#" + number);
+        }
+    }
+
+    private List<Comment> fetch(String uri, Date since) throws IOException {
+        final List<Comment> comments = new ArrayList<Comment>();
+        int page = 1;
+        while (true) {
+            final GitHubResponse response = getPage(uri, page, since);
+            comments.addAll(getBody(response));
+            if (response.getNext() == null)
+                return comments;
+            page++;
+        }
+    }
+
+    private GitHubResponse getPage(String uri, int page, Date since) throws IOException {
+        final Map<String, String> params = new HashMap<String, String>();
+        params.put("page", String.valueOf(page));
+        params.put("per_page", String.valueOf(PAGE_SIZE));
+        if (since != null)
+            params.put("since", formatDate(since));
+
+        final GitHubRequest request = new GitHubRequest();
+        request.setUri(uri);
+        request.setParams(params);
+        request.setType(new TypeToken<List<Comment>>() {
+        }.getType());
+        return client.get(request);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Comment> getBody(GitHubResponse response) {
+        return (List<Comment>) response.getBody();
+    }
+
+    private static String getUri(IRepositoryIdProvider repository, int number) {
+        return SEGMENT_REPOS + "/" + repository.generateId() + SEGMENT_ISSUES + "/" + number + SEGMENT_COMMENTS;
+    }
+
+    private static int getPageNumber(String link) {
+        final Matcher matcher = PAGE_PARAM.matcher(link);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 1;
+    }
+
+    private static String formatDate(Date date) {
+        final DateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(date);
+    }
+
+    /**
+     * The known comments of a single pull request.
+     */
+    private static class CommentThread {
+        private final List<Comment> comments = new ArrayList<Comment>();
+        // position of each comment in the list, to replace the edited ones
+        private final Map<Long, Integer> positions = new HashMap<Long, Integer>();
+        private Date lastUpdate;
+
+        private void merge(Comment comment) {
+            final Integer position = positions.get(comment.getId());
+            if (position != null) {
+                comments.set(position, comment);
+            } else {
+                positions.put(comment.getId(), comments.size());
+                comments.add(comment);
+            }
+
+            final Date updated = comment.getUpdatedAt() != null ? comment.getUpdatedAt() : comment.getCreatedAt();
+            if (updated != null && (lastUpdate == null || updated.after(lastUpdate)))
+                lastUpdate = updated;
+        }
+    }
+
+    /**
+     * The comments of a pull request read so far by the searches for its last comments. For a pull request already in
+     * the store the history is synchronized once and searched. Otherwise the pages are read newest first, starting
+     * with the last one the {@code Link} header points to, and only as far as a search needs.
+     */
+    public class Search {
+        private final IRepositoryIdProvider repository;
+        private final int number;
+        private final int maxPages;
+
+        // the pages read so far, newest first
+        private final List<List<Comment>> pages = new ArrayList<List<Comment>>();
+        private GitHubResponse first;
+        private int nextPage;
+        private boolean exhausted;
+
+        private Search(IRepositoryIdProvider repository, int number, int maxPages) {
+            this.repository = repository;
+            this.number = number;
+            this.maxPages = maxPages;
+            this.exhausted = maxPages < 1;
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        /**
+         * @return the last comment accepted by the filter, or null if there is none in the pages within the bound
+         */
+        public synchronized Comment findLast(Filter filter) throws IOException {
+            for (List<Comment> page : pages) {
+                final Comment match = CommentStore.findLast(page, filter);
+                if (match != null)
+                    return match;
+            }
+            while (!exhausted) {
+                final Comment match = CommentStore.findLast(readNextPage(), filter);
+                if (match != null)
+                    return match;
+            }
+            return null;
+        }
+
+        private List<Comment> readNextPage() throws IOException {
+            if (first == null) {
+                final boolean known;
+                synchronized (threads) {
+                    known = threads.containsKey(repository.generateId() + "#" + number);
+                }
+                if (known) {
+                    final List<Comment> comments = getComments(repository, number);
+                    pages.add(comments);
+                    exhausted = true;
+                    return comments;
+                }
+
+                // the first page is fetched to find the last one, it only counts towards maxPages if it is searched
+                final GitHubResponse response = getPage(getUri(repository, number), 1, null);
+                nextPage = response.getLast() != null ? getPageNumber(response.getLast()) : 1;
+                first = response;
+            }
+
+            final List<Comment> comments = nextPage == 1 ? getBody(first)
+                    : getBody(getPage(getUri(repository, number), nextPage, null));
+            pages.add(comments);
+            nextPage--;
+            exhausted = nextPage < 1 || pages.size() >= maxPages;
+            return comments;
+        }
+    }
+
+    /**
+     * Selects the comment to look for.
+     */
+    public interface Filter {
+        boolean accept(Comment comment);
+    }
+}
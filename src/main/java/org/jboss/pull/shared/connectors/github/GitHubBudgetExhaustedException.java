@@ -0,0 +1,49 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.util.Date;
+
+/**
+ * Thrown instead of making a github call when the rate limit budget left for its priority is used up, or when github
+ * refuses calls for longer than we are willing to wait. Callers must not take it for an empty result.
+ *
+ * @author navssurtani
+ */
+public class GitHubBudgetExhaustedException extends RuntimeException {
+
+    private static final long serialVersionUID = -4318806927640352145L;
+
+    private final Date retryAt;
+
+    public GitHubBudgetExhaustedException(String message, Date retryAt) {
+        super(message + ", retry at " + retryAt);
+        this.retryAt = retryAt;
+    }
+
+    /**
+     * @return the time github is expected to accept calls again
+     */
+    public Date getRetryAt() {
+        return retryAt;
+    }
+}
@@ -36,17 +36,23 @@ import org.eclipse.egit.github.core.Milestone;
 import org.eclipse.egit.github.core.PullRequest;
 import org.eclipse.egit.github.core.RepositoryBranch;
 import org.eclipse.egit.github.core.RepositoryId;
-import org.eclipse.egit.github.core.client.GitHubClient;
 import org.eclipse.egit.github.core.service.CommitService;
 import org.eclipse.egit.github.core.service.IssueService;
 import org.eclipse.egit.github.core.service.MilestoneService;
 import org.eclipse.egit.github.core.service.PullRequestService;
 import org.eclipse.egit.github.core.service.RepositoryService;
 import org.eclipse.egit.github.core.Issue;
+import org.jboss.pull.shared.CommentClassifier;
 import org.jboss.pull.shared.Util;
+import org.jboss.pull.shared.connectors.common.ConcurrencyLimiter;
 
 public class GithubHelper {
 
+    private static final int DEFAULT_MAX_CONCURRENT = 4;
+    private static final int DEFAULT_COMMENT_STORE_SIZE = 1000;
+    private static final int DEFAULT_ETAG_CACHE_SIZE = 2000;
+    private static final int DEFAULT_COMMENT_SEARCH_PAGES = 5;
+
     private final String GITHUB_ORGANIZATION;
     private final String GITHUB_REPO;
     private final String GITHUB_LOGIN;
@@ -54,12 +60,18 @@ public class GithubHelper {
 
     private final IRepositoryIdProvider repository;
 
+    private final ManagedGitHubClient client;
+
     private final CommitService commitService;
     private final IssueService issueService;
     private final PullRequestService pullRequestService;
     private final MilestoneService milestoneService;
     private final RepositoryService repositoryService;
 
+    private final CommentStore commentStore;
+    private final int commentSearchPages;
+    private final MergedStateStore mergedStates;
+
     /**
      * Exists to create mock objects for testing
      */
@@ -70,11 +82,36 @@ public class GithubHelper {
         GITHUB_TOKEN = null;
 
         repository = null;
+        client = null;
         commitService = null;
         issueService = null;
         pullRequestService = null;
         milestoneService = null;
         repositoryService = null;
+        commentStore = null;
+        commentSearchPages = 0;
+        mergedStates = null;
+    }
+
+    /**
+     * Exists to test the merged state lookups against mocked services
+     */
+    public GithubHelper(PullRequestService pullRequestService, IssueService issueService, MergedStateStore mergedStates) {
+        GITHUB_ORGANIZATION = null;
+        GITHUB_REPO = null;
+        GITHUB_LOGIN = null;
+        GITHUB_TOKEN = null;
+
+        repository = null;
+        client = null;
+        commitService = null;
+        this.issueService = issueService;
+        this.pullRequestService = pullRequestService;
+        milestoneService = null;
+        repositoryService = null;
+        commentStore = null;
+        commentSearchPages = 0;
+        this.mergedStates = mergedStates;
     }
 
     public GithubHelper(final String configurationFileProperty, final String configurationFileDefault) throws Exception {
@@ -87,7 +124,9 @@ public class GithubHelper {
             GITHUB_LOGIN = Util.require(props, "github.login");
             GITHUB_TOKEN = Util.get(props, "github.token");
 
-            GitHubClient client = new GitHubClient();
+            client = new ManagedGitHubClient(ConcurrencyLimiter.fromProperties(props, "github",
+                    DEFAULT_MAX_CONCURRENT), Integer.parseInt(Util.get(props, "github.etag.cache.size",
+                    String.valueOf(DEFAULT_ETAG_CACHE_SIZE))), RequestScheduler.fromProperties(props));
             if (GITHUB_TOKEN != null && GITHUB_TOKEN.length() > 0)
                 client.setOAuth2Token(GITHUB_TOKEN);
             repository = RepositoryId.create(GITHUB_ORGANIZATION, GITHUB_REPO);
@@ -96,6 +135,11 @@ public class GithubHelper {
             pullRequestService = new PullRequestService(client);
             milestoneService = new MilestoneService(client);
             repositoryService = new RepositoryService(client);
+            commentStore = new CommentStore(client, Integer.parseInt(Util.get(props, "github.comment.store.size",
+                    String.valueOf(DEFAULT_COMMENT_STORE_SIZE))));
+            commentSearchPages = Integer.parseInt(Util.get(props, "github.comment.search.pages",
+                    String.valueOf(DEFAULT_COMMENT_SEARCH_PAGES)));
+            mergedStates = MergedStateStore.loadMergedStateStore(Util.get(props, "github.merged.state.file"));
 
         } catch (Exception e) {
             System.err.printf("Cannot initialize: %s\n", e);
@@ -123,14 +167,22 @@ public class GithubHelper {
         return getPullRequest(RepositoryId.create(upstreamOrganization, upstreamRepository), id);
     }
 
+    public PullRequest getPullRequest(PullRequestCoordinates coordinates) {
+        return getPullRequest(coordinates, coordinates.getNumber());
+    }
+
     private PullRequest getPullRequest(IRepositoryIdProvider repository, int id) {
         PullRequest pullRequest = null;
+        // single pull request lookups go before background polling
+        final RequestScheduler.Priority previous = RequestScheduler.enter(RequestScheduler.Priority.INTERACTIVE);
         try {
             pullRequest = pullRequestService.getPullRequest(repository, id);
         } catch (IOException e) {
             System.err.printf("Couldn't retrieve PullRequestId: '" + id + "' from Repository: '" + repository.generateId()
                     + "'");
             e.printStackTrace();
+        } finally {
+            RequestScheduler.restore(previous);
         }
         return pullRequest;
     }
@@ -194,21 +246,21 @@ public class GithubHelper {
     }
 
     public Issue getIssue(PullRequest pullRequest) {
-        int id = getIssueIdFromIssueURL(pullRequest.getIssueUrl());
+        // the issue of a pull request has its number
+        int id = pullRequest.getNumber();
         Issue issue = null;
+        final RequestScheduler.Priority previous = RequestScheduler.enter(RequestScheduler.Priority.INTERACTIVE);
         try {
             issue = issueService.getIssue(repository, id);
         } catch (IOException e) {
             System.err.printf("Problem getting issue. id: " + id);
             e.printStackTrace(System.err);
+        } finally {
+            RequestScheduler.restore(previous);
         }
         return issue;
     }
 
-    private int getIssueIdFromIssueURL(String issueURL) {
-        return Integer.valueOf(issueURL.substring(issueURL.lastIndexOf("/") + 1));
-    }
-
     public Issue editIssue(Issue issue) {
         Issue returnIssue = null;
         try {
@@ -220,46 +272,175 @@ public class GithubHelper {
         return returnIssue;
     }
 
+    /**
+     * @return the client all the github calls go through, e.g. to read its statistics
+     */
+    public ManagedGitHubClient getClient() {
+        return client;
+    }
+
     public String getGithubLogin() {
         return GITHUB_LOGIN;
     }
 
     public boolean isMerged(PullRequest pullRequest) {
+        return isMerged(pullRequest, pullRequest == null ? null : PullRequestCoordinates.of(pullRequest));
+    }
+
+    /**
+     * Tells whether the pull request is merged. Github is only asked about closed pull requests whose state isn't known
+     * from a previous call: once merged, or not merged at the pull request's current {@code updated_at}. A closed pull
+     * request github doesn't report as merged is still taken for merged if one of its comments says so, e.g. when it was
+     * merged by hand; that is checked on every call and never remembered.
+     */
+    public boolean isMerged(PullRequest pullRequest, PullRequestCoordinates coordinates) {
+        return Boolean.TRUE.equals(getMergedState(pullRequest, coordinates));
+    }
+
+    /**
+     * Same as {@link #isMerged(PullRequest, PullRequestCoordinates)}, but tells when github couldn't be asked.
+     *
+     * @return whether the pull request is merged, or null if github didn't answer
+     */
+    public Boolean getMergedState(PullRequest pullRequest, PullRequestCoordinates coordinates) {
         if (pullRequest == null) {
-            return false;
+            return Boolean.FALSE;
         }
 
+        final boolean known = coordinates.generateId() != null;
+        Boolean merged = known ? mergedStates.isMerged(coordinates, pullRequest.getUpdatedAt()) : null;
+        if (Boolean.TRUE.equals(merged))
+            return merged;
+
         if (!pullRequest.getState().equals("closed")) {
-            return false;
+            return Boolean.FALSE;
         }
 
+        final RequestScheduler.Priority previous = RequestScheduler.enter(RequestScheduler.Priority.INTERACTIVE);
         try {
-            if (pullRequestService.isMerged(pullRequest.getBase().getRepo(), pullRequest.getNumber())) {
-                return true;
+            if (merged == null) {
+                merged = isMergedOnGithub(pullRequest);
+                // only what github says is remembered, if it didn't answer the next call asks again
+                if (known && merged != null) {
+                    if (merged)
+                        mergedStates.setMerged(coordinates);
+                    else
+                        mergedStates.setUnmerged(coordinates, pullRequest.getUpdatedAt());
+                }
+                if (Boolean.TRUE.equals(merged))
+                    return merged;
             }
+
+            final Boolean commented = isMergedByComment(pullRequest);
+            if (Boolean.TRUE.equals(commented))
+                return commented;
+            return merged == null || commented == null ? null : Boolean.FALSE;
+        } finally {
+            RequestScheduler.restore(previous);
+        }
+    }
+
+    /**
+     * @return whether github reports the pull request as merged, or null if github couldn't be asked
+     */
+    private Boolean isMergedOnGithub(PullRequest pullRequest) {
+        try {
+            return pullRequestService.isMerged(pullRequest.getBase().getRepo(), pullRequest.getNumber());
         } catch (IOException ignore) {
             System.err.printf("Cannot get Merged information of the pull request %d: %s.\n", pullRequest.getNumber(), ignore);
             ignore.printStackTrace(System.err);
+            return null;
         }
+    }
 
+    /**
+     * @return whether a comment of the pull request says it has been merged, or null if github couldn't be asked
+     */
+    private Boolean isMergedByComment(PullRequest pullRequest) {
         try {
             final List<Comment> comments = issueService.getComments(pullRequest.getBase().getRepo(), pullRequest.getNumber());
             for (Comment comment : comments) {
                 if (comment.getBody().toLowerCase().indexOf("merged") != -1) {
-                    return true;
+                    return Boolean.TRUE;
                 }
             }
+            return Boolean.FALSE;
         } catch (IOException ignore) {
             System.err.printf("Cannot get comments of the pull request %d: %s.\n", pullRequest.getNumber(), ignore);
             ignore.printStackTrace(System.err);
+            return null;
         }
-
-        return false;
     }
 
+    /**
+     * Searches the comments newest first for the last one that contains the pattern. At most
+     * {@code github.comment.search.pages} pages of comments are read.
+     */
     public Comment getLastMatchingComment(PullRequest pullRequest, Pattern pattern) {
+        return getLastMatchingComment(searchComments(pullRequest), pattern);
+    }
+
+    /**
+     * Searches the comments newest first for the last one that contains the command, like
+     * {@link #getLastMatchingComment(PullRequest, Pattern)}.
+     */
+    public Comment getLastComment(PullRequest pullRequest, CommentClassifier.Command command) {
+        return getLastComment(searchComments(pullRequest), command);
+    }
+
+    /**
+     * Starts a search of the comments of the pull request which keeps the pages it reads, so that the later lookups
+     * through it don't read them again. At most {@code github.comment.search.pages} pages of comments are read.
+     */
+    public CommentStore.Search searchComments(PullRequest pullRequest) {
+        return commentStore.search(repository, pullRequest.getNumber(), commentSearchPages);
+    }
+
+    /**
+     * Continues the search for the last comment that contains the pattern.
+     */
+    public Comment getLastMatchingComment(CommentStore.Search search, Pattern pattern) {
+        return findLast(search, CommentStore.matching(pattern));
+    }
+
+    /**
+     * Continues the search for the last comment that contains the command.
+     */
+    public Comment getLastComment(CommentStore.Search search, CommentClassifier.Command command) {
+        return findLast(search, filter(command));
+    }
+
+    private static Comment findLast(CommentStore.Search search, CommentStore.Filter filter) {
+        try {
+            return search.findLast(filter);
+        } catch (IOException e) {
+            System.err.println("Error to get comments for pull request : " + search.getNumber());
+            e.printStackTrace(System.err);
+        }
+        return null;
+    }
+
+    /**
+     * Searches the already fetched comments for the last one that contains the command.
+     */
+    public static Comment getLastComment(List<Comment> comments, CommentClassifier.Command command) {
+        return CommentStore.findLast(comments, filter(command));
+    }
+
+    private static CommentStore.Filter filter(final CommentClassifier.Command command) {
+        return new CommentStore.Filter() {
+            @Override
+            public boolean accept(Comment comment) {
+                return CommentClassifier.classify(comment.getBody()).is(command);
+            }
+        };
+    }
+
+    /**
+     * Searches the already fetched comments for the last one that contains the pattern.
+     */
+    public static Comment getLastMatchingComment(List<Comment> comments, Pattern pattern) {
         Comment lastComment = null;
-        List<Comment> comments = getComments(pullRequest);
 
         for (Comment comment : comments) {
             Matcher matcher = pattern.matcher(comment.getBody());
@@ -271,9 +452,13 @@ public class GithubHelper {
         return lastComment;
     }
 
+    /**
+     * Returns the comments of the pull request. Only the comments created or updated since the previous call for the
+     * same pull request are downloaded.
+     */
     public List<Comment> getComments(PullRequest pullRequest) {
         try {
-            return issueService.getComments(repository, pullRequest.getNumber());
+            return commentStore.getComments(repository, pullRequest.getNumber());
         } catch (IOException e) {
             System.err.println("Error to get comments for pull request : " + pullRequest.getNumber());
             e.printStackTrace(System.err);
@@ -0,0 +1,259 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+import org.eclipse.egit.github.core.client.RequestException;
+import org.jboss.pull.shared.connectors.common.ConcurrencyLimiter;
+
+/**
+ * A {@link GitHubClient} all the GitHub calls of the {@link GithubHelper} go through, so that they can be limited
+ * in one place.
+ * <p>
+ * GET requests are conditional: the ETag and Last-Modified of every response are kept together with the raw response
+ * body, and the body is parsed again when github answers {@code 304 Not Modified}, which doesn't count against the
+ * rate limit. Every caller gets objects of its own, which it may change without affecting the later responses.
+ * <p>
+ * All the calls are paced by a {@link RequestScheduler}. Writes are made with the write priority, reads with the
+ * priority the calling thread {@link RequestScheduler#enter(RequestScheduler.Priority) entered}.
+ *
+ * @author navssurtani
+ */
+public class ManagedGitHubClient extends GitHubClient {
+
+    private static final int DEFAULT_CACHE_SIZE = 2000;
+
+    private final ConcurrencyLimiter limiter;
+    private final RequestScheduler scheduler;
+    private final int cacheSize;
+    private final Map<String, CachedResponse> responses;
+
+    private final AtomicLong fullResponses = new AtomicLong();
+    private final AtomicLong notModifiedResponses = new AtomicLong();
+
+    public ManagedGitHubClient(ConcurrencyLimiter limiter) {
+        this(limiter, DEFAULT_CACHE_SIZE, RequestScheduler.getDefault());
+    }
+
+    /**
+     * @param limiter - limits the number of concurrent calls
+     * @param cacheSize - maximum number of responses kept for conditional requests, 0 disables them
+     * @param scheduler - paces the calls according to the rate limit
+     */
+    public ManagedGitHubClient(ConcurrencyLimiter limiter, final int cacheSize, RequestScheduler scheduler) {
+        this.limiter = limiter;
+        this.scheduler = scheduler;
+        this.cacheSize = cacheSize;
+        this.responses = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+                return size() > ManagedGitHubClient.this.cacheSize;
+            }
+        };
+    }
+
+    @Override
+    public GitHubResponse get(GitHubRequest request) throws IOException {
+        scheduler.acquire(RequestScheduler.currentPriority());
+        limiter.acquire();
+        try {
+            return conditionalGet(request);
+        } catch (RequestException e) {
+            throw checkRateLimited(e);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    /**
+     * Same as {@link GitHubClient#get(GitHubRequest)}, but revalidates the cached response instead of fetching it
+     * again.
+     */
+    private GitHubResponse conditionalGet(GitHubRequest request) throws IOException {
+        final String uri = request.generateUri();
+        final String accept = request.getResponseContentType();
+        final String key = accept != null ? accept + " " + uri : uri;
+
+        CachedResponse cached;
+        synchronized (responses) {
+            cached = responses.get(key);
+        }
+
+        final HttpURLConnection httpRequest = createGet(uri);
+        if (accept != null)
+            httpRequest.setRequestProperty("Accept", accept);
+        if (cached != null) {
+            if (cached.etag != null)
+                httpRequest.setRequestProperty("If-None-Match", cached.etag);
+            if (cached.lastModified != null)
+                httpRequest.setRequestProperty("If-Modified-Since", cached.lastModified);
+        }
+
+        final int code = httpRequest.getResponseCode();
+        updateRateLimits(httpRequest);
+        if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+            notModifiedResponses.incrementAndGet();
+            scheduler.refund();
+            return new GitHubResponse(cached.response, getBody(request, new ByteArrayInputStream(cached.body)));
+        }
+        if (isOk(code)) {
+            fullResponses.incrementAndGet();
+            final String etag = httpRequest.getHeaderField("ETag");
+            final String lastModified = httpRequest.getHeaderField("Last-Modified");
+            if (cacheSize > 0 && (etag != null || lastModified != null)) {
+                final byte[] body = readBody(getStream(httpRequest));
+                synchronized (responses) {
+                    responses.put(key, new CachedResponse(etag, lastModified, httpRequest, body));
+                }
+                return new GitHubResponse(httpRequest, getBody(request, new ByteArrayInputStream(body)));
+            }
+            return new GitHubResponse(httpRequest, getBody(request, getStream(httpRequest)));
+        }
+        if (isEmpty(code))
+            return new GitHubResponse(httpRequest, null);
+        throw createException(getStream(httpRequest), code, httpRequest.getResponseMessage());
+    }
+
+    @Override
+    public <V> V post(String uri, Object params, Type type) throws IOException {
+        scheduler.acquire(RequestScheduler.Priority.WRITE);
+        limiter.acquire();
+        try {
+            return super.post(uri, params, type);
+        } catch (RequestException e) {
+            throw checkRateLimited(e);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    @Override
+    public <V> V put(String uri, Object params, Type type) throws IOException {
+        scheduler.acquire(RequestScheduler.Priority.WRITE);
+        limiter.acquire();
+        try {
+            return super.put(uri, params, type);
+        } catch (RequestException e) {
+            throw checkRateLimited(e);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    @Override
+    public void delete(String uri, Object params) throws IOException {
+        scheduler.acquire(RequestScheduler.Priority.WRITE);
+        limiter.acquire();
+        try {
+            super.delete(uri, params);
+        } catch (RequestException e) {
+            throw checkRateLimited(e);
+        } finally {
+            limiter.release();
+        }
+    }
+
+    @Override
+    protected GitHubClient updateRateLimits(HttpURLConnection request) {
+        scheduler.update(request);
+        return super.updateRateLimits(request);
+    }
+
+    /**
+     * Turns a refusal because of the rate limit into a {@link GitHubBudgetExhaustedException}, so that it isn't
+     * swallowed like other I/O errors.
+     */
+    private RequestException checkRateLimited(RequestException e) {
+        if ((e.getStatus() == HttpURLConnection.HTTP_FORBIDDEN || e.getStatus() == 429) && scheduler.isLimited()) {
+            GitHubBudgetExhaustedException exhausted = new GitHubBudgetExhaustedException("GitHub refused the call: "
+                    + e.getMessage(), scheduler.getRetryAt());
+            exhausted.initCause(e);
+            throw exhausted;
+        }
+        return e;
+    }
+
+    public RequestScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * @return - number of GET requests answered with a full response
+     */
+    public long getFullResponses() {
+        return fullResponses.get();
+    }
+
+    /**
+     * @return - number of GET requests answered with 304 Not Modified, i.e. not charged to the rate limit
+     */
+    public long getNotModifiedResponses() {
+        return notModifiedResponses.get();
+    }
+
+    private static byte[] readBody(InputStream stream) throws IOException {
+        try {
+            final ByteArrayOutputStream body = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            return body.toByteArray();
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static class CachedResponse {
+        private final String etag;
+        private final String lastModified;
+        // the response the body came with, for its paging links
+        private final HttpURLConnection response;
+        private final byte[] body;
+
+        private CachedResponse(String etag, String lastModified, HttpURLConnection response, byte[] body) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.response = response;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.jboss.pull.shared.Util;
+
+/**
+ * Remembers which pull requests are merged, and which were found not merged at which {@code updated_at}, in a file
+ * which outlives the processor. A merged pull request stays merged, so it never has to be asked about again, and one
+ * that wasn't merged only has to be asked about again once it has been updated. Each line of the file is either
+ * "organization/repository#number merged" or "organization/repository#number unmerged updated_at-in-ms", the last
+ * line of a pull request wins.
+ *
+ * @author navssurtani
+ */
+public class MergedStateStore {
+
+    private static final String MERGED = "merged";
+    private static final String UNMERGED = "unmerged";
+
+    private final Set<String> merged;
+    private final Map<String, Long> unmerged;
+    private final File file;
+
+    private MergedStateStore(Set<String> merged, Map<String, Long> unmerged, File file) {
+        this.merged = merged;
+        this.unmerged = unmerged;
+        this.file = file;
+    }
+
+    /**
+     * Loads the states kept in the file, and rewrites it without the lines later ones have replaced.
+     *
+     * @param fileName - the file to keep the states in, or null to keep them in memory only
+     */
+    public static MergedStateStore loadMergedStateStore(String fileName) {
+        final Set<String> merged = new HashSet<String>();
+        final Map<String, Long> unmerged = new HashMap<String, Long>();
+        if (fileName == null)
+            return new MergedStateStore(merged, unmerged, null);
+
+        BufferedReader reader = null;
+        int lines = 0;
+        final File file = new File(fileName);
+        try {
+            file.createNewFile();
+            reader = new BufferedReader(new FileReader(file));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                final String[] fields = line.split(" ");
+                if (fields.length == 2 && fields[1].equals(MERGED)) {
+                    merged.add(fields[0]);
+                    unmerged.remove(fields[0]);
+                } else if (fields.length == 3 && fields[1].equals(UNMERGED)) {
+                    try {
+                        unmerged.put(fields[0], Long.valueOf(fields[2]));
+                        merged.remove(fields[0]);
+                    } catch (NumberFormatException ignore) {
+                        System.err.printf("Invalid merged state: %s.\n", line);
+                    }
+                } else if (line.length() > 0) {
+                    System.err.printf("Invalid merged state: %s.\n", line);
+                }
+            }
+        } catch (FileNotFoundException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            Util.safeClose(reader);
+        }
+
+        final MergedStateStore store = new MergedStateStore(merged, unmerged, file);
+        if (lines > merged.size() + unmerged.size())
+            store.compact();
+        return store;
+    }
+
+    /**
+     * @return true if the pull request is known to be merged, false if it was found not merged and hasn't been updated
+     *         since, null if github has to be asked
+     */
+    public synchronized Boolean isMerged(PullRequestCoordinates coordinates, Date updatedAt) {
+        final String key = key(coordinates);
+        if (merged.contains(key))
+            return Boolean.TRUE;
+
+        final Long checkedAt = unmerged.get(key);
+        if (checkedAt != null && updatedAt != null && checkedAt.longValue() == updatedAt.getTime())
+            return Boolean.FALSE;
+        return null;
+    }
+
+    public synchronized void setMerged(PullRequestCoordinates coordinates) {
+        final String key = key(coordinates);
+        unmerged.remove(key);
+        if (merged.add(key))
+            append(key + " " + MERGED);
+    }
+
+    /**
+     * Records that the pull request wasn't merged at the given {@code updated_at}.
+     */
+    public synchronized void setUnmerged(PullRequestCoordinates coordinates, Date updatedAt) {
+        if (updatedAt == null)
+            return;
+
+        final String key = key(coordinates);
+        merged.remove(key);
+        final Long previous = unmerged.put(key, updatedAt.getTime());
+        if (previous == null || previous.longValue() != updatedAt.getTime())
+            append(key + " " + UNMERGED + " " + updatedAt.getTime());
+    }
+
+    public synchronized int size() {
+        return merged.size() + unmerged.size();
+    }
+
+    private static String key(PullRequestCoordinates coordinates) {
+        // github names are case insensitive
+        return coordinates.toString().toLowerCase(Locale.ENGLISH);
+    }
+
+    private void append(String line) {
+        if (file == null)
+            return;
+
+        PrintWriter stream = null;
+        try {
+            stream = new PrintWriter(new FileOutputStream(file, true));
+            stream.println(line);
+        } catch (FileNotFoundException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            Util.safeClose(stream);
+        }
+    }
+
+    private void compact() {
+        final File compacted = new File(file.getPath() + ".tmp");
+        PrintWriter stream = null;
+        try {
+            stream = new PrintWriter(new FileOutputStream(compacted));
+            for (String key : merged) {
+                stream.println(key + " " + MERGED);
+            }
+            for (Map.Entry<String, Long> entry : unmerged.entrySet()) {
+                stream.println(entry.getKey() + " " + UNMERGED + " " + entry.getValue());
+            }
+        } catch (FileNotFoundException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            Util.safeClose(stream);
+        }
+        if (!compacted.renameTo(file) && !(file.delete() && compacted.renameTo(file)))
+            System.err.printf("Cannot compact the merged states of %s.\n", file);
+    }
+}
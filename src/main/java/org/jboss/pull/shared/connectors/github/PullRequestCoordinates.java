@@ -0,0 +1,138 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+
+import org.eclipse.egit.github.core.IRepositoryIdProvider;
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.Repository;
+import org.jboss.pull.shared.Constants;
+
+/**
+ * Where a pull request lives and which commits it was parsed at. Two coordinates are equal when they name the same
+ * pull request, i.e. the same organization and repository (case insensitively, like github) and number, whatever
+ * their base ref and head sha, so they can key the maps and caches of pull requests.
+ *
+ * @author navssurtani
+ */
+public final class PullRequestCoordinates implements IRepositoryIdProvider {
+
+    private final String organization;
+    private final String repository;
+    private final int number;
+    private final String baseRef;
+    private final String headSha;
+    private final String repositoryId;
+    private final int hash;
+
+    public PullRequestCoordinates(String organization, String repository, int number, String baseRef,
+                                  String headSha) {
+        this.organization = organization;
+        this.repository = repository;
+        this.number = number;
+        this.baseRef = baseRef;
+        this.headSha = headSha;
+        this.repositoryId = organization == null || repository == null ? null : organization + "/" + repository;
+        this.hash = 31 * (repositoryId == null ? 0 : repositoryId.toLowerCase(Locale.ENGLISH).hashCode()) + number;
+    }
+
+    /**
+     * Parses the coordinates of a pull request from its URL, or from its base repository if the URL doesn't name one.
+     */
+    public static PullRequestCoordinates of(PullRequest pullRequest) {
+        String organization = null;
+        String repository = null;
+        if (pullRequest.getUrl() != null) {
+            final Matcher matcher = Constants.RELATED_PR_PATTERN.matcher(pullRequest.getUrl());
+            if (matcher.matches()) {
+                organization = matcher.group(1);
+                repository = matcher.group(2);
+            }
+        }
+        if (organization == null && pullRequest.getBase() != null && pullRequest.getBase().getRepo() != null) {
+            final Repository repo = pullRequest.getBase().getRepo();
+            organization = repo.getOwner() == null ? null : repo.getOwner().getLogin();
+            repository = repo.getName();
+        }
+
+        return new PullRequestCoordinates(organization, repository, pullRequest.getNumber(),
+                pullRequest.getBase() == null ? null : pullRequest.getBase().getRef(),
+                pullRequest.getHead() == null ? null : pullRequest.getHead().getSha());
+    }
+
+    public String getOrganization() {
+        return organization;
+    }
+
+    public String getRepository() {
+        return repository;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * @return the branch the pull request targets, when it was parsed
+     */
+    public String getBaseRef() {
+        return baseRef;
+    }
+
+    /**
+     * @return the last commit of the pull request, when it was parsed
+     */
+    public String getHeadSha() {
+        return headSha;
+    }
+
+    /**
+     * @return "organization/repository"
+     */
+    @Override
+    public String generateId() {
+        return repositoryId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof PullRequestCoordinates))
+            return false;
+        final PullRequestCoordinates other = (PullRequestCoordinates) o;
+        return number == other.number && hash == other.hash
+                && (repositoryId == null ? other.repositoryId == null : repositoryId.equalsIgnoreCase(other.repositoryId));
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return repositoryId + "#" + number;
+    }
+}
@@ -0,0 +1,301 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.connectors.github;
+
+import java.net.HttpURLConnection;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.jboss.pull.shared.Util;
+
+/**
+ * Paces the github calls so that the hourly budget lasts. Every call takes a token from a bucket refilled at the
+ * configured rate. The rate limit github reports in the {@code X-RateLimit-*} headers is tracked, and so is the
+ * {@code Retry-After} of the secondary limits.
+ * <p>
+ * Writes go before interactive lookups, which go before background polling. When the budget left drops to the
+ * reserve of a priority, calls of that priority fail with {@link GitHubBudgetExhaustedException} until the limit
+ * resets, so that the reserve is kept for the more important ones.
+ *
+ * @author navssurtani
+ */
+public class RequestScheduler {
+
+    public enum Priority {
+        WRITE, INTERACTIVE, BACKGROUND
+    }
+
+    public static final String REQUESTS_PER_HOUR_PROPERTY = "github.requests.per.hour";
+    public static final String BURST_PROPERTY = "github.requests.burst";
+    public static final String INTERACTIVE_RESERVE_PROPERTY = "github.reserve.interactive";
+    public static final String BACKGROUND_RESERVE_PROPERTY = "github.reserve.background";
+    public static final String MAX_WAIT_PROPERTY = "github.max.wait";
+
+    private static final int DEFAULT_REQUESTS_PER_HOUR = 5000;
+    private static final int DEFAULT_BURST = 100;
+    private static final int DEFAULT_INTERACTIVE_RESERVE = 50;
+    private static final int DEFAULT_BACKGROUND_RESERVE = 500;
+    private static final long DEFAULT_MAX_WAIT = 60000;
+
+    private static final ThreadLocal<Priority> PRIORITY = new ThreadLocal<Priority>();
+
+    private final double tokensPerMilli;
+    private final double burst;
+    private final int[] reserves = new int[Priority.values().length];
+    private final long maxWait;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final int[] waiting = new int[Priority.values().length];
+
+    private double tokens;
+    private long lastRefill;
+    // as reported by github, -1 if unknown
+    private int remaining = -1;
+    private long resetAt;
+    private long retryAfterUntil;
+
+    /**
+     * @param requestsPerHour - rate the token bucket is refilled at
+     * @param burst - capacity of the token bucket
+     * @param interactiveReserve - budget left for writes only
+     * @param backgroundReserve - budget left for writes and interactive calls only
+     * @param maxWait - longest time in milliseconds to wait for github to accept calls again
+     */
+    public RequestScheduler(int requestsPerHour, int burst, int interactiveReserve, int backgroundReserve,
+                            long maxWait) {
+        if (requestsPerHour < 1 || burst < 1)
+            throw new IllegalArgumentException("Request rate and burst have to be positive");
+
+        this.tokensPerMilli = requestsPerHour / (double) TimeUnit.HOURS.toMillis(1);
+        this.burst = burst;
+        this.reserves[Priority.WRITE.ordinal()] = 0;
+        this.reserves[Priority.INTERACTIVE.ordinal()] = interactiveReserve;
+        this.reserves[Priority.BACKGROUND.ordinal()] = backgroundReserve;
+        this.maxWait = maxWait;
+        this.tokens = burst;
+        this.lastRefill = System.currentTimeMillis();
+    }
+
+    public static RequestScheduler getDefault() {
+        return new RequestScheduler(DEFAULT_REQUESTS_PER_HOUR, DEFAULT_BURST, DEFAULT_INTERACTIVE_RESERVE,
+                DEFAULT_BACKGROUND_RESERVE, DEFAULT_MAX_WAIT);
+    }
+
+    public static RequestScheduler fromProperties(Properties props) {
+        return new RequestScheduler(getInt(props, REQUESTS_PER_HOUR_PROPERTY, DEFAULT_REQUESTS_PER_HOUR),
+                getInt(props, BURST_PROPERTY, DEFAULT_BURST),
+                getInt(props, INTERACTIVE_RESERVE_PROPERTY, DEFAULT_INTERACTIVE_RESERVE),
+                getInt(props, BACKGROUND_RESERVE_PROPERTY, DEFAULT_BACKGROUND_RESERVE),
+                Long.parseLong(Util.get(props, MAX_WAIT_PROPERTY, String.valueOf(DEFAULT_MAX_WAIT)).trim()));
+    }
+
+    private static int getInt(Properties props, String name, int defaultValue) {
+        return Integer.parseInt(Util.get(props, name, String.valueOf(defaultValue)).trim());
+    }
+
+    /**
+     * Sets the priority of the github reads made by the current thread, until restored.
+     *
+     * @return the previous priority, to be passed to {@link #restore(Priority)}
+     */
+    public static Priority enter(Priority priority) {
+        final Priority previous = PRIORITY.get();
+        PRIORITY.set(priority);
+        return previous;
+    }
+
+    public static void restore(Priority previous) {
+        if (previous == null)
+            PRIORITY.remove();
+        else
+            PRIORITY.set(previous);
+    }
+
+    /**
+     * @return the priority of the github reads made by the current thread, background by default
+     */
+    public static Priority currentPriority() {
+        final Priority priority = PRIORITY.get();
+        return priority != null ? priority : Priority.BACKGROUND;
+    }
+
+    /**
+     * Blocks until a call of the given priority may be made.
+     *
+     * @throws GitHubBudgetExhaustedException if the budget for the priority is used up
+     */
+    public void acquire(Priority priority) {
+        lock.lock();
+        try {
+            waiting[priority.ordinal()]++;
+            try {
+                while (true) {
+                    long now = System.currentTimeMillis();
+                    checkBudget(priority, now);
+
+                    long wait;
+                    if (retryAfterUntil > now) {
+                        wait = retryAfterUntil - now;
+                        if (wait > maxWait)
+                            throw new GitHubBudgetExhaustedException("GitHub asked to slow down",
+                                    new Date(retryAfterUntil));
+                    } else {
+                        refill(now);
+                        if (tokens >= 1 && !isHigherWaiting(priority)) {
+                            tokens--;
+                            if (remaining > 0)
+                                remaining--;
+                            return;
+                        }
+                        // if a token is there it is left to a more important call, which will signal
+                        wait = tokens >= 1 ? maxWait : (long) Math.ceil((1 - tokens) / tokensPerMilli);
+                    }
+                    changed.await(Math.max(wait, 1), TimeUnit.MILLISECONDS);
+                }
+            } finally {
+                waiting[priority.ordinal()]--;
+                changed.signalAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to call github", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives the token of a call back, e.g. when it was answered by 304 Not Modified which github doesn't charge.
+     */
+    public void refund() {
+        lock.lock();
+        try {
+            tokens = Math.min(burst, tokens + 1);
+            if (remaining >= 0)
+                remaining++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the rate limit state from the headers of a github response.
+     */
+    public void update(HttpURLConnection response) {
+        final String remainingHeader = response.getHeaderField("X-RateLimit-Remaining");
+        final String resetHeader = response.getHeaderField("X-RateLimit-Reset");
+        final String retryAfterHeader = response.getHeaderField("Retry-After");
+
+        lock.lock();
+        try {
+            if (remainingHeader != null && resetHeader != null) {
+                remaining = Integer.parseInt(remainingHeader.trim());
+                resetAt = TimeUnit.SECONDS.toMillis(Long.parseLong(resetHeader.trim()));
+            }
+            if (retryAfterHeader != null)
+                retryAfterUntil = System.currentTimeMillis()
+                        + TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfterHeader.trim()));
+            changed.signalAll();
+        } catch (NumberFormatException e) {
+            System.err.printf("Cannot parse the rate limit headers of github: %s\n", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if github is known to refuse calls at the moment
+     */
+    public boolean isLimited() {
+        lock.lock();
+        try {
+            final long now = System.currentTimeMillis();
+            return retryAfterUntil > now || (remaining == 0 && resetAt > now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the budget left as reported by github, -1 if unknown
+     */
+    public int getRemaining() {
+        lock.lock();
+        try {
+            return remaining;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Date getResetAt() {
+        lock.lock();
+        try {
+            return new Date(resetAt);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the time github is expected to accept calls again, if it is {@link #isLimited() limiting} them
+     */
+    public Date getRetryAt() {
+        lock.lock();
+        try {
+            return new Date(remaining == 0 ? Math.max(resetAt, retryAfterUntil) : retryAfterUntil);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkBudget(Priority priority, long now) {
+        if (remaining < 0)
+            return;
+        if (resetAt <= now) {
+            // a new window has started, the next response tells the budget
+            remaining = -1;
+            return;
+        }
+        if (remaining <= reserves[priority.ordinal()])
+            throw new GitHubBudgetExhaustedException("GitHub rate limit budget for " + priority + " calls is used up ("
+                    + remaining + " left)", new Date(resetAt));
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerMilli);
+        lastRefill = now;
+    }
+
+    private boolean isHigherWaiting(Priority priority) {
+        for (int i = 0; i < priority.ordinal(); i++) {
+            if (waiting[i] > 0)
+                return true;
+        }
+        return false;
+    }
+}
@@ -26,25 +26,69 @@ import com.atlassian.jira.rest.client.JiraRestClient;
 import com.atlassian.jira.rest.client.NullProgressMonitor;
 import com.atlassian.jira.rest.client.internal.jersey.JerseyJiraRestClientFactory;
 
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.NameValuePair;
+import org.apache.commons.httpclient.UsernamePasswordCredentials;
+import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
 import org.jboss.pull.shared.Constants;
 import org.jboss.pull.shared.Util;
 import org.jboss.pull.shared.connectors.IssueHelper;
 import org.jboss.pull.shared.connectors.common.AbstractCommonIssueHelper;
+import org.jboss.pull.shared.connectors.common.ConcurrencyLimiter;
 import org.jboss.pull.shared.connectors.common.Issue;
 
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
 
 /**
  * @author navssurtani
  */
 public class JiraHelper extends AbstractCommonIssueHelper implements IssueHelper{
 
+    public static final String SEARCH_URL_LENGTH_PROPERTY = "jira.search.url.length";
+    public static final String RESTRICT_FIELDS_PROPERTY = "jira.restrict.fields";
+
+    private static final String SEARCH_PATH = "/rest/api/2/search";
+    private static final String ISSUE_PATH = "/rest/api/2/issue/";
+    private static final String FIELD_PATH = "/rest/api/2/field";
+    // The system fields read by JiraIssue, the custom ones are added by their ids.
+    private static final String[] SYSTEM_FIELDS = { "status", "resolution", "fixVersions" };
+    private static final int DEFAULT_SEARCH_URL_LENGTH = 2000;
+    private static final int DEFAULT_MAX_CONCURRENT = 4;
+
     private static String JIRA_LOGIN;
     private static String JIRA_PASSWORD;
 
     private JiraRestClient restClient;
+    private HttpClient httpClient;
+    private int searchUrlLength;
+    private boolean restrictFields;
+    private ConcurrencyLimiter limiter;
+
+    // custom field ids keyed by name and the "fields" parameter built from them, resolved once per session
+    private Map<String, String> fieldIds;
+    private String requestedFields;
 
     public JiraHelper(final String configurationFileProperty, final String configurationFileDefault) throws Exception {
         super(configurationFileProperty, configurationFileDefault);
@@ -52,6 +96,11 @@ public class JiraHelper extends AbstractCommonIssueHelper implements IssueHelper
             JIRA_LOGIN = Util.require(fromUtil, "jira.login");
             JIRA_PASSWORD = Util.require(fromUtil, "jira.password");
             restClient = buildJiraRestClient();
+            httpClient = buildHttpClient();
+            searchUrlLength = Integer.parseInt(Util.get(fromUtil, SEARCH_URL_LENGTH_PROPERTY,
+                    String.valueOf(DEFAULT_SEARCH_URL_LENGTH)));
+            restrictFields = Boolean.parseBoolean(Util.get(fromUtil, RESTRICT_FIELDS_PROPERTY, "true"));
+            limiter = ConcurrencyLimiter.fromProperties(fromUtil, "jira", DEFAULT_MAX_CONCURRENT);
         } catch (Exception e) {
             System.err.printf("Cannot initialize: %s\n", e);
             e.printStackTrace(System.err);
@@ -59,12 +108,128 @@ public class JiraHelper extends AbstractCommonIssueHelper implements IssueHelper
         }
     }
 
+    /**
+     * Exists to test the bulk lookups without a JIRA server, the searches go to {@link #search(String, int)}.
+     *
+     * @param fieldIds - ids of the custom fields keyed by their names
+     */
+    protected JiraHelper(final Map<String, String> fieldIds, final int searchUrlLength) {
+        super(new Properties());
+        this.searchUrlLength = searchUrlLength;
+        this.restrictFields = true;
+
+        final StringBuilder fields = new StringBuilder();
+        for (String field : SYSTEM_FIELDS) {
+            fields.append(field).append(',');
+        }
+        for (String id : fieldIds.values()) {
+            fields.append(id).append(',');
+        }
+        fields.setLength(fields.length() - 1);
+        this.requestedFields = fields.toString();
+        this.fieldIds = Collections.unmodifiableMap(new HashMap<String, String>(fieldIds));
+    }
+
+    /**
+     * Finds the issue. Unless {@value #RESTRICT_FIELDS_PROPERTY} is false only the fields read by {@link JiraIssue}
+     * are fetched.
+     */
     @Override
     public Issue findIssue(URL url) throws IllegalArgumentException {
         String key = cutKeyFromURL(url);
-        com.atlassian.jira.rest.client.domain.Issue fromServer = restClient.getIssueClient()
-                .getIssue(key, new NullProgressMonitor());
-        return new JiraIssue(fromServer);
+        if (!restrictFields) {
+            com.atlassian.jira.rest.client.domain.Issue fromServer;
+            limiter.acquire();
+            try {
+                fromServer = restClient.getIssueClient().getIssue(key, new NullProgressMonitor());
+            } finally {
+                limiter.release();
+            }
+            return new JiraIssue(fromServer);
+        }
+
+        try {
+            loadFieldIds();
+            final NameValuePair[] query = { new NameValuePair("fields", requestedFields) };
+            return new JiraIssue(new JSONObject(get(ISSUE_PATH + encode(key), query)), fieldIds);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can not get issue " + key, e);
+        } catch (JSONException e) {
+            throw new IllegalStateException("Can not parse issue " + key, e);
+        }
+    }
+
+    /**
+     * Finds the given issues with as few JIRA round trips as possible. The keys are turned into {@code key in (...)}
+     * JQL searches, each one short enough to fit into the request URL. Only the fields read by {@link JiraIssue}
+     * are fetched.
+     *
+     * @param keys - the issue keys, e.g. "WFLY-10"
+     * @return - the issues keyed by their upper case key, issues which could not be retrieved or read are left out.
+     */
+    public Map<String, JiraIssue> findIssues(Collection<String> keys) {
+        final Map<String, JiraIssue> issues = new HashMap<String, JiraIssue>();
+        try {
+            loadFieldIds();
+        } catch (IOException e) {
+            System.err.println("Can not get the JIRA fields.");
+            e.printStackTrace(System.err);
+            return issues;
+        } catch (JSONException e) {
+            System.err.println("Can not parse the JIRA fields.");
+            e.printStackTrace(System.err);
+            return issues;
+        }
+
+        for (String jql : buildSearchQueries(keys)) {
+            try {
+                int startAt = 0;
+                int total;
+                do {
+                    final JSONObject result = search(jql, startAt);
+                    final JSONArray found = result.getJSONArray("issues");
+                    for (int i = 0; i < found.length(); i++) {
+                        final JiraIssue issue = readIssue(found, i, jql);
+                        if (issue != null)
+                            issues.put(issue.getNumber().toUpperCase(), issue);
+                    }
+                    total = result.getInt("total");
+                    startAt += found.length();
+                    if (found.length() == 0)
+                        break;
+                } while (startAt < total);
+            } catch (IOException e) {
+                System.err.println("Can not search issues with : " + jql);
+                e.printStackTrace(System.err);
+            } catch (JSONException e) {
+                System.err.println("Can not parse issues found with : " + jql);
+                e.printStackTrace(System.err);
+            }
+        }
+        return issues;
+    }
+
+    /**
+     * Reads one of the found issues, so that an issue JIRA returns in an unexpected shape, e.g. with an unknown
+     * status, doesn't cost the others.
+     *
+     * @return - the issue, or null if it cannot be read
+     */
+    private JiraIssue readIssue(JSONArray found, int index, String jql) {
+        try {
+            return new JiraIssue(found.getJSONObject(index), fieldIds);
+        } catch (JSONException e) {
+            System.err.printf("Can not parse issue %d found with : %s\n", index, jql);
+            e.printStackTrace(System.err);
+        } catch (RuntimeException e) {
+            System.err.printf("Can not read issue %d found with : %s\n", index, jql);
+            e.printStackTrace(System.err);
+        }
+        return null;
+    }
+
+    public ConcurrencyLimiter getLimiter() {
+        return limiter;
     }
 
     @Override
@@ -83,6 +248,113 @@ public class JiraHelper extends AbstractCommonIssueHelper implements IssueHelper
         return clientFactory.createWithBasicHttpAuthentication(new URI(Constants.JIRA_BASE), JIRA_LOGIN, JIRA_PASSWORD);
     }
 
+    private HttpClient buildHttpClient() {
+        HttpClient client = new HttpClient(new MultiThreadedHttpConnectionManager());
+        client.getParams().setAuthenticationPreemptive(true);
+        client.getState().setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(JIRA_LOGIN, JIRA_PASSWORD));
+        return client;
+    }
+
+    /**
+     * Splits the keys into {@code key in (...)} queries so that no encoded search URL exceeds the configured length.
+     */
+    protected List<String> buildSearchQueries(Collection<String> keys) {
+        final int overhead = (Constants.JIRA_BASE + SEARCH_PATH + "?jql=" + encode("key in ()")
+                + "&startAt=0000&maxResults=0000&validateQuery=false&fields=" + encode(requestedFields)).length();
+        final List<String> queries = new ArrayList<String>();
+        final Set<String> distinct = new LinkedHashSet<String>(keys);
+
+        StringBuilder jql = null;
+        int length = 0;
+        for (String key : distinct) {
+            final int keyLength = encode(key).length() + encode(",").length();
+            if (jql != null && length + keyLength > searchUrlLength) {
+                queries.add(jql.append(")").toString());
+                jql = null;
+            }
+            if (jql == null) {
+                jql = new StringBuilder("key in (").append(key);
+                length = overhead + keyLength;
+            } else {
+                jql.append(",").append(key);
+                length += keyLength;
+            }
+        }
+        if (jql != null)
+            queries.add(jql.append(")").toString());
+        return queries;
+    }
+
+    /**
+     * Runs the search, returning the page of the found issues from {@code startAt} on.
+     */
+    protected JSONObject search(String jql, int startAt) throws IOException, JSONException {
+        final NameValuePair[] query = {
+                new NameValuePair("jql", jql),
+                new NameValuePair("startAt", String.valueOf(startAt)),
+                new NameValuePair("maxResults", "1000"),
+                // keys of issues which don't exist (anymore) must not fail the whole query
+                new NameValuePair("validateQuery", "false"),
+                new NameValuePair("fields", requestedFields)
+        };
+        return new JSONObject(get(SEARCH_PATH, query));
+    }
+
+    private String get(String path, NameValuePair[] query) throws IOException {
+        final GetMethod method = new GetMethod(Constants.JIRA_BASE + path);
+        method.setQueryString(query);
+        method.setRequestHeader("Accept", "application/json");
+        limiter.acquire();
+        try {
+            final int status = httpClient.executeMethod(method);
+            if (status != HttpStatus.SC_OK)
+                throw new IOException("JIRA responded with " + status + " to " + method.getURI());
+            return method.getResponseBodyAsString();
+        } finally {
+            method.releaseConnection();
+            limiter.release();
+        }
+    }
+
+    /**
+     * Resolves the ids of the custom fields {@link JiraIssue} reads, once per session, so that only those fields have
+     * to be requested and they can be looked up by id.
+     */
+    private synchronized void loadFieldIds() throws IOException, JSONException {
+        if (fieldIds != null)
+            return;
+
+        final Set<String> wanted = new HashSet<String>(Arrays.asList(JiraIssue.FLAG_FIELDS));
+        wanted.add(JiraIssue.TARGET_RELEASE_FIELD);
+
+        final Map<String, String> ids = new HashMap<String, String>();
+        final StringBuilder fields = new StringBuilder();
+        for (String field : SYSTEM_FIELDS) {
+            fields.append(field).append(',');
+        }
+        final JSONArray all = new JSONArray(get(FIELD_PATH, new NameValuePair[0]));
+        for (int i = 0; i < all.length(); i++) {
+            final JSONObject field = all.getJSONObject(i);
+            final String name = field.getString("name");
+            if (wanted.contains(name) && !ids.containsKey(name)) {
+                ids.put(name, field.getString("id"));
+                fields.append(field.getString("id")).append(',');
+            }
+        }
+        fields.setLength(fields.length() - 1);
+
+        requestedFields = fields.toString();
+        fieldIds = Collections.unmodifiableMap(ids);
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private String cutKeyFromURL(URL url) {
         String urlString = url.toString();
         int browse = urlString.indexOf("browse/");
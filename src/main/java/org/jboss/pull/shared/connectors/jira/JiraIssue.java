@@ -21,10 +21,13 @@
  */
 package org.jboss.pull.shared.connectors.jira;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
@@ -32,8 +35,13 @@ import java.util.TreeSet;
 import com.atlassian.jira.rest.client.domain.Field;
 import com.atlassian.jira.rest.client.domain.Version;
 
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+
 import org.jboss.pull.shared.Constants;
 import org.jboss.pull.shared.connectors.common.Flag;
+import org.jboss.pull.shared.connectors.common.FlagVocabulary;
 import org.jboss.pull.shared.connectors.common.Issue;
 
 /**
@@ -52,6 +60,12 @@ public class JiraIssue implements Issue {
     }
 
     private static final long serialVersionUID = 7228344342017879011L;
+
+    static final String TARGET_RELEASE_FIELD = "Target Release";
+    // The names of the 'CDW' flag fields, in the order the flags are listed.
+    static final String[] FLAG_FIELDS = { "CDW release", "CDW pm_ack", "CDW devel_ack", "CDW qa_ack", "CDW blocker",
+            "CDW exception" };
+
     private String id;
     private IssueStatus status;
     private String resolution;
@@ -60,19 +74,19 @@ public class JiraIssue implements Issue {
 
     // Collections - i.e. flags, fixVersions etc.
     private List<Flag> flags;
+    // ordinals are only valid in the JVM which gave them, so the mask is computed again when read back
+    private transient long positiveFlagMask;
     private Set<String> fixVersions;
 
     // Constructor.
     public JiraIssue(com.atlassian.jira.rest.client.domain.Issue issue) {
 
         this.id = issue.getKey();
-        String statusString = issue.getStatus().getName().toUpperCase();
-        statusString = statusString.replace(" ", "_");
-        this.status = IssueStatus.valueOf(statusString);
+        this.status = toStatus(issue.getStatus().getName());
         this.resolution = issue.getResolution() != null ? issue.getResolution().getName().toUpperCase() : "UNRESOLVED";
 
         // The target release part. Quite buggy at the minute.
-        Field releaseField = issue.getFieldByName("Target Release");
+        Field releaseField = issue.getFieldByName(TARGET_RELEASE_FIELD);
         if (releaseField != null) {
             if (releaseField.getValue() != null) {
                 this.targetRelease = cutTargetReleaseString(releaseField.getValue().toString());
@@ -82,23 +96,65 @@ public class JiraIssue implements Issue {
         }
 
         // Build the flags. Set the list to size 6 since that is the typical no. of 'CDW' flags on a given JIRA issue.
-        this.flags = new ArrayList<Flag>(6);
+        this.flags = new ArrayList<Flag>(FLAG_FIELDS.length);
 
         // The field id's are constant from JIRA.
-        flags.add(buildFlagFromField(issue.getFieldByName("CDW release")));
-        flags.add(buildFlagFromField(issue.getFieldByName("CDW pm_ack")));
-        flags.add(buildFlagFromField(issue.getFieldByName("CDW devel_ack")));
-        flags.add(buildFlagFromField(issue.getFieldByName("CDW qa_ack")));
-        flags.add(buildFlagFromField(issue.getFieldByName("CDW blocker")));
-        flags.add(buildFlagFromField(issue.getFieldByName("CDW exception")));
+        for (String name : FLAG_FIELDS) {
+            Field field = issue.getFieldByName(name);
+            flags.add(buildFlag(name, field != null ? field.getValue() : null));
+        }
+        this.positiveFlagMask = FlagVocabulary.positiveMask(flags);
 
         // Now something similar for the fix versions. We just have to get the
         this.fixVersions = findFixVersions(issue.getFixVersions());
-        try {
-            this.url = new URL(Constants.JIRA_BASE_BROWSE + id);
-        } catch (MalformedURLException malformed) {
-            System.err.printf("Invalid URL formed: %s. \n", malformed);
+        this.url = buildUrl(id);
+    }
+
+    /**
+     * Builds the issue from the raw JSON of a REST search result.
+     *
+     * @param issue - the issue as returned by JIRA
+     * @param fieldIds - ids of the custom fields keyed by their names
+     */
+    public JiraIssue(JSONObject issue, Map<String, String> fieldIds) throws JSONException {
+        this.id = issue.getString("key");
+
+        final JSONObject fields = issue.getJSONObject("fields");
+        this.status = toStatus(fields.getJSONObject("status").getString("name"));
+        final JSONObject resolutionObject = fields.optJSONObject("resolution");
+        this.resolution = resolutionObject != null ? resolutionObject.getString("name").toUpperCase() : "UNRESOLVED";
+
+        final String releaseId = fieldIds.get(TARGET_RELEASE_FIELD);
+        if (releaseId != null) {
+            Object releaseValue = valueOf(fields, releaseId);
+            if (releaseValue != null) {
+                this.targetRelease = cutTargetReleaseString(releaseValue.toString());
+            }
+        } else {
+            this.targetRelease = "UNSET";
+        }
+
+        this.flags = new ArrayList<Flag>(FLAG_FIELDS.length);
+        for (String name : FLAG_FIELDS) {
+            final String fieldId = fieldIds.get(name);
+            flags.add(buildFlag(name, fieldId != null ? valueOf(fields, fieldId) : null));
         }
+        this.positiveFlagMask = FlagVocabulary.positiveMask(flags);
+
+        this.fixVersions = new TreeSet<String>();
+        final JSONArray versions = fields.optJSONArray("fixVersions");
+        if (versions != null) {
+            for (int i = 0; i < versions.length(); i++) {
+                fixVersions.add(versions.getJSONObject(i).getString("name"));
+            }
+        }
+        this.url = buildUrl(id);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (flags != null)
+            positiveFlagMask = FlagVocabulary.positiveMask(flags);
     }
 
     @Override
@@ -121,6 +177,13 @@ public class JiraIssue implements Issue {
         return flags;
     }
 
+    /**
+     * @return the {@link FlagVocabulary} mask of the names of the flags set to '+'
+     */
+    public long getPositiveFlagMask() {
+        return positiveFlagMask;
+    }
+
     @Override
     public Set<String> getFixVersions() {
         return fixVersions;
@@ -167,10 +230,14 @@ public class JiraIssue implements Issue {
         return builder.toString();
     }
 
-    private Flag buildFlagFromField(Field field) {
-        String name = field.getName();
-        String statusValue = (String) field.getValue();
+    private Flag buildFlag(String name, Object value) {
         Flag.Status status;
+        if (value instanceof JSONObject) {
+            // option fields come as {"value": ...}
+            value = ((JSONObject) value).opt("value");
+        }
+        // a value of any other type, e.g. a number or a list, is not a flag status
+        String statusValue = value instanceof String ? (String) value : null;
         if(statusValue == null) {
             status = Flag.Status.UNKNOWN;
         } else if (statusValue.equals("+")) {
@@ -182,9 +249,26 @@ public class JiraIssue implements Issue {
         } else {
             status = Flag.Status.UNKNOWN;
         }
-        return new Flag(name, "{UNKNOWN_SETTER}", status);
+        return FlagVocabulary.flag(name, "{UNKNOWN_SETTER}", status);
+    }
+
+    private static Object valueOf(JSONObject fields, String fieldId) {
+        Object value = fields.opt(fieldId);
+        return value == JSONObject.NULL ? null : value;
+    }
+
+    private static IssueStatus toStatus(String name) {
+        return IssueStatus.valueOf(name.toUpperCase().replace(" ", "_"));
     }
 
+    private static URL buildUrl(String id) {
+        try {
+            return new URL(Constants.JIRA_BASE_BROWSE + id);
+        } catch (MalformedURLException malformed) {
+            System.err.printf("Invalid URL formed: %s. \n", malformed);
+            return null;
+        }
+    }
 
     private Set<String> findFixVersions(Iterable<Version> fixVersions) {
         SortedSet<String> toReturn = new TreeSet<String>();
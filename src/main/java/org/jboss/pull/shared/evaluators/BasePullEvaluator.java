@@ -23,18 +23,28 @@ package org.jboss.pull.shared.evaluators;
 
 import org.eclipse.egit.github.core.Comment;
 import org.eclipse.egit.github.core.PullRequest;
-import org.jboss.pull.shared.Constants;
+import org.jboss.pull.shared.CommentClassifier;
 import org.jboss.pull.shared.PullHelper;
+import org.jboss.pull.shared.PullRequestReferences;
 import org.jboss.pull.shared.Util;
 import org.jboss.pull.shared.connectors.bugzilla.Bug;
+import org.jboss.pull.shared.connectors.common.Flag;
+import org.jboss.pull.shared.connectors.common.FlagVocabulary;
 import org.jboss.pull.shared.connectors.common.Issue;
+import org.jboss.pull.shared.connectors.github.GitHubBudgetExhaustedException;
 import org.jboss.pull.shared.connectors.RedhatPullRequest;
 import org.jboss.pull.shared.connectors.jira.JiraIssue;
 import org.jboss.pull.shared.spi.PullEvaluator;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
 
 /**
  * An abstract base evaluator which holds the target github branch.
@@ -51,6 +61,8 @@ public abstract class BasePullEvaluator implements PullEvaluator {
     public static final String ISSUE_FIX_VERSION = "issue.fix.version";
 
     private static final String NOT_REVIEWED_TAG = "Pull request has not been reviewed yet";
+    private static final String MISSING_UPSTREAM_TAG = "Missing any upstream pull request";
+    protected static final String MISSING_BUG_TAG = "Missing any bugzilla bug";
 
     protected PullHelper helper;
 
@@ -60,6 +72,68 @@ public abstract class BasePullEvaluator implements PullEvaluator {
     protected String upstreamRepository;
     protected String upstreamBranch;
 
+    // the checks in the order their descriptions are reported, and cheapest first
+    private List<Check> checks = Collections.emptyList();
+    private List<Check> cheapestFirst = Collections.emptyList();
+
+    /**
+     * The kind of data a check reads, which tells how expensive it is.
+     */
+    protected enum Cost {
+        /**
+         * Reads the references parsed from the description.
+         */
+        DESCRIPTION,
+
+        /**
+         * Reads the issues resolved in bulk for all the open pull requests, or cached.
+         */
+        CACHED,
+
+        /**
+         * Calls github or an issue tracker.
+         */
+        REMOTE
+    }
+
+    /**
+     * A single condition of merging a pull request.
+     */
+    protected abstract static class Check {
+        private final String name;
+        private final Cost cost;
+        private final boolean guard;
+
+        protected Check(String name, Cost cost) {
+            this(name, cost, false);
+        }
+
+        /**
+         * @param guard - whether the check only fails early what a more expensive check fails too, so that it is
+         *              skipped in the {@link Mode#DIAGNOSTIC} mode
+         */
+        protected Check(String name, Cost cost, boolean guard) {
+            this.name = name;
+            this.cost = cost;
+            this.guard = guard;
+        }
+
+        protected abstract Result check(RedhatPullRequest pull);
+
+        public Cost getCost() {
+            return cost;
+        }
+
+        public boolean isGuard() {
+            return guard;
+        }
+
+        @Override
+        public String toString() {
+            return name + "[" + cost + (guard ? ", guard" : "") + "]";
+        }
+    }
+
     @Override
     public void init(final PullHelper helper, final Properties configuration, final String version) {
         this.helper = helper;
@@ -70,6 +144,88 @@ public abstract class BasePullEvaluator implements PullEvaluator {
         this.upstreamRepository = Util.require(configuration, version + "." + GITHUB_REPOSITORY_UPSTREAM);
         this.upstreamBranch = Util.require(configuration, version + "." + GITHUB_BRANCH_UPSTREAM);
 
+        // the checks read the configuration of the subclasses only when they are run
+        checks = Collections.unmodifiableList(createChecks());
+        final List<Check> sorted = new ArrayList<Check>(checks);
+        // stable, the checks of the same cost keep their order
+        Collections.sort(sorted, new Comparator<Check>() {
+            @Override
+            public int compare(Check c1, Check c2) {
+                return c1.getCost().compareTo(c2.getCost());
+            }
+        });
+        cheapestFirst = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * Returns the conditions of merging a pull request, in the order their descriptions are reported. The default
+     * ones are the review and the merged upstream pull request.
+     */
+    protected List<Check> createChecks() {
+        final List<Check> checks = new ArrayList<Check>();
+        checks.add(upstreamReferenceCheck());
+        checks.add(reviewCheck());
+        checks.add(upstreamCheck());
+        return checks;
+    }
+
+    protected Check reviewCheck() {
+        return new Check("review", Cost.REMOTE) {
+            @Override
+            protected Result check(RedhatPullRequest pull) {
+                return isMarkedForMerge(pull);
+            }
+        };
+    }
+
+    /**
+     * Fails a pull request whose description doesn't link any pull request of the upstream repository, without
+     * fetching the linked pull requests.
+     */
+    protected Check upstreamReferenceCheck() {
+        return new Check("upstream reference", Cost.DESCRIPTION, true) {
+            @Override
+            protected Result check(RedhatPullRequest pull) {
+                return isUpstreamReferenced(pull);
+            }
+        };
+    }
+
+    protected Check upstreamCheck() {
+        return new Check("upstream", Cost.REMOTE) {
+            @Override
+            protected Result check(RedhatPullRequest pull) {
+                return isMergeableByUpstream(pull);
+            }
+        };
+    }
+
+    /**
+     * Fails a pull request whose description doesn't link any bug, without resolving the bugs.
+     */
+    protected Check bugReferenceCheck() {
+        return new Check("bug reference", Cost.DESCRIPTION, true) {
+            @Override
+            protected Result check(RedhatPullRequest pull) {
+                return isBugReferenced(pull);
+            }
+        };
+    }
+
+    protected Result isUpstreamReferenced(final RedhatPullRequest pull) {
+        for (PullRequestReferences.RelatedPullRequest related : pull.getReferences().getRelatedPullRequests()) {
+            // the fetched pull request may spell them differently
+            if (upstreamOrganization.equalsIgnoreCase(related.getOrganization())
+                    && upstreamRepository.equalsIgnoreCase(related.getRepository()))
+                return new Result(true);
+        }
+        return new Result(false, "- " + MISSING_UPSTREAM_TAG);
+    }
+
+    protected Result isBugReferenced(final RedhatPullRequest pull) {
+        if (pull.isBZInDescription())
+            return new Result(true);
+        return new Result(false, "- " + MISSING_BUG_TAG);
     }
 
     @Override
@@ -77,18 +233,40 @@ public abstract class BasePullEvaluator implements PullEvaluator {
         return githubBranch;
     }
 
+    /**
+     * Runs all the checks, see {@link Mode#DIAGNOSTIC}.
+     */
     @Override
     public Result isMergeable(final RedhatPullRequest pull) {
-        final Result mergeable;
-        mergeable = isMarkedForMerge(pull);
-        mergeable.and(isMergeableByUpstream(pull));
+        return isMergeable(pull, Mode.DIAGNOSTIC);
+    }
+
+    public Result isMergeable(final RedhatPullRequest pull, final Mode mode) {
+        final Result mergeable = new Result(true);
+        if (mode == Mode.FAST_FAIL) {
+            for (Check check : cheapestFirst) {
+                mergeable.and(check.check(pull));
+                if (!mergeable.isMergeable())
+                    break;
+            }
+        } else {
+            for (Check check : checks) {
+                if (!check.isGuard())
+                    mergeable.and(check.check(pull));
+            }
+        }
         return mergeable;
     }
 
-    private Result isMarkedForMerge(RedhatPullRequest pullRequest) {
+    protected Result isMarkedForMerge(final RedhatPullRequest pullRequest) {
         final Result result = new Result(false);
 
-        Comment comment = pullRequest.getLastMatchingGithubComment(Constants.MERGE);
+        Comment comment = memoize(pullRequest, "comment " + CommentClassifier.Command.MERGE, new Callable<Comment>() {
+            @Override
+            public Comment call() {
+                return pullRequest.getLastGithubComment(CommentClassifier.Command.MERGE);
+            }
+        });
 
         if (comment != null) {
             System.out.printf("issue #%d updated at: %s\n", pullRequest.getNumber(),
@@ -143,6 +321,16 @@ public abstract class BasePullEvaluator implements PullEvaluator {
 
     @Override
     public List<RedhatPullRequest> getUpstreamPullRequest(final RedhatPullRequest pullRequest) {
+        return new ArrayList<RedhatPullRequest>(memoize(pullRequest, "upstream " + upstreamOrganization + "/"
+                + upstreamRepository + " " + upstreamBranch, new Callable<List<RedhatPullRequest>>() {
+            @Override
+            public List<RedhatPullRequest> call() {
+                return findUpstreamPullRequests(pullRequest);
+            }
+        }));
+    }
+
+    private List<RedhatPullRequest> findUpstreamPullRequests(final RedhatPullRequest pullRequest) {
         final ArrayList<RedhatPullRequest> upstreamPulls = new ArrayList<RedhatPullRequest>();
 
         final List<RedhatPullRequest> relatedPullRequests = pullRequest.getRelatedPullRequests();
@@ -164,12 +352,12 @@ public abstract class BasePullEvaluator implements PullEvaluator {
             final List<RedhatPullRequest> upstreamPulls = getUpstreamPullRequest(pull);
             if (upstreamPulls.isEmpty()) {
                 mergeable.setMergeable(false);
-                mergeable.addDescription("- Missing any upstream pull request");
+                mergeable.addDescription("- " + MISSING_UPSTREAM_TAG);
                 return mergeable;
             }
 
             for (RedhatPullRequest pullRequest : upstreamPulls) {
-                if (!pullRequest.isMerged()) {
+                if (!isMerged(pullRequest)) {
                     mergeable.setMergeable(false);
                     mergeable
                             .addDescription("- Upstream pull request #" + pullRequest.getNumber() + " has not been merged yet");
@@ -180,11 +368,15 @@ public abstract class BasePullEvaluator implements PullEvaluator {
                 mergeable.addDescription("+ Upstream pull request is OK");
             }
 
+        } catch (GitHubBudgetExhaustedException e) {
+            // not knowing about the upstream pull request is not the same as it not being merged
+            throw e;
         } catch (Exception ignore) {
             System.err.printf("Cannot get an upstream pull request of the pull request %d: %s.\n", pull.getNumber(), ignore);
             ignore.printStackTrace(System.err);
 
             mergeable.setMergeable(false);
+            mergeable.setCacheable(false);
             mergeable.addDescription("Cannot get an upstream pull request of the pull request " + pull.getNumber() + ": "
                     + ignore.getMessage());
         }
@@ -192,7 +384,34 @@ public abstract class BasePullEvaluator implements PullEvaluator {
         return mergeable;
     }
 
-    protected List<Bug> getBugsThatMatchFixVersion(RedhatPullRequest pullRequest) {
+    /**
+     * Returns whether the pull request has been merged, asking github once per cycle.
+     *
+     * @throws IllegalStateException if github couldn't be asked, which is not the same as not merged
+     */
+    protected boolean isMerged(final RedhatPullRequest pullRequest) {
+        return memoize(pullRequest, "merged", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                final Boolean merged = pullRequest.getMergedState();
+                if (merged == null)
+                    throw new IllegalStateException("Cannot tell whether pull request #" + pullRequest.getNumber()
+                            + " has been merged");
+                return merged;
+            }
+        });
+    }
+
+    protected List<Bug> getBugsThatMatchFixVersion(final RedhatPullRequest pullRequest) {
+        return new ArrayList<Bug>(memoize(pullRequest, "bugs " + issueFixVersion, new Callable<List<Bug>>() {
+            @Override
+            public List<Bug> call() {
+                return findBugsThatMatchFixVersion(pullRequest);
+            }
+        }));
+    }
+
+    private List<Bug> findBugsThatMatchFixVersion(RedhatPullRequest pullRequest) {
         List<Issue> issues = pullRequest.getIssues();
 
         final List<Bug> returnBugs = new ArrayList<Bug>();
@@ -211,6 +430,74 @@ public abstract class BasePullEvaluator implements PullEvaluator {
         return returnBugs;
     }
 
+    /**
+     * @param requiredFlagMask - the {@link FlagVocabulary} mask of the required flags, null if some of them have no
+     *                         ordinal
+     * @return the required flags the bug doesn't have set to '+'
+     */
+    protected static Collection<String> getMissingFlags(Bug bug, Set<String> requiredFlags, Long requiredFlagMask) {
+        if (requiredFlagMask != null)
+            return FlagVocabulary.names(requiredFlagMask & ~bug.getPositiveFlagMask());
+
+        final Set<String> missingFlags = new TreeSet<String>(requiredFlags);
+        for (Flag flag : bug.getFlags()) {
+            if (flag.getStatus() == Flag.Status.POSITIVE)
+                missingFlags.remove(flag.getName());
+        }
+        return missingFlags;
+    }
+
+    protected static String missingFlagsDescription(Bug bug, Collection<String> missingFlags) {
+        final StringBuilder description = new StringBuilder("- Bug bz").append(bug.getNumber()).append(" is missing flags");
+
+        String delim = " ";
+        for (String missingFlag : missingFlags) {
+            description.append(delim).append(missingFlag);
+            delim = ", ";
+        }
+        return description.toString();
+    }
+
+    protected static String missingParentsDescription(Collection<Integer> requiredParents) {
+        final StringBuilder description = new StringBuilder("- Referenced BZs should block ");
+
+        if (requiredParents.size() > 1)
+            description.append("at least one of ");
+
+        String delim = " ";
+        for (Integer requiredParent : requiredParents) {
+            description.append(delim).append("bz").append(requiredParent);
+            delim = ", ";
+        }
+        return description.toString();
+    }
+
+    /**
+     * Computes a value of the pull request once per cycle of the {@link PullEvaluatorFacade}, see
+     * {@link EvaluationContext}, or on every call outside of a cycle.
+     *
+     * @param key - names the value, including the configuration it depends on
+     */
+    protected <T> T memoize(RedhatPullRequest pull, String key, Callable<T> loader) {
+        final EvaluationContext context = getContext();
+        if (context != null)
+            return context.get(pull, key, loader);
+
+        try {
+            return loader.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot compute " + key + " of pull request " + pull.getNumber(), e);
+        }
+    }
+
+    private EvaluationContext getContext() {
+        // looked up on every use, the facade is being created while the evaluators are initialized
+        final PullEvaluatorFacade facade = helper != null ? helper.getEvaluatorFacade() : null;
+        return facade != null ? facade.getContext() : null;
+    }
+
     private boolean updateJiraAsMerged(final JiraIssue issue) {
         // TODO
         throw new IllegalStateException("jira has not been implemented yet");
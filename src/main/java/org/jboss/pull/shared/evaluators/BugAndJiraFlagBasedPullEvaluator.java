@@ -25,8 +25,10 @@ import org.jboss.pull.shared.PullHelper;
 import org.jboss.pull.shared.Util;
 import org.jboss.pull.shared.connectors.RedhatPullRequest;
 import org.jboss.pull.shared.connectors.bugzilla.Bug;
-import org.jboss.pull.shared.connectors.common.Flag;
+import org.jboss.pull.shared.connectors.common.FlagVocabulary;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
@@ -47,6 +49,8 @@ public class BugAndJiraFlagBasedPullEvaluator extends BasePullEvaluator {
     public static final String DEVEL_ACK = "devel_ack";
 
     protected final Set<String> REQUIRED_FLAGS = new HashSet<String>();
+    // the FlagVocabulary mask of REQUIRED_FLAGS, null if some of them have no ordinal
+    private Long requiredFlagMask;
 
     @Override
     public void init(final PullHelper helper, final Properties configuration, final String version) {
@@ -62,14 +66,28 @@ public class BugAndJiraFlagBasedPullEvaluator extends BasePullEvaluator {
             final String requiredFlag = tokenizer.nextToken();
             REQUIRED_FLAGS.add(requiredFlag);
         }
+        requiredFlagMask = FlagVocabulary.mask(REQUIRED_FLAGS);
     }
 
     @Override
-    public Result isMergeable(final RedhatPullRequest pull) {
-        final Result mergeable;
-        mergeable = isMergeableByUpstream(pull);
-        mergeable.and(isMergeableByBugzilla(pull));
-        return mergeable;
+    protected List<Check> createChecks() {
+        // no review needed
+        final List<Check> checks = new ArrayList<Check>();
+        checks.add(upstreamReferenceCheck());
+        checks.add(upstreamCheck());
+        checks.add(bugReferenceCheck());
+        checks.add(bugzillaCheck());
+        return checks;
+    }
+
+    protected Check bugzillaCheck() {
+        // the bugs are resolved in bulk for all the open pull requests
+        return new Check("bugzilla", Cost.CACHED) {
+            @Override
+            protected Result check(RedhatPullRequest pull) {
+                return isMergeableByBugzilla(pull);
+            }
+        };
     }
 
     protected Result isMergeableByBugzilla(final RedhatPullRequest pull) {
@@ -78,22 +96,15 @@ public class BugAndJiraFlagBasedPullEvaluator extends BasePullEvaluator {
         final List<Bug> bugs = (List<Bug>) getIssue(pull);
         if (bugs.isEmpty()) {
             mergeable.setMergeable(false);
-            mergeable.addDescription("- Missing any bugzilla bug");
+            mergeable.addDescription("- " + MISSING_BUG_TAG);
             return mergeable;
         }
 
         for (Bug bug : bugs) {
-            final Set<String> flagsToCheck = new HashSet<String>(this.REQUIRED_FLAGS);
-
-            final List<Flag> flags = bug.getFlags();
-            for (Flag flag : flags) {
-                if (flag.getStatus() == Flag.Status.POSITIVE) {
-                    flagsToCheck.remove(flag.getName());
-                }
-            }
-            if (! flagsToCheck.isEmpty()) {
+            final Collection<String> missingFlags = getMissingFlags(bug, REQUIRED_FLAGS, requiredFlagMask);
+            if (!missingFlags.isEmpty()) {
                 mergeable.setMergeable(false);
-                mergeable.addDescription(missingFlagsDescription(bug, flagsToCheck));
+                mergeable.addDescription(missingFlagsDescription(bug, missingFlags));
             }
         }
 
@@ -104,15 +115,4 @@ public class BugAndJiraFlagBasedPullEvaluator extends BasePullEvaluator {
         return mergeable;
     }
 
-    private String missingFlagsDescription(Bug bug, Set<String> missingFlags) {
-        final StringBuilder description = new StringBuilder("- Bug bz").append(bug.getNumber()).append(" is missing flags");
-
-        String delim = " ";
-        for (String missingFlag : missingFlags) {
-            description.append(delim).append(missingFlag);
-            delim = ", ";
-        }
-        return description.toString();
-    }
-
 }
@@ -0,0 +1,315 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.evaluators;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.egit.github.core.Comment;
+import org.jboss.pull.shared.CommentClassifier;
+import org.jboss.pull.shared.PullRequestReferences;
+import org.jboss.pull.shared.connectors.RedhatPullRequest;
+import org.jboss.pull.shared.connectors.bugzilla.Bug;
+import org.jboss.pull.shared.connectors.common.ConcurrencyLimiter;
+import org.jboss.pull.shared.connectors.common.Flag;
+import org.jboss.pull.shared.connectors.common.Issue;
+import org.jboss.pull.shared.connectors.github.GitHubBudgetExhaustedException;
+import org.jboss.pull.shared.connectors.github.GithubHelper;
+import org.jboss.pull.shared.connectors.github.PullRequestCoordinates;
+import org.jboss.pull.shared.connectors.jira.JiraIssue;
+import org.jboss.pull.shared.spi.PullEvaluator;
+
+/**
+ * A bounded LRU cache of evaluation results kept across polls. A result is reused as long as the fingerprint of the
+ * pull request is the same: its head sha, base branch and update time, the last merge comment if the comments have
+ * been fetched already, the related pull requests its description refers to and the last change of each of its
+ * issues. Github updates a pull request whenever it is commented on or its description is edited, so a new comment
+ * changes the fingerprint even when the comments are not at hand.
+ * <p>
+ * The related pull requests are not fetched to take the fingerprint. If the evaluation fetched them, e.g. to check
+ * that the upstream pull request is merged, their state is kept with the result, and they are fetched again to reuse
+ * it. A result which didn't need them, e.g. one failing a check of the description, is reused without remote calls.
+ * <p>
+ * The remote calls an evaluation made in the evaluating thread are remembered with its result, and counted as saved
+ * whenever the result is reused.
+ *
+ * @author navssurtani
+ */
+public class EvaluationCache {
+
+    private final int maxSize;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong savedCalls = new AtomicLong();
+
+    private final LinkedHashMap<PullRequestCoordinates, CachedResult> entries;
+
+    /**
+     * @param maxSize - maximum number of cached results, the least recently used ones are evicted first
+     */
+    public EvaluationCache(final int maxSize) {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("Size has to be positive: " + maxSize);
+
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<PullRequestCoordinates, CachedResult>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PullRequestCoordinates, CachedResult> eldest) {
+                return size() > EvaluationCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the previous result of the pull request if its fingerprint hasn't changed, otherwise evaluates it and
+     * keeps the result. Failed evaluations and results based on a failed lookup are not cached.
+     */
+    public PullEvaluator.Result evaluate(RedhatPullRequest pull, PullEvaluator evaluator, PullEvaluator.Mode mode) {
+        final PullRequestCoordinates coordinates = pull.getCoordinates();
+        final String fingerprint;
+        String related = null;
+        try {
+            fingerprint = fingerprint(pull);
+            // the related pull requests are only fetched if the previous evaluation needed them too
+            if (dependsOnRelated(coordinates, fingerprint))
+                related = relatedFingerprint(pull.getRelatedPullRequests());
+        } catch (GitHubBudgetExhaustedException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            // the evaluator reports the failure its own way
+            misses.incrementAndGet();
+            return PullEvaluatorFacade.isMergeable(evaluator, pull, mode);
+        }
+
+        final PullEvaluator.Result cached = get(coordinates, fingerprint, related, mode);
+        if (cached != null)
+            return cached;
+
+        final long callsBefore = ConcurrencyLimiter.getCurrentThreadCalls();
+        final PullEvaluator.Result result = PullEvaluatorFacade.isMergeable(evaluator, pull, mode);
+        if (!result.isCacheable())
+            return result;
+        final List<RedhatPullRequest> fetched = pull.getFetchedRelatedPullRequests();
+        put(coordinates, fingerprint, fetched != null ? relatedFingerprint(fetched) : null, result, mode,
+                ConcurrencyLimiter.getCurrentThreadCalls() - callsBefore);
+        return result;
+    }
+
+    /**
+     * A result of the {@link PullEvaluator.Mode#FAST_FAIL} mode which is not mergeable lacks the descriptions of the
+     * checks which were not run, so it is not returned for the {@link PullEvaluator.Mode#DIAGNOSTIC} mode.
+     *
+     * @return - a copy of the cached result, or null if there is none for the fingerprint and mode
+     */
+    public PullEvaluator.Result get(PullRequestCoordinates coordinates, String fingerprint, PullEvaluator.Mode mode) {
+        return get(coordinates, fingerprint, null, mode);
+    }
+
+    /**
+     * Same as {@link #get(PullRequestCoordinates, String, PullEvaluator.Mode)} for a result which may depend on the
+     * related pull requests.
+     *
+     * @param related - the current {@link #relatedFingerprint(List)}, or null if it hasn't been taken
+     */
+    public PullEvaluator.Result get(PullRequestCoordinates coordinates, String fingerprint, String related,
+                                    PullEvaluator.Mode mode) {
+        final CachedResult entry;
+        synchronized (entries) {
+            entry = entries.get(coordinates);
+        }
+        if (entry == null || !entry.fingerprint.equals(fingerprint)
+                || (entry.related != null && !entry.related.equals(related))
+                || (mode == PullEvaluator.Mode.DIAGNOSTIC && !entry.complete)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        savedCalls.addAndGet(entry.calls);
+        // the callers may add to the description
+        return new PullEvaluator.Result(entry.result);
+    }
+
+    /**
+     * @param mode - the mode the result was evaluated in
+     * @param calls - number of remote calls the evaluation made
+     */
+    public void put(PullRequestCoordinates coordinates, String fingerprint, PullEvaluator.Result result,
+                    PullEvaluator.Mode mode, long calls) {
+        put(coordinates, fingerprint, null, result, mode, calls);
+    }
+
+    /**
+     * @param related - the {@link #relatedFingerprint(List)} of the related pull requests the evaluation read, or
+     *                null if it didn't read them
+     * @param mode - the mode the result was evaluated in
+     * @param calls - number of remote calls the evaluation made
+     */
+    public void put(PullRequestCoordinates coordinates, String fingerprint, String related,
+                    PullEvaluator.Result result, PullEvaluator.Mode mode, long calls) {
+        // all the checks were run if none of them failed
+        final boolean complete = mode == PullEvaluator.Mode.DIAGNOSTIC || result.isMergeable();
+        final CachedResult entry = new CachedResult(fingerprint, related, new PullEvaluator.Result(result), complete,
+                calls);
+        synchronized (entries) {
+            entries.put(coordinates, entry);
+        }
+    }
+
+    private boolean dependsOnRelated(PullRequestCoordinates coordinates, String fingerprint) {
+        synchronized (entries) {
+            final CachedResult entry = entries.get(coordinates);
+            return entry != null && entry.related != null && entry.fingerprint.equals(fingerprint);
+        }
+    }
+
+    /**
+     * Describes everything the evaluation of the pull request depends on, apart from the state of its related pull
+     * requests. Only the issues are resolved, which is done in bulk for all the open pull requests anyway.
+     */
+    public static String fingerprint(RedhatPullRequest pull) {
+        final PullRequestCoordinates coordinates = pull.getCoordinates();
+        final StringBuilder sb = new StringBuilder(128);
+        sb.append(coordinates.getHeadSha()).append(' ').append(coordinates.getBaseRef()).append(' ');
+        appendTime(sb, pull.getGithubUpdatedAt());
+
+        final List<Comment> comments = pull.getFetchedGithubComments();
+        if (comments != null) {
+            final Comment comment = GithubHelper.getLastComment(comments, CommentClassifier.Command.MERGE);
+            sb.append(" c").append(comment != null ? comment.getId() : 0);
+        }
+
+        for (PullRequestReferences.RelatedPullRequest related : pull.getReferences().getRelatedPullRequests()) {
+            sb.append(" r").append(related.getOrganization()).append('/').append(related.getRepository())
+                    .append('#').append(related.getNumber());
+        }
+
+        for (Issue issue : pull.getIssues()) {
+            sb.append(" i");
+            appendIssue(sb, issue);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Describes the state of the related pull requests a result may depend on.
+     */
+    public static String relatedFingerprint(List<RedhatPullRequest> relatedPullRequests) {
+        final StringBuilder sb = new StringBuilder(64);
+        for (RedhatPullRequest related : relatedPullRequests) {
+            sb.append(" p").append(related.getCoordinates()).append(':').append(related.getSourceBranchSha())
+                    .append(':').append(related.getState()).append(':');
+            // merging closes the pull request and changes its update time
+            appendTime(sb, related.getGithubUpdatedAt());
+        }
+        return sb.toString();
+    }
+
+    private static void appendIssue(StringBuilder sb, Issue issue) {
+        if (issue == null) {
+            sb.append("null");
+        } else if (issue instanceof Bug) {
+            sb.append(issue.getNumber()).append(':');
+            appendTime(sb, ((Bug) issue).getLastChangeTime());
+        } else {
+            // jira issues don't carry their update time, so their content is the version
+            sb.append(issue.getNumber()).append(':').append(issue.getStatus());
+            if (issue instanceof JiraIssue) {
+                final JiraIssue jiraIssue = (JiraIssue) issue;
+                sb.append(':').append(jiraIssue.getResolution()).append(':').append(jiraIssue.getTargetRelease());
+            }
+            for (Flag flag : issue.getFlags()) {
+                sb.append(':').append(flag.getName()).append('=').append(flag.getStatus());
+            }
+            sb.append(':').append(issue.getFixVersions());
+        }
+    }
+
+    private static void appendTime(StringBuilder sb, Date time) {
+        sb.append(time != null ? time.getTime() : 0L);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return - share of the lookups which found an up to date result, 0 if there were none
+     */
+    public double getHitRate() {
+        final long hits = getHits();
+        final long lookups = hits + getMisses();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return - number of remote calls the reused results would have made again
+     */
+    public long getSavedCalls() {
+        return savedCalls.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("EvaluationCache[size=%d, hits=%d, misses=%d, hitRate=%.2f, savedCalls=%d]", size(),
+                getHits(), getMisses(), getHitRate(), getSavedCalls());
+    }
+
+    private static class CachedResult {
+        private final String fingerprint;
+        // state of the related pull requests the result depends on, null if it doesn't
+        private final String related;
+        private final PullEvaluator.Result result;
+        private final boolean complete;
+        private final long calls;
+
+        private CachedResult(String fingerprint, String related, PullEvaluator.Result result, boolean complete,
+                             long calls) {
+            this.fingerprint = fingerprint;
+            this.related = related;
+            this.result = result;
+            this.complete = complete;
+            this.calls = calls;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.evaluators;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.pull.shared.connectors.RedhatPullRequest;
+
+/**
+ * Holds what has been derived from the pull requests during a processing cycle, e.g. their bugs matching the fix
+ * version, upstream pull requests, merged states and review comments, so that the calls of the
+ * {@link PullEvaluatorFacade} on the same pull request compute each of them once. The values are kept per
+ * {@link RedhatPullRequest} instance, a pull request fetched again is a new one. The values are dropped when the
+ * cycle ends.
+ * <p>
+ * Each value is computed by the first caller, the concurrent ones wait for it. A failure is not kept, the next
+ * caller tries again.
+ *
+ * @author navssurtani
+ */
+public class EvaluationContext {
+
+    private final ConcurrentMap<RedhatPullRequest, ConcurrentMap<String, FutureTask<?>>> values =
+            new ConcurrentHashMap<RedhatPullRequest, ConcurrentMap<String, FutureTask<?>>>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Returns the value of the pull request computed earlier in the cycle, or computes it.
+     *
+     * @param key - names the value, including whatever else it depends on, e.g. the fix version
+     * @param loader - computes the value, it may be null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(RedhatPullRequest pull, String key, Callable<T> loader) {
+        ConcurrentMap<String, FutureTask<?>> pullValues = values.get(pull);
+        if (pullValues == null) {
+            final ConcurrentMap<String, FutureTask<?>> created = new ConcurrentHashMap<String, FutureTask<?>>();
+            pullValues = values.putIfAbsent(pull, created);
+            if (pullValues == null)
+                pullValues = created;
+        }
+
+        final FutureTask<T> created = new FutureTask<T>(loader);
+        FutureTask<T> task = (FutureTask<T>) pullValues.putIfAbsent(key, created);
+        if (task == null) {
+            misses.incrementAndGet();
+            task = created;
+        } else {
+            hits.incrementAndGet();
+        }
+
+        // no-op if the value has been computed already
+        task.run();
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while computing " + key + " of pull request "
+                    + pull.getNumber(), e);
+        } catch (ExecutionException e) {
+            pullValues.remove(key, task);
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException("Cannot compute " + key + " of pull request " + pull.getNumber(),
+                    e.getCause());
+        }
+    }
+
+    /**
+     * Drops all the values, when the cycle ends.
+     */
+    void clear() {
+        values.clear();
+    }
+
+    /**
+     * @return - number of pull requests with values
+     */
+    public int size() {
+        return values.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return "EvaluationContext[size=" + size() + ", hits=" + hits + ", misses=" + misses + "]";
+    }
+}
@@ -55,11 +55,21 @@ public class ParentBugBasedPullEvaluator extends BasePullEvaluator {
     }
 
     @Override
-    public Result isMergeable(final RedhatPullRequest pull) {
-        final Result mergeable;
-        mergeable = super.isMergeable(pull);
-        mergeable.and(isMergeableByBugzilla(pull));
-        return mergeable;
+    protected List<Check> createChecks() {
+        final List<Check> checks = super.createChecks();
+        checks.add(bugReferenceCheck());
+        checks.add(bugzillaCheck());
+        return checks;
+    }
+
+    protected Check bugzillaCheck() {
+        // the bugs are resolved in bulk for all the open pull requests
+        return new Check("bugzilla", Cost.CACHED) {
+            @Override
+            protected Result check(RedhatPullRequest pull) {
+                return isMergeableByBugzilla(pull);
+            }
+        };
     }
 
     protected Result isMergeableByBugzilla(final RedhatPullRequest pull) {
@@ -67,7 +77,7 @@ public class ParentBugBasedPullEvaluator extends BasePullEvaluator {
 
         final List<Bug> bugs = (List<Bug>) getIssue(pull);
         if (bugs.isEmpty()) {
-            mergeable.addDescription("- Missing any bugzilla bug");
+            mergeable.addDescription("- " + MISSING_BUG_TAG);
             return mergeable;
         }
 
@@ -80,7 +90,7 @@ public class ParentBugBasedPullEvaluator extends BasePullEvaluator {
             // ...contain at least one of the required parent bugs
             boolean hit = false;
             for (Integer parentBug : REQUIRED_PARENTS) {
-                if (blocks.contains(parentBug))
+                if (bug.isBlocking(parentBug))
                     hit = true;
             }
 
@@ -90,24 +100,10 @@ public class ParentBugBasedPullEvaluator extends BasePullEvaluator {
         if (mergeable.isMergeable()) {
             mergeable.addDescription("+ Bugzilla is OK");
         } else {
-            mergeable.addDescription(missingParentsDescription());
+            mergeable.addDescription(missingParentsDescription(REQUIRED_PARENTS));
         }
 
         return mergeable;
     }
 
-    private String missingParentsDescription() {
-        final StringBuilder description = new StringBuilder("- Referenced BZs should block ");
-
-        if (REQUIRED_PARENTS.size() > 1)
-            description.append("at least one of ");
-
-        String delim = " ";
-        for (Integer requiredParent : REQUIRED_PARENTS) {
-            description.append(delim).append("bz").append(requiredParent);
-            delim = ", ";
-        }
-        return description.toString();
-    }
-
 }
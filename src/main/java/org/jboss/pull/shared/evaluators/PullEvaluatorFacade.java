@@ -28,6 +28,8 @@ import org.jboss.pull.shared.connectors.common.Issue;
 import org.jboss.pull.shared.spi.PullEvaluator;
 
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -35,6 +37,12 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Collects all {@code PullEvaluator} services and redirects to them
@@ -45,10 +53,41 @@ import java.util.StringTokenizer;
  */
 public class PullEvaluatorFacade {
 
+    public static final String EVALUATION_THREADS_PROPERTY = "evaluation.threads";
+    private static final int DEFAULT_EVALUATION_THREADS = 4;
+    public static final String EVALUATION_CACHE_SIZE_PROPERTY = "evaluation.cache.size";
+    private static final int DEFAULT_EVALUATION_CACHE_SIZE = 1000;
+
+    private final PullHelper helper;
     private final Map<String, PullEvaluator> evaluators = new HashMap<String, PullEvaluator>();
 
+    // evaluates pull requests in parallel for evaluateAll(), the remote services limit their own concurrency
+    private final ExecutorService evaluationExecutor;
+
+    // results of the pull requests which haven't changed since they were evaluated, null if disabled
+    private final EvaluationCache evaluationCache;
+
+    // what has been derived from the pull requests of the cycle the thread takes part in, unset outside of a cycle
+    private final ThreadLocal<EvaluationContext> context = new ThreadLocal<EvaluationContext>();
+
     public PullEvaluatorFacade(final PullHelper helper, final Properties configuration) {
+        this.helper = helper;
+
+        final int threads = Integer.parseInt(Util.get(configuration, EVALUATION_THREADS_PROPERTY,
+                String.valueOf(DEFAULT_EVALUATION_THREADS)).trim());
+        if (threads < 1)
+            throw new IllegalArgumentException(EVALUATION_THREADS_PROPERTY + " has to be positive: " + threads);
+        evaluationExecutor = Executors.newFixedThreadPool(threads, Util.daemonThreadFactory("pull-evaluator"));
+
+        final int cacheSize = Integer.parseInt(Util.get(configuration, EVALUATION_CACHE_SIZE_PROPERTY,
+                String.valueOf(DEFAULT_EVALUATION_CACHE_SIZE)).trim());
+        if (cacheSize < 0)
+            throw new IllegalArgumentException(EVALUATION_CACHE_SIZE_PROPERTY + " must not be negative: " + cacheSize);
+        evaluationCache = cacheSize > 0 ? new EvaluationCache(cacheSize) : null;
+
         final String versions = Util.require(configuration, "versions");
+        // the rule based evaluators of the versions share their equal predicates
+        final RuleBasedPullEvaluator.PredicateTable predicates = new RuleBasedPullEvaluator.PredicateTable();
 
         final StringTokenizer tokenizer = new StringTokenizer(versions, ", ");
         while (tokenizer.hasMoreTokens()) {
@@ -60,6 +99,8 @@ public class PullEvaluatorFacade {
                 Constructor ctor = evaluatorClass.getConstructor();
                 PullEvaluator evaluator = (PullEvaluator) ctor.newInstance();
 
+                if (evaluator instanceof RuleBasedPullEvaluator)
+                    ((RuleBasedPullEvaluator) evaluator).setPredicateTable(predicates);
                 evaluator.init(helper, configuration, version);
                 final String evaluatorTargetBranch = evaluator.getTargetBranch();
                 if (evaluators.containsKey(evaluatorTargetBranch))
@@ -73,11 +114,116 @@ public class PullEvaluatorFacade {
         }
     }
 
+    /**
+     * Evaluates the pull request in the {@link PullEvaluator.Mode#DIAGNOSTIC} mode.
+     */
     public PullEvaluator.Result isMergeable(final RedhatPullRequest pull) {
+        return isMergeable(pull, PullEvaluator.Mode.DIAGNOSTIC);
+    }
+
+    /**
+     * Evaluates the pull request, or returns its previous result if nothing it depends on has changed since.
+     */
+    public PullEvaluator.Result isMergeable(final RedhatPullRequest pull, final PullEvaluator.Mode mode) {
         final PullEvaluator evaluator = getPullEvaluator(pull);
+        if (evaluationCache != null)
+            return evaluationCache.evaluate(pull, evaluator, mode);
+        return isMergeable(evaluator, pull, mode);
+    }
+
+    /**
+     * Evaluators which don't run {@link BasePullEvaluator.Check}s always evaluate everything.
+     */
+    static PullEvaluator.Result isMergeable(final PullEvaluator evaluator, final RedhatPullRequest pull,
+                                            final PullEvaluator.Mode mode) {
+        if (evaluator instanceof BasePullEvaluator)
+            return ((BasePullEvaluator) evaluator).isMergeable(pull, mode);
         return evaluator.isMergeable(pull);
     }
 
+    /**
+     * Evaluates the given pull requests in parallel. A failure to evaluate one of them is recorded in its
+     * {@code Evaluation} and doesn't affect the others. The evaluations take part in the cycle of the calling thread,
+     * see {@link #beginCycle()}, or in a cycle of their own which ends with this call.
+     *
+     * @param pulls pull requests to be evaluated
+     * @return evaluations in the iteration order of {@code pulls}
+     */
+    public List<Evaluation> evaluateAll(final Collection<RedhatPullRequest> pulls) {
+        return evaluateAll(pulls, PullEvaluator.Mode.DIAGNOSTIC);
+    }
+
+    /**
+     * Evaluates the given pull requests in parallel, in the given mode.
+     *
+     * @see #evaluateAll(Collection)
+     */
+    public List<Evaluation> evaluateAll(final Collection<RedhatPullRequest> pulls, final PullEvaluator.Mode mode) {
+        final EvaluationContext callerCycle = context.get();
+        final EvaluationContext cycle = callerCycle != null ? callerCycle : new EvaluationContext();
+        try {
+            return evaluateAll(pulls, mode, cycle);
+        } finally {
+            if (callerCycle == null)
+                cycle.clear();
+        }
+    }
+
+    private List<Evaluation> evaluateAll(final Collection<RedhatPullRequest> pulls, final PullEvaluator.Mode mode,
+                                         final EvaluationContext cycle) {
+        final List<Future<Evaluation>> futures = new ArrayList<Future<Evaluation>>(pulls.size());
+        for (final RedhatPullRequest pull : pulls) {
+            futures.add(evaluationExecutor.submit(new Callable<Evaluation>() {
+                @Override
+                public Evaluation call() {
+                    final long start = System.nanoTime();
+                    context.set(cycle);
+                    try {
+                        final PullEvaluator.Result result = isMergeable(pull, mode);
+                        return new Evaluation(pull, result, null, System.nanoTime() - start);
+                    } catch (RuntimeException e) {
+                        System.err.printf("Cannot evaluate pull request %d: %s.\n", pull.getNumber(), e);
+                        e.printStackTrace(System.err);
+                        return new Evaluation(pull, null, e, System.nanoTime() - start);
+                    } finally {
+                        context.remove();
+                    }
+                }
+            }));
+        }
+
+        final List<Evaluation> evaluations = new ArrayList<Evaluation>(futures.size());
+        try {
+            for (Future<Evaluation> future : futures) {
+                evaluations.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            for (Future<Evaluation> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating pull requests", e);
+        } catch (ExecutionException e) {
+            // the evaluation task catches everything but errors
+            throw new IllegalStateException(e.getCause());
+        }
+        return evaluations;
+    }
+
+    /**
+     * Evaluates only the open pull requests referencing any of the changed bugs, jira issues or pull requests, or
+     * being one of the changed pull requests, rather than all of them. The affected pull requests are fetched again
+     * so that they see the changes. Like {@link #evaluateAll(Collection)}, they are evaluated in the cycle of the
+     * calling thread, or in a cycle of their own which ends with this call.
+     *
+     * @param changedKeys keys of the changed bugs, jira issues and pull requests, see
+     *                    {@link org.jboss.pull.shared.connectors.DependencyIndex}
+     * @return evaluations of the affected pull requests which are still open
+     */
+    public List<Evaluation> evaluateAffected(final Collection<String> changedKeys) {
+        return evaluateAll(helper.getAffectedPullRequests(changedKeys));
+    }
+
     public List<? extends Issue> getIssue(final RedhatPullRequest pull) {
         final PullEvaluator evaluator = getPullEvaluator(pull);
         return evaluator.getIssue(pull);
@@ -103,8 +249,101 @@ public class PullEvaluatorFacade {
         return evaluator;
     }
 
+    /**
+     * Starts a processing cycle of the calling thread, so that what is derived from the pull requests is kept across
+     * its calls of {@link #isMergeable(RedhatPullRequest)}, {@link #evaluateAll(Collection)} and the like. The cycles of
+     * other threads are not affected. The caller has to end the cycle:
+     * <pre>
+     * EvaluationContext cycle = facade.beginCycle();
+     * try {
+     *     ...
+     * } finally {
+     *     facade.endCycle(cycle);
+     * }
+     * </pre>
+     *
+     * @return the context of the new cycle
+     * @throws IllegalStateException if the calling thread takes part in a cycle already
+     */
+    public EvaluationContext beginCycle() {
+        if (context.get() != null)
+            throw new IllegalStateException("A processing cycle has been started by the thread already");
+        final EvaluationContext cycle = new EvaluationContext();
+        context.set(cycle);
+        return cycle;
+    }
+
+    /**
+     * Ends the processing cycle, discarding what has been derived from its pull requests.
+     *
+     * @param cycle - the context returned by {@link #beginCycle()}
+     */
+    public void endCycle(final EvaluationContext cycle) {
+        if (context.get() == cycle)
+            context.remove();
+        cycle.clear();
+    }
+
+    /**
+     * @return the context of the cycle the calling thread takes part in, or null outside of a cycle
+     */
+    public EvaluationContext getContext() {
+        return context.get();
+    }
+
+    /**
+     * @return the cache of the evaluation results with its hit rate and saved remote calls, or null if disabled
+     */
+    public EvaluationCache getEvaluationCache() {
+        return evaluationCache;
+    }
+
     public Set<String> getCoveredBranches() {
         return new HashSet<String>(evaluators.keySet());
     }
 
+    /**
+     * Outcome of evaluating a single pull request with {@link #evaluateAll(Collection)}.
+     */
+    public static class Evaluation {
+        private final RedhatPullRequest pullRequest;
+        private final PullEvaluator.Result result;
+        private final RuntimeException failure;
+        private final long nanos;
+
+        private Evaluation(RedhatPullRequest pullRequest, PullEvaluator.Result result, RuntimeException failure,
+                           long nanos) {
+            this.pullRequest = pullRequest;
+            this.result = result;
+            this.failure = failure;
+            this.nanos = nanos;
+        }
+
+        public RedhatPullRequest getPullRequest() {
+            return pullRequest;
+        }
+
+        /**
+         * @return the result, or null if the evaluation failed
+         */
+        public PullEvaluator.Result getResult() {
+            return result;
+        }
+
+        /**
+         * @return the reason of the failure, or null if the evaluation succeeded
+         */
+        public RuntimeException getFailure() {
+            return failure;
+        }
+
+        public boolean isFailed() {
+            return failure != null;
+        }
+
+        public long getTime(TimeUnit unit) {
+            return unit.convert(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
 }
@@ -0,0 +1,451 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.pull.shared.evaluators;
+
+import org.jboss.pull.shared.PullHelper;
+import org.jboss.pull.shared.Util;
+import org.jboss.pull.shared.connectors.RedhatPullRequest;
+import org.jboss.pull.shared.connectors.bugzilla.Bug;
+import org.jboss.pull.shared.connectors.common.FlagVocabulary;
+import org.jboss.pull.shared.connectors.common.Issue;
+import org.jboss.pull.shared.connectors.github.GitHubBudgetExhaustedException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.StringTokenizer;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An evaluator whose merge policy is declared in the configuration instead of being coded in a subclass:
+ * <pre>
+ * eap640.evaluator=org.jboss.pull.shared.evaluators.RuleBasedPullEvaluator
+ * eap640.rules=review, upstream, fix.version, flags, parents
+ * eap640.required.flags=pm_ack, devel_ack, qa_ack
+ * eap640.parent.bug=...
+ * </pre>
+ * {@code review} requires an admin to have commented merge since the last update, {@code upstream} a merged
+ * upstream pull request, {@code fix.version} only takes the bugs targeting the issue fix version into account,
+ * {@code flags} requires all the listed flags set to '+' on each of the bugs, and {@code parents} at least one of
+ * the bugs to block one of the listed parent bugs. Any bug rule requires at least one bug.
+ * <p>
+ * The rules are compiled at {@link #init(PullHelper, Properties, String)} into a tree of predicates. Equal
+ * predicates are shared by the versions of the same {@link PullEvaluatorFacade}, see {@link PredicateTable}. The data the predicates of the same cost need is
+ * fetched before any of them is tested: the related pull requests in parallel, while the issues are being resolved
+ * in the background.
+ *
+ * @author navssurtani
+ */
+public class RuleBasedPullEvaluator extends BasePullEvaluator {
+
+    public static final String RULES_PROPERTY = "rules";
+    public static final String REQUIRED_FLAGS_PROPERTY = "required.flags";
+    public static final String PARENT_BUGS_PROPERTY = "parent.bug";
+
+    public static final String REVIEW_RULE = "review";
+    public static final String UPSTREAM_RULE = "upstream";
+    public static final String FIX_VERSION_RULE = "fix.version";
+    public static final String FLAGS_RULE = "flags";
+    public static final String PARENTS_RULE = "parents";
+
+    // the compiled predicates shared with the other versions, by default only this one's
+    private PredicateTable predicates = new PredicateTable();
+
+    private Predicate policy;
+    // the leaves of the policy cheapest first
+    private List<Predicate> cheapestFirst;
+
+    /**
+     * The data a predicate reads which can be fetched ahead of testing it.
+     */
+    enum Data {
+        ISSUES, RELATED_PULL_REQUESTS
+    }
+
+    /**
+     * A node of a compiled policy. Predicates hold only what the rules declare, the rest comes from the evaluator
+     * testing them, so that equal ones can be shared by several versions.
+     */
+    public abstract static class Predicate {
+        private final String key;
+        private final Cost cost;
+        private final boolean guard;
+        private final Set<Data> needs;
+
+        Predicate(String key, Cost cost, boolean guard, Set<Data> needs) {
+            this.key = key;
+            this.cost = cost;
+            this.guard = guard;
+            this.needs = Collections.unmodifiableSet(needs);
+        }
+
+        /**
+         * @return what the predicate tests, equal for equal predicates
+         */
+        public String getKey() {
+            return key;
+        }
+
+        public List<Predicate> getChildren() {
+            return Collections.emptyList();
+        }
+
+        Cost getCost() {
+            return cost;
+        }
+
+        boolean isGuard() {
+            return guard;
+        }
+
+        Set<Data> getNeeds() {
+            return needs;
+        }
+
+        abstract Result test(RuleBasedPullEvaluator evaluator, RedhatPullRequest pull);
+
+        @Override
+        public String toString() {
+            return key;
+        }
+    }
+
+    /**
+     * The predicates compiled by a group of evaluators, by their key. The {@link PullEvaluatorFacade} gives one to all
+     * of its evaluators, so equal predicates are shared by its versions and dropped with it.
+     */
+    public static final class PredicateTable {
+        private final ConcurrentMap<String, Predicate> predicates = new ConcurrentHashMap<String, Predicate>();
+
+        private Predicate intern(Predicate predicate) {
+            final Predicate existing = predicates.putIfAbsent(predicate.getKey(), predicate);
+            return existing != null ? existing : predicate;
+        }
+    }
+
+    /**
+     * Shares the compiled predicates with the other evaluators using the table, has to be called before
+     * {@link #init(PullHelper, Properties, String)}.
+     */
+    public void setPredicateTable(PredicateTable predicates) {
+        this.predicates = predicates;
+    }
+
+    @Override
+    public void init(final PullHelper helper, final Properties configuration, final String version) {
+        super.init(helper, configuration, version);
+
+        policy = compile(predicates, configuration, version);
+
+        final List<Predicate> sorted = new ArrayList<Predicate>(policy.getChildren());
+        // stable, the predicates of the same cost keep their order
+        Collections.sort(sorted, new Comparator<Predicate>() {
+            @Override
+            public int compare(Predicate p1, Predicate p2) {
+                return p1.getCost().compareTo(p2.getCost());
+            }
+        });
+        cheapestFirst = sorted;
+    }
+
+    /**
+     * The policy is tested instead.
+     */
+    @Override
+    protected List<Check> createChecks() {
+        return new ArrayList<Check>();
+    }
+
+    /**
+     * @return the root of the compiled policy
+     */
+    public Predicate getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public Result isMergeable(final RedhatPullRequest pull, final Mode mode) {
+        final Result mergeable = new Result(true);
+        if (mode == Mode.FAST_FAIL) {
+            Cost fetched = null;
+            for (int i = 0; i < cheapestFirst.size(); i++) {
+                final Predicate predicate = cheapestFirst.get(i);
+                if (predicate.getCost() != fetched) {
+                    fetched = predicate.getCost();
+                    final Set<Data> needs = EnumSet.noneOf(Data.class);
+                    for (Predicate next : cheapestFirst.subList(i, cheapestFirst.size())) {
+                        if (next.getCost() == fetched)
+                            needs.addAll(next.getNeeds());
+                    }
+                    fetch(pull, needs);
+                }
+
+                mergeable.and(predicate.test(this, pull));
+                if (!mergeable.isMergeable())
+                    break;
+            }
+        } else {
+            final Set<Data> needs = EnumSet.noneOf(Data.class);
+            for (Predicate predicate : policy.getChildren()) {
+                if (!predicate.isGuard())
+                    needs.addAll(predicate.getNeeds());
+            }
+            fetch(pull, needs);
+
+            mergeable.and(policy.test(this, pull));
+        }
+        return mergeable;
+    }
+
+    /**
+     * Fetches the data ahead of the predicates needing it. A failure is left to the predicates to report.
+     */
+    private void fetch(RedhatPullRequest pull, Set<Data> needs) {
+        try {
+            // the issues are being resolved in the background meanwhile
+            if (needs.contains(Data.RELATED_PULL_REQUESTS))
+                pull.getRelatedPullRequests();
+            if (needs.contains(Data.ISSUES))
+                pull.getIssues();
+        } catch (GitHubBudgetExhaustedException e) {
+            throw e;
+        } catch (RuntimeException ignore) {
+            // tried again and reported by the predicate
+        }
+    }
+
+    private static Predicate compile(PredicateTable predicates, Properties configuration, String version) {
+        final Set<String> rules = new HashSet<String>();
+        final StringTokenizer tokenizer = new StringTokenizer(Util.require(configuration, version + "."
+                + RULES_PROPERTY), ", ");
+        while (tokenizer.hasMoreTokens()) {
+            final String rule = tokenizer.nextToken();
+            if (!REVIEW_RULE.equals(rule) && !UPSTREAM_RULE.equals(rule) && !FIX_VERSION_RULE.equals(rule)
+                    && !FLAGS_RULE.equals(rule) && !PARENTS_RULE.equals(rule))
+                throw new IllegalArgumentException("Unknown rule " + rule + " of " + version);
+            rules.add(rule);
+        }
+
+        final List<Predicate> leaves = new ArrayList<Predicate>();
+        if (rules.contains(REVIEW_RULE))
+            leaves.add(predicates.intern(new Leaf(Leaf.Kind.REVIEW)));
+        if (rules.contains(UPSTREAM_RULE)) {
+            leaves.add(predicates.intern(new Leaf(Leaf.Kind.UPSTREAM_REFERENCE)));
+            leaves.add(predicates.intern(new Leaf(Leaf.Kind.UPSTREAM)));
+        }
+        if (rules.contains(FIX_VERSION_RULE) || rules.contains(FLAGS_RULE) || rules.contains(PARENTS_RULE)) {
+            final Set<String> flags = rules.contains(FLAGS_RULE) ? tokens(Util.require(configuration, version + "."
+                    + REQUIRED_FLAGS_PROPERTY)) : Collections.<String>emptySet();
+            final Set<Integer> parents = new TreeSet<Integer>();
+            if (rules.contains(PARENTS_RULE)) {
+                for (String parent : tokens(Util.require(configuration, version + "." + PARENT_BUGS_PROPERTY))) {
+                    parents.add(Integer.valueOf(parent));
+                }
+            }
+            leaves.add(predicates.intern(new Leaf(Leaf.Kind.BUG_REFERENCE)));
+            leaves.add(predicates.intern(new BugzillaPredicate(rules.contains(FIX_VERSION_RULE), flags, parents)));
+        }
+        return predicates.intern(new AllPredicate(leaves));
+    }
+
+    private static Set<String> tokens(String value) {
+        final Set<String> tokens = new TreeSet<String>();
+        final StringTokenizer tokenizer = new StringTokenizer(value, ", ");
+        while (tokenizer.hasMoreTokens()) {
+            tokens.add(tokenizer.nextToken());
+        }
+        return tokens;
+    }
+
+    /**
+     * A predicate whose test is implemented by the evaluator.
+     */
+    private static final class Leaf extends Predicate {
+        private enum Kind {
+            REVIEW("review", Cost.REMOTE, false, EnumSet.noneOf(Data.class)),
+            UPSTREAM_REFERENCE("upstream.reference", Cost.DESCRIPTION, true, EnumSet.noneOf(Data.class)),
+            UPSTREAM("upstream", Cost.REMOTE, false, EnumSet.of(Data.RELATED_PULL_REQUESTS)),
+            BUG_REFERENCE("bug.reference", Cost.DESCRIPTION, true, EnumSet.noneOf(Data.class));
+
+            private final String key;
+            private final Cost cost;
+            private final boolean guard;
+            private final Set<Data> needs;
+
+            private Kind(String key, Cost cost, boolean guard, Set<Data> needs) {
+                this.key = key;
+                this.cost = cost;
+                this.guard = guard;
+                this.needs = needs;
+            }
+        }
+
+        private final Kind kind;
+
+        private Leaf(Kind kind) {
+            super(kind.key, kind.cost, kind.guard, kind.needs);
+            this.kind = kind;
+        }
+
+        @Override
+        Result test(RuleBasedPullEvaluator evaluator, RedhatPullRequest pull) {
+            switch (kind) {
+                case REVIEW:
+                    return evaluator.isMarkedForMerge(pull);
+                case UPSTREAM_REFERENCE:
+                    return evaluator.isUpstreamReferenced(pull);
+                case UPSTREAM:
+                    return evaluator.isMergeableByUpstream(pull);
+                case BUG_REFERENCE:
+                    return evaluator.isBugReferenced(pull);
+                default:
+                    throw new IllegalStateException("Unknown predicate " + kind);
+            }
+        }
+    }
+
+    /**
+     * All of the children have to hold.
+     */
+    private static final class AllPredicate extends Predicate {
+        private final List<Predicate> children;
+
+        private AllPredicate(List<Predicate> children) {
+            super(key(children), maxCost(children), false, EnumSet.noneOf(Data.class));
+            this.children = Collections.unmodifiableList(new ArrayList<Predicate>(children));
+        }
+
+        private static String key(List<Predicate> children) {
+            final StringBuilder key = new StringBuilder("all(");
+            String delim = "";
+            for (Predicate child : children) {
+                key.append(delim).append(child.getKey());
+                delim = ", ";
+            }
+            return key.append(')').toString();
+        }
+
+        private static Cost maxCost(List<Predicate> children) {
+            Cost cost = Cost.DESCRIPTION;
+            for (Predicate child : children) {
+                if (child.getCost().compareTo(cost) > 0)
+                    cost = child.getCost();
+            }
+            return cost;
+        }
+
+        @Override
+        public List<Predicate> getChildren() {
+            return children;
+        }
+
+        @Override
+        Result test(RuleBasedPullEvaluator evaluator, RedhatPullRequest pull) {
+            final Result mergeable = new Result(true);
+            for (Predicate child : children) {
+                if (!child.isGuard())
+                    mergeable.and(child.test(evaluator, pull));
+            }
+            return mergeable;
+        }
+    }
+
+    /**
+     * The bugs have the required flags and block one of the required parents.
+     */
+    private static final class BugzillaPredicate extends Predicate {
+        private final boolean matchFixVersion;
+        private final Set<String> requiredFlags;
+        // the FlagVocabulary mask of requiredFlags, null if some of them have no ordinal
+        private final Long requiredFlagMask;
+        private final Set<Integer> requiredParents;
+
+        private BugzillaPredicate(boolean matchFixVersion, Set<String> requiredFlags, Set<Integer> requiredParents) {
+            super("bugzilla(fix.version=" + matchFixVersion + ", flags=" + requiredFlags + ", parents="
+                    + requiredParents + ")", Cost.CACHED, false, EnumSet.of(Data.ISSUES));
+            this.matchFixVersion = matchFixVersion;
+            this.requiredFlags = requiredFlags;
+            this.requiredFlagMask = FlagVocabulary.mask(requiredFlags);
+            this.requiredParents = requiredParents;
+        }
+
+        @Override
+        Result test(RuleBasedPullEvaluator evaluator, RedhatPullRequest pull) {
+            final Result mergeable = new Result(true);
+
+            final List<Bug> bugs = matchFixVersion ? evaluator.getBugsThatMatchFixVersion(pull) : getBugs(pull);
+            if (bugs.isEmpty()) {
+                mergeable.setMergeable(false);
+                mergeable.addDescription("- " + MISSING_BUG_TAG);
+                return mergeable;
+            }
+
+            if (!requiredFlags.isEmpty()) {
+                for (Bug bug : bugs) {
+                    final Collection<String> missingFlags = getMissingFlags(bug, requiredFlags, requiredFlagMask);
+                    if (!missingFlags.isEmpty()) {
+                        mergeable.setMergeable(false);
+                        mergeable.addDescription(missingFlagsDescription(bug, missingFlags));
+                    }
+                }
+            }
+
+            if (!requiredParents.isEmpty() && !isBlockingParent(bugs)) {
+                mergeable.setMergeable(false);
+                mergeable.addDescription(missingParentsDescription(requiredParents));
+            }
+
+            if (mergeable.isMergeable()) {
+                mergeable.addDescription("+ Bugzilla is OK");
+            }
+
+            return mergeable;
+        }
+
+        private static List<Bug> getBugs(RedhatPullRequest pull) {
+            final List<Bug> bugs = new ArrayList<Bug>();
+            for (Issue issue : pull.getIssues()) {
+                if (issue instanceof Bug)
+                    bugs.add((Bug) issue);
+            }
+            return bugs;
+        }
+
+        private boolean isBlockingParent(List<Bug> bugs) {
+            for (Bug bug : bugs) {
+                for (Integer parent : requiredParents) {
+                    if (bug.isBlocking(parent))
+                        return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -83,6 +83,20 @@ public interface PullEvaluator {
      */
     boolean updateIssueAsMerged(final RedhatPullRequest pull);
 
+    /**
+     * How thoroughly a pull request is evaluated.
+     */
+    public enum Mode {
+        /**
+         * Runs the cheapest checks first and stops at the first failing one, e.g. to find the pull requests to merge.
+         */
+        FAST_FAIL,
+
+        /**
+         * Runs all the checks and collects all their descriptions, e.g. for the report comment.
+         */
+        DIAGNOSTIC
+    }
 
     /**
      * Result of the evaluation process of a pull request.
@@ -92,6 +106,8 @@ public interface PullEvaluator {
     public class Result {
         private boolean mergeable;
         private List<String> description;
+        // false if a lookup the result is based on failed, e.g. github didn't answer
+        private boolean cacheable = true;
 
         public Result() {
             this.description = new ArrayList<String>();
@@ -107,6 +123,15 @@ public interface PullEvaluator {
             this.description = new ArrayList<String>(Arrays.asList(description));
         }
 
+        /**
+         * Creates a copy which can be changed without affecting {@code other}.
+         */
+        public Result(final Result other) {
+            this.mergeable = other.mergeable;
+            this.description = new ArrayList<String>(other.description);
+            this.cacheable = other.cacheable;
+        }
+
         public boolean isMergeable() {
             return mergeable;
         }
@@ -115,6 +140,18 @@ public interface PullEvaluator {
             this.mergeable = mergeable;
         }
 
+        /**
+         * Tells whether the result may be reused while nothing it depends on changes. It may not if a lookup it is
+         * based on failed, since the next lookup may succeed without anything having changed.
+         */
+        public boolean isCacheable() {
+            return cacheable;
+        }
+
+        public void setCacheable(final boolean cacheable) {
+            this.cacheable = cacheable;
+        }
+
         public List<String> getDescription() {
             return description;
         }
@@ -134,6 +171,7 @@ public interface PullEvaluator {
          */
         public Result and(final Result other) {
             setMergeable(isMergeable() && other.isMergeable());
+            setCacheable(isCacheable() && other.isCacheable());
             addDescription(other.getDescription());
             return this;
         }
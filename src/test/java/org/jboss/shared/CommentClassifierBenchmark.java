@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.shared;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+import org.jboss.pull.shared.CommentClassifier;
+import org.jboss.pull.shared.Constants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Time to find the commands of a pull request's comments, once with the {@code .*...*} patterns of {@link Constants}
+ * (one full match per command plus the search for the build outcome) and once with {@link CommentClassifier}. The
+ * comments are a mix of short reviewer comments and CI comments carrying {@code logKb} KB of build log.
+ *
+ * @author navssurtani
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommentClassifierBenchmark {
+
+    private static final String[] LOG_LINES = {
+            "[INFO] Building JBoss Application Server: Build Configuration 7.5.0.Final-redhat-SNAPSHOT\n",
+            "[INFO] --- maven-surefire-plugin:2.16:test (default-test) @ jboss-as-controller ---\n",
+            "Tests run: 512, Failures: 0, Errors: 0, Skipped: 3, Time elapsed: 41.203 sec\n",
+            "[WARNING] The requested profile \"ts.noSmoke\" could not be activated because it does not exist.\n",
+            "16:42:13,102 INFO  [org.jboss.as.server] (Controller Boot Thread) JBAS015961: Http management interface listening\n" };
+
+    private static final String[] REVIEWS = {
+            "Could you squash the commits and add the BZ link to the description?",
+            "merge this please",
+            "The upstream PR has been merged, this one is fine with me.",
+            "Retest this please, the failure looks unrelated." };
+
+    @Param({ "4", "32" })
+    public int logKb;
+
+    private String[] comments;
+
+    @Setup(Level.Trial)
+    public void createComments() {
+        final Random random = new Random(42);
+        comments = new String[20];
+        for (int i = 0; i < comments.length; i++) {
+            if (i % 2 == 1) {
+                comments[i] = REVIEWS[random.nextInt(REVIEWS.length)];
+                continue;
+            }
+            final StringBuilder builder = new StringBuilder("Build 1234 merging 5f3a2b1 has been finished\n");
+            while (builder.length() < logKb * 1024)
+                builder.append(LOG_LINES[random.nextInt(LOG_LINES.length)]);
+            builder.append("Build 1234 outcome was **SUCCESS** using a merge of 5f3a2b1\n");
+            comments[i] = builder.toString();
+        }
+    }
+
+    @Benchmark
+    public void patterns(Blackhole blackhole) {
+        for (String comment : comments) {
+            blackhole.consume(Constants.PENDING.matcher(comment).matches());
+            blackhole.consume(Constants.RUNNING.matcher(comment).matches());
+            blackhole.consume(Constants.FINISHED.matcher(comment).matches());
+            blackhole.consume(Constants.MERGE.matcher(comment).matches());
+            blackhole.consume(Constants.FORCE_MERGE.matcher(comment).matches());
+            Matcher matcher = Constants.BUILD_OUTCOME.matcher(comment);
+            while (matcher.find())
+                blackhole.consume(matcher.group(2));
+        }
+    }
+
+    @Benchmark
+    public void classifier(Blackhole blackhole) {
+        for (String comment : comments)
+            blackhole.consume(CommentClassifier.classify(comment));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(CommentClassifierBenchmark.class.getSimpleName()).build()).run();
+    }
+}
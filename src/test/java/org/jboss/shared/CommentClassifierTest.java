@@ -0,0 +1,87 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared;
+
+import org.jboss.pull.shared.CommentClassifier;
+import org.jboss.pull.shared.CommentClassifier.Classification;
+import org.jboss.pull.shared.CommentClassifier.Command;
+import org.jboss.pull.shared.Constants;
+import org.testng.annotations.Test;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks that the {@link CommentClassifier} gives the same answers as the command patterns in {@link Constants}.
+ */
+@Test
+public class CommentClassifierTest {
+
+    private static final String[] COMMENTS = {
+            "",
+            "merge this please",
+            "Looks good, Remerge\tthis, please!",
+            "merge this",
+            "FORCE merge\nthis",
+            "force merges this",
+            "Build 42 merging 1a2b3c has been triggered",
+            "Build 42 merging 1a2b3c has been started",
+            "Build 42 merging 1a2b3c has  -- been finished",
+            "Merging build has been finished",
+            "build merging has beenfinished",
+            "Build 42 outcome was **SUCCESS** using a merge of 1a2b3c\nBuild 43 outcome was FAILURE using a merge of 4d5e6f",
+            "outcome was aborted using a merge of ABC",
+            "outcome was SUCCESS using a merge of ",
+            "Build 42 merging 1a2b3c has been finished\nBuild 42 outcome was **FAILURE** using a merge of 9f9f\n"
+                    + "merge this please, force merge this" };
+
+    public void testSameAnswersAsPatterns() {
+        for (String comment : COMMENTS) {
+            Classification classification = CommentClassifier.classify(comment);
+            assertEquals(classification.is(Command.PENDING), Constants.PENDING.matcher(comment).matches(), comment);
+            assertEquals(classification.is(Command.RUNNING), Constants.RUNNING.matcher(comment).matches(), comment);
+            assertEquals(classification.is(Command.FINISHED), Constants.FINISHED.matcher(comment).matches(), comment);
+            assertEquals(classification.is(Command.MERGE), Constants.MERGE.matcher(comment).matches(), comment);
+            assertEquals(classification.is(Command.FORCE_MERGE), Constants.FORCE_MERGE.matcher(comment).matches(),
+                    comment);
+
+            String outcome = null;
+            String sha = null;
+            Matcher matcher = Constants.BUILD_OUTCOME.matcher(comment);
+            while (matcher.find()) {
+                outcome = matcher.group(2).toUpperCase();
+                sha = matcher.group(4);
+            }
+            assertEquals(classification.is(Command.BUILD_OUTCOME), outcome != null, comment);
+            assertEquals(classification.getBuildOutcome(), outcome, comment);
+            assertEquals(classification.getBuildSha(), sha, comment);
+        }
+    }
+
+    public void testLastOutcomeWins() {
+        Classification classification = CommentClassifier.classify(COMMENTS[11]);
+        assertEquals(classification.getBuildOutcome(), "FAILURE");
+        assertEquals(classification.getBuildSha(), "4d5e6f");
+    }
+}
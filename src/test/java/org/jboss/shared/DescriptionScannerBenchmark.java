@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.shared;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+
+import org.jboss.pull.shared.Constants;
+import org.jboss.pull.shared.DescriptionScanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Time to find the references of a pull request description of {@code descriptionKb} KB, once with the four patterns
+ * of {@link Constants} and once with {@link DescriptionScanner}. The descriptions mix prose, stack traces and links,
+ * some of them on long lines.
+ *
+ * @author navssurtani
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DescriptionScannerBenchmark {
+
+    private static final String[] FRAGMENTS = {
+            "The deployment fails when the datasource is redeployed while a transaction is running. ",
+            "at org.jboss.as.connector.subsystems.datasources.AbstractDataSourceService.stop(AbstractDataSourceService.java:196)\n",
+            "Bugzilla: https://bugzilla.redhat.com/show_bug.cgi?id=1052218 ",
+            "JIRA: https://issues.jboss.org/browse/WFLY-2743 ",
+            "Upstream: https://github.com/wildfly/wildfly/pull/5781 ",
+            "See the discussion on github.com about the change of the default. ",
+            "\n\n" };
+
+    @Param({ "2", "16" })
+    public int descriptionKb;
+
+    private String description;
+
+    @Setup(Level.Trial)
+    public void createDescription() {
+        final Random random = new Random(42);
+        final StringBuilder builder = new StringBuilder();
+        while (builder.length() < descriptionKb * 1024)
+            builder.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+        description = builder.toString();
+    }
+
+    @Benchmark
+    public void patterns(Blackhole blackhole) {
+        Matcher matcher = Constants.BUGZILLA_ID_PATTERN.matcher(description);
+        while (matcher.find())
+            blackhole.consume(matcher.group(1));
+        matcher = Constants.RELATED_JIRA_PATTERN.matcher(description);
+        while (matcher.find())
+            blackhole.consume(matcher.group(1));
+        matcher = Constants.RELATED_PR_PATTERN.matcher(description);
+        while (matcher.find())
+            blackhole.consume(matcher.group(3));
+        blackhole.consume(Constants.UPSTREAM_NOT_REQUIRED.matcher(description).find());
+    }
+
+    @Benchmark
+    public void scanner(Blackhole blackhole) {
+        blackhole.consume(DescriptionScanner.scan(description));
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(DescriptionScannerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared;
+
+import org.jboss.pull.shared.DescriptionScanner;
+import org.jboss.pull.shared.PullRequestReferences;
+import org.jboss.pull.shared.PullRequestReferences.RelatedPullRequest;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks that the {@link DescriptionScanner} finds the links and markers of a pull request description.
+ */
+@Test
+public class DescriptionScannerTest {
+
+    public void testFindsEveryReference() {
+        PullRequestReferences references = DescriptionScanner.scan(
+                "Fixes https://bugzilla.redhat.com/show_bug.cgi?id=953471 and BZ 1000\n"
+                        + "JIRA: https://issues.jboss.org/browse/EAP6-77, https://issues.jboss.org/browse/WFLY-12\n"
+                        + "Upstream: https://github.com/wildfly/wildfly/pull/4567\n"
+                        + "Also https://api.github.com/repos/uselessorg/jboss-eap/pulls/2\n"
+                        + "Again https://bugzilla.redhat.com/show_bug.cgi?id=953471");
+
+        assertEquals(references.getBugIds(), Arrays.asList(953471));
+        assertEquals(references.getJiraKeys(), Arrays.asList("EAP6-77", "WFLY-12"));
+        assertEquals(references.getRelatedPullRequests(), Arrays.asList(
+                new RelatedPullRequest("wildfly", "wildfly", 4567), new RelatedPullRequest("uselessorg", "jboss-eap", 2)));
+        assertFalse(references.isUpstreamNotRequired());
+    }
+
+    public void testUpstreamMarkerOnOneLine() {
+        assertTrue(DescriptionScanner.scan("Backport only.\nNo upstream PR required.").isUpstreamNotRequired());
+        assertFalse(DescriptionScanner.scan("No\nupstream required").isUpstreamNotRequired());
+        assertFalse(DescriptionScanner.scan("upstream: none required").isUpstreamNotRequired());
+    }
+
+    public void testIncompleteLinks() {
+        PullRequestReferences references = DescriptionScanner.scan(
+                "https://bugzilla.redhat.com/show_bug.cgi?id= https://issues.jboss.org/browse/ "
+                        + "https://github.com/wildfly/pull/12 github.com\n/wildfly/wildfly/pull/3");
+
+        assertTrue(references.getBugIds().isEmpty());
+        assertTrue(references.getJiraKeys().isEmpty());
+        assertTrue(references.getRelatedPullRequests().isEmpty());
+        assertTrue(DescriptionScanner.scan(null).getBugIds().isEmpty());
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared.connectors;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.jboss.pull.shared.Constants;
+import org.jboss.pull.shared.connectors.DependencyIndex;
+import org.jboss.pull.shared.connectors.RedhatPullRequest;
+import org.jboss.pull.shared.connectors.bugzilla.BZHelper;
+import org.jboss.pull.shared.connectors.github.GithubHelper;
+import org.jboss.pull.shared.connectors.jira.JiraHelper;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.*;
+
+/**
+ * Checks that the {@link DependencyIndex} leads from a changed bug, jira issue or pull request to the pull requests
+ * referencing it, and only to those.
+ */
+@Test
+public class DependencyIndexTest {
+
+    private final BZHelper bzHelper = mock(BZHelper.class);
+    private final JiraHelper jiraHelper = mock(JiraHelper.class);
+    private final GithubHelper githubHelper = mock(GithubHelper.class);
+
+    private RedhatPullRequest pullRequest(int number, String body) {
+        PullRequest pr = new PullRequest();
+        pr.setUrl("https://api.github.com/repos/jbossas/jboss-eap/pulls/" + number);
+        pr.setNumber(number);
+        pr.setBody(body);
+        return new RedhatPullRequest(pr, bzHelper, jiraHelper, githubHelper);
+    }
+
+    public void testAffectedPullRequests() {
+        RedhatPullRequest first = pullRequest(1, "BZ: " + Constants.BUGZILLA_BASE_ID + "953471\n"
+                + "Upstream: https://github.com/wildfly/wildfly/pull/10");
+        RedhatPullRequest second = pullRequest(2, "BZ: " + Constants.BUGZILLA_BASE_ID + "953471\n"
+                + "JIRA: " + Constants.JIRA_BASE_BROWSE + "EAP6-77");
+        RedhatPullRequest third = pullRequest(3, "Nothing referenced.");
+
+        DependencyIndex index = new DependencyIndex();
+        index.reindex(Arrays.asList(first, second, third));
+        assertEquals(index.size(), 3);
+
+        assertEquals(index.getAffected(Collections.singleton("953471")), Arrays.asList(first, second));
+        assertEquals(index.getAffected(Collections.singleton("eap6-77")), Collections.singletonList(second));
+        assertEquals(index.getAffected(Collections.singleton("WildFly/WildFly#10")), Collections.singletonList(first));
+        // a change of the pull request itself
+        assertEquals(index.getAffected(Collections.singleton(DependencyIndex.pullRequestKey("jbossas", "jboss-eap", 3))),
+                Collections.singletonList(third));
+        assertTrue(index.getAffected(Collections.singleton("1")).isEmpty());
+
+        // each pull request once
+        List<RedhatPullRequest> affected = index.getAffected(Arrays.asList("953471", "EAP6-77"));
+        assertEquals(affected.size(), 2);
+    }
+
+    public void testReindexReplacesReferences() {
+        RedhatPullRequest first = pullRequest(1, "BZ: " + Constants.BUGZILLA_BASE_ID + "953471");
+        RedhatPullRequest second = pullRequest(2, "BZ: " + Constants.BUGZILLA_BASE_ID + "953471");
+
+        DependencyIndex index = new DependencyIndex();
+        index.reindex(Arrays.asList(first, second));
+
+        // the description was edited
+        RedhatPullRequest edited = pullRequest(1, "BZ: " + Constants.BUGZILLA_BASE_ID + "953472");
+        index.index(edited);
+        assertEquals(index.getAffected(Collections.singleton("953471")), Collections.singletonList(second));
+        assertEquals(index.getAffected(Collections.singleton("953472")), Collections.singletonList(edited));
+
+        // the second one was closed
+        index.reindex(Collections.singletonList(edited));
+        assertEquals(index.size(), 1);
+        assertTrue(index.getAffected(Collections.singleton("953471")).isEmpty());
+        assertTrue(index.getKeys(second.getCoordinates()).isEmpty());
+    }
+}
@@ -2,17 +2,25 @@ package org.jboss.shared.connectors;
 
 import org.jboss.pull.shared.Constants;
 import org.jboss.pull.shared.connectors.IssueHelper;
+import org.jboss.pull.shared.connectors.PullRequestIdentityMap;
+import org.jboss.pull.shared.connectors.common.Issue;
 import org.jboss.pull.shared.connectors.bugzilla.BZHelper;
+import org.jboss.pull.shared.connectors.github.CommentStore;
 import org.jboss.pull.shared.connectors.github.GithubHelper;
+import org.jboss.pull.shared.connectors.github.PullRequestCoordinates;
 import org.jboss.pull.shared.connectors.jira.JiraHelper;
 import org.testng.annotations.AfterTest;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
+import org.eclipse.egit.github.core.Comment;
 import org.eclipse.egit.github.core.Milestone;
 import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.PullRequestMarker;
 import org.jboss.pull.shared.connectors.RedhatPullRequest;
 
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 
 import static org.testng.Assert.*;
 import static org.mockito.Mockito.*;
@@ -157,4 +165,116 @@ public class TestRedhatPullRequest {
 
         assertFalse(pullRequest.isGithubMilestoneNullOrDefault());
     }
+
+    @Test
+    public void testIssuesResolvedOnFirstAccess() throws Exception {
+        URL bzURL = new URL(Constants.BUGZILLA_BASE_ID + BZ_953471);
+        IssueHelper lazyBzHelper = mock(BZHelper.class);
+        when(lazyBzHelper.accepts(bzURL)).thenReturn(true);
+
+        PullRequest pr = new PullRequest();
+        pr.setBody("Testing lazy resolution.\n BZ: " + bzURL);
+
+        RedhatPullRequest pullRequest = new RedhatPullRequest(pr, lazyBzHelper, jiraHelper, githubHelper);
+        assertTrue(pullRequest.isBZInDescription());
+        verify(lazyBzHelper, never()).findIssue(bzURL);
+
+        assertEquals(pullRequest.getIssues().size(), 1);
+        pullRequest.getIssues();
+        verify(lazyBzHelper, times(1)).findIssue(bzURL);
+    }
+
+    @Test
+    public void testCommentsFetchedOncePerSnapshot() {
+        PullRequest pr = new PullRequest();
+        pr.setBody("Testing comment snapshot.");
+        GithubHelper commentHelper = mock(GithubHelper.class);
+        when(commentHelper.getComments(pr)).thenReturn(new ArrayList<Comment>());
+
+        RedhatPullRequest pullRequest = new RedhatPullRequest(pr, bzHelper, jiraHelper, commentHelper);
+        pullRequest.getGithubComments();
+        pullRequest.getLastMatchingGithubComment(Constants.MERGE);
+        pullRequest.getBuildResult();
+        verify(commentHelper, times(1)).getComments(pr);
+
+        pullRequest.postGithubComment("review");
+        pullRequest.getGithubComments();
+        verify(commentHelper, times(2)).getComments(pr);
+    }
+
+    @Test
+    public void testCommentSearchSharedWithoutSnapshot() {
+        PullRequest pr = new PullRequest();
+        pr.setBody("Testing comment search.");
+        GithubHelper commentHelper = mock(GithubHelper.class);
+        CommentStore.Search search = mock(CommentStore.Search.class);
+        when(commentHelper.searchComments(pr)).thenReturn(search);
+
+        RedhatPullRequest pullRequest = new RedhatPullRequest(pr, bzHelper, jiraHelper, commentHelper);
+        pullRequest.getLastMatchingGithubComment(Constants.MERGE);
+        pullRequest.getBuildResult();
+        verify(commentHelper, times(1)).searchComments(pr);
+        verify(commentHelper).getLastMatchingComment(search, Constants.MERGE);
+        verify(commentHelper, never()).getComments(pr);
+
+        // the posted comment isn't in the pages read so far
+        pullRequest.postGithubComment("review");
+        pullRequest.getLastMatchingGithubComment(Constants.MERGE);
+        verify(commentHelper, times(2)).searchComments(pr);
+    }
+
+    @Test
+    public void testCoordinatesParsedOnce() {
+        PullRequest pr = new PullRequest();
+        pr.setBody("Testing coordinates.");
+        pr.setUrl("https://api.github.com/repos/uselessorg/jboss-eap/pulls/2");
+        pr.setNumber(GH_PULL_NUMBER);
+        pr.setBase(new PullRequestMarker().setRef("6.x"));
+        pr.setHead(new PullRequestMarker().setSha("1a2b3c"));
+
+        RedhatPullRequest pullRequest = new RedhatPullRequest(pr, bzHelper, jiraHelper, githubHelper);
+        pr.setUrl("https://api.github.com/repos/otherorg/other/pulls/3");
+
+        assertEquals(pullRequest.getOrganization(), GH_ORG);
+        assertEquals(pullRequest.getRepository(), GH_PROJECT);
+        assertEquals(pullRequest.getTargetBranchTitle(), "6.x");
+        assertEquals(pullRequest.getSourceBranchSha(), "1a2b3c");
+        assertEquals(pullRequest.getCoordinates(),
+                new PullRequestCoordinates("UselessOrg", "JBoss-EAP", GH_PULL_NUMBER, "6.x", "4d5e6f"));
+        assertFalse(pullRequest.getCoordinates().equals(
+                new PullRequestCoordinates(GH_ORG, GH_PROJECT, 3, "6.x", "1a2b3c")));
+    }
+
+    @Test
+    public void testRelatedPullRequestsFetchedOnce() {
+        GithubHelper relatedHelper = mock(GithubHelper.class);
+        PullRequestIdentityMap identityMap = new PullRequestIdentityMap(bzHelper, jiraHelper, relatedHelper, null);
+
+        PullRequest upstream = new PullRequest();
+        upstream.setUrl("https://api.github.com/repos/wildfly/wildfly/pulls/10");
+        upstream.setNumber(10);
+        upstream.setBody("Backported by https://github.com/uselessorg/jboss-eap/pull/2");
+        when(relatedHelper.getPullRequest(any(PullRequestCoordinates.class))).thenReturn(upstream);
+
+        PullRequest first = new PullRequest();
+        first.setUrl("https://api.github.com/repos/uselessorg/jboss-eap/pulls/2");
+        first.setNumber(GH_PULL_NUMBER);
+        first.setBody("Upstream: https://github.com/wildfly/wildfly/pull/10");
+        PullRequest second = new PullRequest();
+        second.setUrl("https://api.github.com/repos/uselessorg/jboss-eap/pulls/3");
+        second.setNumber(3);
+        second.setBody("Upstream: https://github.com/wildfly/wildfly/pull/10");
+
+        RedhatPullRequest firstPullRequest = identityMap.register(new RedhatPullRequest(first, bzHelper, jiraHelper,
+                relatedHelper, Collections.<String, Issue>emptyMap(), null, identityMap));
+        RedhatPullRequest secondPullRequest = identityMap.register(new RedhatPullRequest(second, bzHelper, jiraHelper,
+                relatedHelper, Collections.<String, Issue>emptyMap(), null, identityMap));
+
+        RedhatPullRequest upstreamPullRequest = firstPullRequest.getRelatedPullRequests().get(0);
+        assertSame(secondPullRequest.getRelatedPullRequests().get(0), upstreamPullRequest);
+        // the reference back to the first pull request leads to the same instance
+        assertSame(upstreamPullRequest.getRelatedPullRequests().get(0), firstPullRequest);
+        verify(relatedHelper, times(1)).getPullRequest(any(PullRequestCoordinates.class));
+        assertEquals(identityMap.getFetches(), 1);
+    }
 }
@@ -0,0 +1,154 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared.connectors.bugzilla;
+
+import org.jboss.pull.shared.connectors.bugzilla.BZHelper;
+import org.jboss.pull.shared.connectors.bugzilla.Bug;
+import org.jboss.pull.shared.connectors.bugzilla.BugCache;
+import org.jboss.pull.shared.connectors.bugzilla.Bugzilla;
+import org.jboss.pull.shared.connectors.common.Flag;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollectionOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+/**
+ * Checks that the {@link BugCache} only goes to Bugzilla for missing and changed bugs.
+ */
+@Test
+public class BugCacheTest {
+
+    private static final Date CHANGED_BEFORE = new Date(1000L);
+    private static final Date CHANGED_AFTER = new Date(2000L);
+
+    private Bugzilla bugzilla;
+
+    @BeforeMethod
+    public void createBugzilla() {
+        bugzilla = mock(Bugzilla.class);
+        when(bugzilla.getBugs(anyCollectionOf(Integer.class), any(Bug.Profile.class))).thenReturn(
+                bugs(CHANGED_BEFORE, 1, 2, 3));
+    }
+
+    public void testFreshEntriesAreHits() {
+        BugCache cache = new BugCache(bugzilla, Bug.Profile.MERGE_CHECK, 60000, 10);
+
+        assertEquals(cache.getAll(Arrays.asList(1, 2, 3)).size(), 3);
+        assertEquals(cache.getAll(Arrays.asList(1, 2)).size(), 2);
+        assertEquals(cache.getMisses(), 3);
+        assertEquals(cache.getHits(), 2);
+        verify(bugzilla, times(1)).getBugs(anyCollectionOf(Integer.class), any(Bug.Profile.class));
+        verify(bugzilla, never()).getLastChangeTimes(anyCollectionOf(Integer.class));
+    }
+
+    public void testExpiredEntriesAreRevalidatedInOneCall() {
+        BugCache cache = new BugCache(bugzilla, Bug.Profile.MERGE_CHECK, 0, 10);
+        cache.getAll(Arrays.asList(1, 2, 3));
+
+        Map<Integer, Date> times = new HashMap<Integer, Date>();
+        times.put(1, CHANGED_BEFORE);
+        times.put(2, CHANGED_AFTER);
+        times.put(3, CHANGED_BEFORE);
+        when(bugzilla.getLastChangeTimes(anyCollectionOf(Integer.class))).thenReturn(times);
+        when(bugzilla.getBugs(anyCollectionOf(Integer.class), any(Bug.Profile.class))).thenReturn(
+                bugs(CHANGED_AFTER, 2));
+
+        Map<Integer, Bug> result = cache.getAll(Arrays.asList(1, 2));
+        assertEquals(result.get(1).getLastChangeTime(), CHANGED_BEFORE);
+        assertEquals(result.get(2).getLastChangeTime(), CHANGED_AFTER);
+        assertEquals(cache.getRevalidations(), 1);
+        assertEquals(cache.getRefetches(), 1);
+        verify(bugzilla, times(1)).getLastChangeTimes(anyCollectionOf(Integer.class));
+        verify(bugzilla, times(1)).getBugs(Arrays.asList(2), Bug.Profile.MERGE_CHECK);
+    }
+
+    public void testFailedRevalidationKeepsEntries() {
+        BugCache cache = new BugCache(bugzilla, Bug.Profile.MERGE_CHECK, 0, 10);
+        cache.getAll(Arrays.asList(1, 2, 3));
+
+        // bugzilla couldn't be asked
+        when(bugzilla.getLastChangeTimes(anyCollectionOf(Integer.class))).thenReturn(null);
+
+        Map<Integer, Bug> result = cache.getAll(Arrays.asList(1, 2));
+        assertEquals(result.size(), 2);
+        assertEquals(cache.size(), 3);
+        assertEquals(cache.getRefetches(), 0);
+        verify(bugzilla, times(1)).getBugs(anyCollectionOf(Integer.class), any(Bug.Profile.class));
+
+        // still expired, so the next access tries again
+        cache.getAll(Arrays.asList(1));
+        verify(bugzilla, times(2)).getLastChangeTimes(anyCollectionOf(Integer.class));
+    }
+
+    public void testLeastRecentlyUsedIsEvicted() {
+        BugCache cache = new BugCache(bugzilla, Bug.Profile.MERGE_CHECK, 60000, 2);
+        cache.getAll(Arrays.asList(1, 2, 3));
+
+        assertEquals(cache.size(), 2);
+        assertEquals(cache.getEvictions(), 1);
+    }
+
+    public void testUpdatedBugsInvalidated() {
+        BugCache cache = new BugCache(bugzilla, Bug.Profile.MERGE_CHECK, 60000, 10);
+        BZHelper helper = new BZHelper(bugzilla, cache);
+        cache.getAll(Arrays.asList(1, 2, 3));
+
+        when(bugzilla.updateBugzillaStatus(1, Bug.Status.MODIFIED)).thenReturn(true);
+        when(bugzilla.updateBugzillaFlag(new Integer[] { 2, 3 }, "pm_ack", Flag.Status.POSITIVE)).thenReturn(true);
+        // Bugzilla refused the change
+        when(bugzilla.updateBugzillaTargetRelease(3, "6.4.0")).thenReturn(false);
+
+        assertFalse(helper.updateBugzillaTargetRelease(3, "6.4.0"));
+        assertEquals(cache.size(), 3);
+        assertTrue(helper.updateBugzillaStatus(1, Bug.Status.MODIFIED));
+        assertEquals(cache.size(), 2);
+        assertTrue(helper.updateBugzillaFlag(new Integer[] { 2, 3 }, "pm_ack", Flag.Status.POSITIVE));
+        assertEquals(cache.size(), 0);
+
+        // fetched again with the changes
+        cache.getAll(Arrays.asList(1));
+        verify(bugzilla, times(2)).getBugs(anyCollectionOf(Integer.class), any(Bug.Profile.class));
+    }
+
+    private static Map<Integer, Bug> bugs(Date lastChangeTime, Integer... ids) {
+        Map<Integer, Bug> bugs = new HashMap<Integer, Bug>();
+        for (Integer id : ids) {
+            Map<String, Object> fields = new HashMap<String, Object>();
+            fields.put("id", id);
+            fields.put("last_change_time", lastChangeTime);
+            bugs.put(id, new Bug(fields));
+        }
+        return bugs;
+    }
+}
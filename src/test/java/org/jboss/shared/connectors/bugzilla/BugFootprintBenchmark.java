@@ -0,0 +1,272 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.shared.connectors.bugzilla;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.pull.shared.connectors.bugzilla.Bug;
+import org.jboss.pull.shared.connectors.common.Flag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Memory kept by {@code bugs} cached bugs, with the compact {@link Bug} and with {@link LegacyBug}, which holds the
+ * fields the way {@link Bug} used to: boxed id sets, a copy of every string and a new {@link Flag} per flag. The
+ * retained bytes per bug are printed after each trial, the benchmarks time building the bugs from Bug.get results
+ * (run with {@code -prof gc} for the allocation rates).
+ *
+ * @author navssurtani
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BugFootprintBenchmark {
+
+    private static final String[] PRODUCTS = { "JBoss Enterprise Application Platform 6", "JBoss Data Grid 6" };
+    private static final String[] COMPONENTS = { "EJB", "Web", "JCA", "Clustering", "Security", "Domain Management" };
+    private static final String[] VERSIONS = { "6.2.0", "6.2.1", "6.3.0" };
+    private static final String[] PRIORITIES = { "unspecified", "low", "medium", "high", "urgent" };
+    private static final String[] FLAG_NAMES = { "pm_ack", "devel_ack", "qa_ack", "jboss-eap-6.3.0", "blocker" };
+
+    @Param({ "5000" })
+    public int bugs;
+
+    private List<Map<String, Object>> bugMaps;
+
+    @Setup(Level.Trial)
+    public void createBugMaps() {
+        bugMaps = createBugMaps(bugs);
+    }
+
+    private static List<Map<String, Object>> createBugMaps(int bugs) {
+        final Random random = new Random(42);
+        final List<Map<String, Object>> bugMaps = new ArrayList<Map<String, Object>>(bugs);
+        for (int i = 0; i < bugs; i++) {
+            final Map<String, Object> bugMap = new HashMap<String, Object>();
+            // every XML-RPC response carries its own copy of the strings
+            bugMap.put("id", 1000000 + i);
+            bugMap.put("alias", new Object[0]);
+            bugMap.put("product", copy(PRODUCTS[random.nextInt(PRODUCTS.length)]));
+            bugMap.put("component", new Object[] { copy(COMPONENTS[random.nextInt(COMPONENTS.length)]) });
+            bugMap.put("version", new Object[] { copy(VERSIONS[random.nextInt(VERSIONS.length)]) });
+            bugMap.put("priority", copy(PRIORITIES[random.nextInt(PRIORITIES.length)]));
+            bugMap.put("severity", copy(PRIORITIES[random.nextInt(PRIORITIES.length)]));
+            bugMap.put("target_milestone", copy("---"));
+            bugMap.put("creator", copy("user" + random.nextInt(200) + "@redhat.com"));
+            bugMap.put("assigned_to", copy("user" + random.nextInt(200) + "@redhat.com"));
+            bugMap.put("qa_contact", copy("user" + random.nextInt(200) + "@redhat.com"));
+            bugMap.put("docs_contact", copy(""));
+            bugMap.put("status", "POST");
+            bugMap.put("resolution", copy(""));
+            final Object[] flags = new Object[FLAG_NAMES.length];
+            for (int f = 0; f < flags.length; f++) {
+                final Map<String, Object> flag = new HashMap<String, Object>();
+                flag.put("name", copy(FLAG_NAMES[f]));
+                flag.put("setter", copy("user" + random.nextInt(200) + "@redhat.com"));
+                flag.put("status", random.nextBoolean() ? "+" : "?");
+                flags[f] = flag;
+            }
+            bugMap.put("flags", flags);
+            bugMap.put("groups", new Object[] { copy("redhat") });
+            bugMap.put("depends_on", ids(random, 3));
+            bugMap.put("blocks", ids(random, 4));
+            bugMap.put("target_release", new Object[] { copy(VERSIONS[random.nextInt(VERSIONS.length)]) });
+            bugMap.put("summary", "Summary of bug " + i);
+            bugMap.put("description", "");
+            bugMaps.add(bugMap);
+        }
+        return bugMaps;
+    }
+
+    @TearDown(Level.Trial)
+    public void printFootprint() {
+        // the Bug.get results are dropped once the bugs are built, what the bugs keep of them is measured
+        System.out.printf("%nretained per bug: compact %d bytes, legacy %d bytes%n",
+                retained(new Builder() {
+                    @Override
+                    public Object build() {
+                        final List<Bug> result = new ArrayList<Bug>(bugs);
+                        for (Map<String, Object> bugMap : createBugMaps(bugs)) {
+                            result.add(new Bug(bugMap));
+                        }
+                        return result;
+                    }
+                }) / bugs,
+                retained(new Builder() {
+                    @Override
+                    public Object build() {
+                        final List<LegacyBug> result = new ArrayList<LegacyBug>(bugs);
+                        for (Map<String, Object> bugMap : createBugMaps(bugs)) {
+                            result.add(new LegacyBug(bugMap));
+                        }
+                        return result;
+                    }
+                }) / bugs);
+    }
+
+    @Benchmark
+    public List<Bug> compactBugs() {
+        final List<Bug> result = new ArrayList<Bug>(bugs);
+        for (Map<String, Object> bugMap : bugMaps) {
+            result.add(new Bug(bugMap));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<LegacyBug> legacyBugs() {
+        final List<LegacyBug> result = new ArrayList<LegacyBug>(bugs);
+        for (Map<String, Object> bugMap : bugMaps) {
+            result.add(new LegacyBug(bugMap));
+        }
+        return result;
+    }
+
+    private static long retained(Builder builder) {
+        final long before = usedAfterGc();
+        final Object built = builder.build();
+        final long after = usedAfterGc();
+        // keep it reachable until measured
+        if (built.hashCode() == 42)
+            System.out.print("");
+        return after - before;
+    }
+
+    private static long usedAfterGc() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static String copy(String value) {
+        return new String(value.toCharArray());
+    }
+
+    private static Object[] ids(Random random, int max) {
+        final Object[] ids = new Object[random.nextInt(max + 1)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = 900000 + random.nextInt(100000);
+        }
+        return ids;
+    }
+
+    private interface Builder {
+        Object build();
+    }
+
+    /**
+     * The fields of a bug as {@link Bug} used to hold them.
+     */
+    public static class LegacyBug {
+        private final List<String> alias = new ArrayList<String>();
+        private final String product;
+        private final List<String> component = new ArrayList<String>();
+        private final Set<String> version = new HashSet<String>();
+        private final String priority;
+        private final String severity;
+        private final String targetMilestone;
+        private final String creator;
+        private final String assignedTo;
+        private final String qaContact;
+        private final String docsContact;
+        private final String resolution;
+        private final List<Flag> flags = new ArrayList<Flag>();
+        private final List<String> groups = new ArrayList<String>();
+        private final Set<Integer> dependsOn = new HashSet<Integer>();
+        private final Set<Integer> blocks = new HashSet<Integer>();
+        private final Set<String> targetRelease = new HashSet<String>();
+        private final Set<String> loadedFields = new HashSet<String>();
+
+        LegacyBug(Map<String, Object> bugMap) {
+            for (Object obj : (Object[]) bugMap.get("alias")) {
+                alias.add((String) obj);
+            }
+            product = (String) bugMap.get("product");
+            for (Object obj : (Object[]) bugMap.get("component")) {
+                component.add((String) obj);
+            }
+            for (Object obj : (Object[]) bugMap.get("version")) {
+                version.add((String) obj);
+            }
+            priority = (String) bugMap.get("priority");
+            severity = (String) bugMap.get("severity");
+            targetMilestone = (String) bugMap.get("target_milestone");
+            creator = (String) bugMap.get("creator");
+            assignedTo = (String) bugMap.get("assigned_to");
+            qaContact = (String) bugMap.get("qa_contact");
+            docsContact = (String) bugMap.get("docs_contact");
+            resolution = (String) bugMap.get("resolution");
+            for (Object obj : (Object[]) bugMap.get("flags")) {
+                @SuppressWarnings("unchecked")
+                final Map<String, Object> flag = (Map<String, Object>) obj;
+                flags.add(new Flag((String) flag.get("name"), (String) flag.get("setter"),
+                        "+".equals(flag.get("status")) ? Flag.Status.POSITIVE : Flag.Status.UNKNOWN));
+            }
+            for (Object obj : (Object[]) bugMap.get("groups")) {
+                groups.add((String) obj);
+            }
+            for (Object obj : (Object[]) bugMap.get("depends_on")) {
+                dependsOn.add((Integer) obj);
+            }
+            for (Object obj : (Object[]) bugMap.get("blocks")) {
+                blocks.add((Integer) obj);
+            }
+            for (Object obj : (Object[]) bugMap.get("target_release")) {
+                targetRelease.add((String) obj);
+            }
+            for (Object field : Bug.include_fields) {
+                if (bugMap.containsKey(field))
+                    loadedFields.add((String) field);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(BugFootprintBenchmark.class.getSimpleName()).build()).run();
+    }
+}
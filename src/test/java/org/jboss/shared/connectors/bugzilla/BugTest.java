@@ -0,0 +1,96 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared.connectors.bugzilla;
+
+import org.jboss.pull.shared.connectors.bugzilla.Bug;
+import org.jboss.pull.shared.connectors.bugzilla.Bugzilla;
+import org.jboss.pull.shared.connectors.bugzilla.BugzillaSettings;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks that a {@link Bug} fetched with a {@link Bug.Profile} goes to Bugzilla only for the fields outside of the
+ * profile, loads them all in one call, and tries again after the call failed.
+ */
+@Test
+public class BugTest {
+
+    private static final int BUG_ID = 953471;
+
+    private BugzillaStandInServer server;
+    private Bugzilla bugzilla;
+
+    @BeforeMethod
+    public void startServer() throws Exception {
+        server = new BugzillaStandInServer();
+        bugzilla = new Bugzilla(server.getServerUrl(), "login", "password", new BugzillaSettings(
+                BugzillaSettings.DEFAULT_BATCH_SIZE, 2, 5000, 5000, false, false));
+    }
+
+    @AfterMethod
+    public void stopServer() {
+        bugzilla.close();
+        server.stop();
+    }
+
+    public void testProfileFieldsNeverLoaded() {
+        Bug bug = bugzilla.getBugs(Arrays.asList(BUG_ID), Bug.Profile.MERGE_CHECK).get(BUG_ID);
+        assertEquals(server.getRequests(), 1);
+
+        assertEquals(bug.getStatus(), Bug.Status.NEW.toString());
+        assertEquals(bug.getFlags().size(), 1);
+        assertTrue(bug.getPositiveFlagMask() != 0L);
+        assertEquals(bug.getBlocks(), Collections.singleton(900000));
+        assertTrue(bug.isBlocking(900000));
+        assertEquals(bug.getTargetRelease(), Collections.singleton("6.1.1"));
+        assertEquals(bug.getFixVersions(), Collections.singleton("6.1.1"));
+        assertNotNull(bug.getLastChangeTime());
+        assertEquals(bug.getNumber(), String.valueOf(BUG_ID));
+        assertEquals(server.getRequests(), 1);
+        assertFalse(bug.isLoaded("summary"));
+    }
+
+    public void testFailedLoadTriedAgain() {
+        Bug bug = bugzilla.getBugs(Arrays.asList(BUG_ID), Bug.Profile.MERGE_CHECK).get(BUG_ID);
+        server.failNextRequestsFor(BUG_ID, 1);
+
+        assertNull(bug.getSummary());
+        assertFalse(bug.isLoaded("summary"));
+        assertEquals(server.getRequests(), 2);
+
+        assertEquals(bug.getSummary(), "Stand-in bug");
+        assertTrue(bug.isLoaded("summary"));
+        assertEquals(server.getRequests(), 3);
+
+        // all the remaining fields came with the same call
+        assertEquals(bug.getDescription(), "Stand-in description");
+        assertEquals(bug.getProduct(), "JBoss Enterprise Application Platform 6");
+        assertEquals(bug.getComponent(), Arrays.asList("Web"));
+        assertEquals(server.getRequests(), 3);
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.shared.connectors.bugzilla;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A minimal local stand-in for the Bugzilla XML-RPC endpoint. It answers every Bug.get request with the same canned
+ * bug under each of the requested ids, restricted to the requested {@code include_fields}, honours HTTP/1.1
+ * keep-alive and counts the accepted connections, i.e. the handshakes a client had to make. The requests for chosen
+ * ids can be made to fail with an XML-RPC fault.
+ *
+ * @author navssurtani
+ */
+public class BugzillaStandInServer {
+
+    // the values of the fields of the canned bug, keyed by their name
+    private static final Map<String, String> BUG_FIELDS = new LinkedHashMap<String, String>();
+
+    static {
+        BUG_FIELDS.put("alias", "<array><data></data></array>");
+        BUG_FIELDS.put("product", "<string>JBoss Enterprise Application Platform 6</string>");
+        BUG_FIELDS.put("component", "<array><data><value><string>Web</string></value></data></array>");
+        BUG_FIELDS.put("version", "<array><data><value><string>6.1.0</string></value></data></array>");
+        BUG_FIELDS.put("priority", "<string>unspecified</string>");
+        BUG_FIELDS.put("severity", "<string>unspecified</string>");
+        BUG_FIELDS.put("target_milestone", "<string>ER1</string>");
+        BUG_FIELDS.put("creator", "<string>someone@redhat.com</string>");
+        BUG_FIELDS.put("assigned_to", "<string>someone@redhat.com</string>");
+        BUG_FIELDS.put("qa_contact", "<string>someone@redhat.com</string>");
+        BUG_FIELDS.put("docs_contact", "<string></string>");
+        BUG_FIELDS.put("status", "<string>NEW</string>");
+        BUG_FIELDS.put("resolution", "<string></string>");
+        BUG_FIELDS.put("flags", "<array><data><value><struct>" + member("name", "<string>pm_ack</string>")
+                + member("setter", "<string>someone@redhat.com</string>") + member("status", "<string>+</string>")
+                + "</struct></value></data></array>");
+        BUG_FIELDS.put("groups", "<array><data></data></array>");
+        BUG_FIELDS.put("depends_on", "<array><data></data></array>");
+        BUG_FIELDS.put("blocks", "<array><data><value><int>900000</int></value></data></array>");
+        BUG_FIELDS.put("target_release", "<array><data><value><string>6.1.1</string></value></data></array>");
+        BUG_FIELDS.put("summary", "<string>Stand-in bug</string>");
+        BUG_FIELDS.put("description", "<string>Stand-in description</string>");
+        BUG_FIELDS.put("last_change_time", "<dateTime.iso8601>20141018T10:00:00</dateTime.iso8601>");
+    }
+
+    private static final Pattern ID = Pattern.compile("<(?:i4|int)>(\\d+)</(?:i4|int)>");
+    private static final Pattern FIELD = Pattern.compile("<value>(?:<string>)?(\\w+)(?:</string>)?</value>");
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers = Executors.newCachedThreadPool();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final AtomicInteger requests = new AtomicInteger();
+    // number of the next requests to fail, keyed by the id they ask for
+    private final Map<Integer, Integer> failures = new HashMap<Integer, Integer>();
+
+    public BugzillaStandInServer() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+        workers.execute(new Runnable() {
+            @Override
+            public void run() {
+                acceptLoop();
+            }
+        });
+    }
+
+    private static String member(String name, String value) {
+        return "<member><name>" + name + "</name><value>" + value + "</value></member>";
+    }
+
+    public String getServerUrl() {
+        return "http://localhost:" + serverSocket.getLocalPort() + "/";
+    }
+
+    public int getConnections() {
+        return connections.get();
+    }
+
+    public int getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Answers the next {@code count} requests asking for the given bug with a fault.
+     */
+    public synchronized void failNextRequestsFor(int bugId, int count) {
+        failures.put(bugId, count);
+    }
+
+    public void stop() {
+        try {
+            serverSocket.close();
+        } catch (IOException ignore) {
+        }
+        workers.shutdownNow();
+    }
+
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                final Socket socket = serverSocket.accept();
+                connections.incrementAndGet();
+                workers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+            } catch (IOException closed) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try {
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = socket.getOutputStream();
+
+            boolean keepAlive = true;
+            while (keepAlive) {
+                int contentLength = 0;
+                String line = readLine(in);
+                if (line == null || line.length() == 0)
+                    return;
+                while ((line = readLine(in)) != null && line.length() > 0) {
+                    String header = line.toLowerCase();
+                    if (header.startsWith("content-length:"))
+                        contentLength = Integer.parseInt(header.substring("content-length:".length()).trim());
+                    if (header.startsWith("connection:") && header.contains("close"))
+                        keepAlive = false;
+                }
+                byte[] request = new byte[contentLength];
+                for (int i = 0; i < contentLength; i++) {
+                    int c = in.read();
+                    if (c < 0)
+                        return;
+                    request[i] = (byte) c;
+                }
+                requests.incrementAndGet();
+                byte[] body = respond(new String(request, "UTF-8")).getBytes("UTF-8");
+
+                String headers = "HTTP/1.1 200 OK\r\nContent-Type: text/xml\r\nContent-Length: " + body.length
+                        + "\r\nConnection: " + (keepAlive ? "keep-alive" : "close") + "\r\n\r\n";
+                out.write(headers.getBytes("US-ASCII"));
+                out.write(body);
+                out.flush();
+            }
+        } catch (IOException ignore) {
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    private String respond(String request) {
+        final List<Integer> ids = new ArrayList<Integer>();
+        final Matcher id = ID.matcher(requestMember(request, "ids"));
+        while (id.find()) {
+            ids.add(Integer.valueOf(id.group(1)));
+        }
+        final Set<String> fields = new HashSet<String>();
+        final Matcher field = FIELD.matcher(requestMember(request, "include_fields"));
+        while (field.find()) {
+            fields.add(field.group(1));
+        }
+
+        synchronized (this) {
+            for (Integer failing : ids) {
+                final Integer count = failures.get(failing);
+                if (count != null && count > 0) {
+                    failures.put(failing, count - 1);
+                    return "<?xml version=\"1.0\" encoding=\"UTF-8\"?><methodResponse><fault><value><struct>"
+                            + member("faultCode", "<int>32000</int>")
+                            + member("faultString", "<string>Stand-in failure for bug " + failing + "</string>")
+                            + "</struct></value></fault></methodResponse>";
+                }
+            }
+        }
+
+        final StringBuilder response = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<methodResponse><params><param><value><struct><member><name>bugs</name><value><array><data>");
+        for (Integer bugId : ids) {
+            response.append("<value><struct>").append(member("id", "<int>" + bugId + "</int>"));
+            for (Map.Entry<String, String> value : BUG_FIELDS.entrySet()) {
+                if (fields.isEmpty() || fields.contains(value.getKey()))
+                    response.append(member(value.getKey(), value.getValue()));
+            }
+            response.append("</struct></value>");
+        }
+        return response.append("</data></array></value></member></struct></value></param></params></methodResponse>")
+                .toString();
+    }
+
+    /**
+     * @return the value of the named member of the request, or an empty string if there is none
+     */
+    private static String requestMember(String request, String name) {
+        final int start = request.indexOf("<name>" + name + "</name>");
+        if (start < 0)
+            return "";
+        final int end = request.indexOf("</member>", start);
+        return request.substring(start, end < 0 ? request.length() : end);
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) >= 0) {
+            if (c == '\n')
+                return line.toString("US-ASCII").trim();
+            line.write(c);
+        }
+        return line.size() == 0 ? null : line.toString("US-ASCII").trim();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared.connectors.bugzilla;
+
+import org.jboss.pull.shared.connectors.bugzilla.Bug;
+import org.jboss.pull.shared.connectors.bugzilla.Bugzilla;
+import org.jboss.pull.shared.connectors.bugzilla.BugzillaSettings;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks that {@link Bugzilla#getBugs(java.util.Collection, Bug.Profile)} asks for the bugs in chunks of the batch
+ * size, merges the chunks and leaves out just the bugs of a chunk which failed.
+ */
+@Test
+public class BugzillaTest {
+
+    private static final int BATCH_SIZE = 3;
+
+    private BugzillaStandInServer server;
+    private Bugzilla bugzilla;
+
+    @BeforeMethod
+    public void startServer() throws Exception {
+        server = new BugzillaStandInServer();
+        bugzilla = new Bugzilla(server.getServerUrl(), "login", "password", new BugzillaSettings(
+                BATCH_SIZE, 2, 5000, 5000, false, false));
+    }
+
+    @AfterMethod
+    public void stopServer() {
+        bugzilla.close();
+        server.stop();
+    }
+
+    public void testBugsFetchedInChunks() {
+        List<Integer> ids = ids(2 * BATCH_SIZE + 1);
+        // asked for once
+        List<Integer> withDuplicates = new ArrayList<Integer>(ids);
+        withDuplicates.add(ids.get(0));
+
+        Map<Integer, Bug> bugs = bugzilla.getBugs(withDuplicates, Bug.Profile.MERGE_CHECK);
+        assertEquals(server.getRequests(), 3);
+        assertEquals(bugs.keySet(), new HashSet<Integer>(ids));
+        for (Integer id : ids) {
+            assertEquals(bugs.get(id).getId(), id.intValue());
+            assertEquals(bugs.get(id).getStatus(), Bug.Status.NEW.toString());
+        }
+        assertFalse(bugs.get(ids.get(0)).isLoaded("summary"));
+    }
+
+    public void testFailedChunkLeftOut() {
+        List<Integer> ids = ids(2 * BATCH_SIZE + 1);
+        server.failNextRequestsFor(ids.get(BATCH_SIZE + 1), 1);
+
+        Map<Integer, Bug> bugs = bugzilla.getBugs(ids, Bug.Profile.MERGE_CHECK);
+        assertEquals(server.getRequests(), 3);
+        List<Integer> expected = new ArrayList<Integer>(ids.subList(0, BATCH_SIZE));
+        expected.add(ids.get(2 * BATCH_SIZE));
+        assertEquals(bugs.keySet(), new HashSet<Integer>(expected));
+    }
+
+    public void testFailedChunkFailsLastChangeTimes() {
+        List<Integer> ids = ids(2 * BATCH_SIZE + 1);
+
+        Map<Integer, Date> times = bugzilla.getLastChangeTimes(ids);
+        assertEquals(times.keySet(), new HashSet<Integer>(ids));
+
+        // no bug may be taken for vanished just because its chunk failed
+        server.failNextRequestsFor(ids.get(2 * BATCH_SIZE), 1);
+        assertNull(bugzilla.getLastChangeTimes(ids));
+        assertEquals(server.getRequests(), 6);
+    }
+
+    private static List<Integer> ids(int count) {
+        List<Integer> ids = new ArrayList<Integer>();
+        for (int i = 0; i < count; i++) {
+            ids.add(953471 + i);
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.shared.connectors.bugzilla;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.pull.shared.connectors.bugzilla.Bug;
+import org.jboss.pull.shared.connectors.bugzilla.Bugzilla;
+import org.jboss.pull.shared.connectors.bugzilla.BugzillaSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Per-call latency of {@link Bugzilla#getBug(int)} against a local {@link BugzillaStandInServer}, with the pooled
+ * keep-alive transport ({@code poolSize > 0}) and with the plain per-call {@code HttpURLConnection} transport
+ * ({@code poolSize = 0}). The number of connections the server had to accept per call is printed after each trial.
+ *
+ * @author navssurtani
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class BugzillaTransportBenchmark {
+
+    @Param({ "0", "4" })
+    public int poolSize;
+
+    private BugzillaStandInServer server;
+    private Bugzilla bugzilla;
+
+    @Setup(Level.Trial)
+    public void startServer() throws Exception {
+        server = new BugzillaStandInServer();
+        bugzilla = new Bugzilla(server.getServerUrl(), "login", "password", new BugzillaSettings(
+                BugzillaSettings.DEFAULT_BATCH_SIZE, poolSize, 5000, 5000, false, false));
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() {
+        System.out.printf("%npoolSize=%d: %d calls, %d connections (%.3f handshakes per call)%n", poolSize,
+                server.getRequests(), server.getConnections(),
+                (double) server.getConnections() / Math.max(1, server.getRequests()));
+        bugzilla.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public Bug getBug() {
+        return bugzilla.getBug(953471);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(BugzillaTransportBenchmark.class.getSimpleName()).build()).run();
+    }
+}
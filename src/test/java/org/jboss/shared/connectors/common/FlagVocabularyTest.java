@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared.connectors.common;
+
+import org.jboss.pull.shared.connectors.bugzilla.Bug;
+import org.jboss.pull.shared.connectors.common.Flag;
+import org.jboss.pull.shared.connectors.common.FlagVocabulary;
+import org.jboss.pull.shared.connectors.jira.JiraIssue;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks that the {@link FlagVocabulary} shares the flags and that masks give the same answers as the flag names, also
+ * for issues read back.
+ */
+@Test
+public class FlagVocabularyTest {
+
+    public void testFlagsShared() {
+        Flag flag = FlagVocabulary.flag("pm_ack", "pm@redhat.com", Flag.Status.POSITIVE);
+        assertSame(FlagVocabulary.flag("pm_ack", "pm@redhat.com", Flag.Status.POSITIVE), flag);
+        assertNotSame(FlagVocabulary.flag("pm_ack", "pm@redhat.com", Flag.Status.NEGATIVE), flag);
+        assertTrue(flag.isShared());
+        assertFalse(new Flag("pm_ack", "pm@redhat.com", Flag.Status.POSITIVE).isShared());
+
+        try {
+            flag.setStatus(Flag.Status.NEGATIVE);
+            fail("Shared flags cannot be changed");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    public void testMissingFlagsFromMasks() {
+        Map<String, Object> bugMap = new HashMap<String, Object>();
+        bugMap.put("id", 953471);
+        bugMap.put("flags", new Object[] { flag("pm_ack", "+"), flag("devel_ack", "+"), flag("qa_ack", "?"),
+                flag("jboss-eap-6.3.0", "+") });
+        Bug bug = new Bug(bugMap);
+
+        Long required = FlagVocabulary.mask(Arrays.asList("pm_ack", "devel_ack", "qa_ack", "jboss-eap-6.3.0"));
+        assertNotNull(required);
+        assertEquals(FlagVocabulary.names(required & ~bug.getPositiveFlagMask()), Arrays.asList("qa_ack"));
+        assertSame(bug.getFlags().get(0), FlagVocabulary.flag("pm_ack", "pm@redhat.com", Flag.Status.POSITIVE));
+    }
+
+    public void testMaskComputedWhenReadBack() throws Exception {
+        // the ordinals of another JVM must not be read back
+        assertNull(ObjectStreamClass.lookup(Bug.class).getField("positiveFlagMask"));
+        assertNull(ObjectStreamClass.lookup(JiraIssue.class).getField("positiveFlagMask"));
+
+        Map<String, Object> bugMap = new HashMap<String, Object>();
+        bugMap.put("id", 953471);
+        bugMap.put("flags", new Object[] { flag("pm_ack", "+"), flag("qa_ack", "?") });
+        Bug bug = new Bug(bugMap);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(bug);
+        out.close();
+        Bug read = (Bug) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        assertEquals(read.getPositiveFlagMask(), bug.getPositiveFlagMask());
+        assertEquals(FlagVocabulary.names(read.getPositiveFlagMask()), Arrays.asList("pm_ack"));
+        assertSame(read.getFlags().get(0), bug.getFlags().get(0));
+    }
+
+    private static Map<String, Object> flag(String name, String status) {
+        Map<String, Object> flag = new HashMap<String, Object>();
+        flag.put("name", name);
+        flag.put("setter", name.startsWith("pm") ? "pm@redhat.com" : "someone@redhat.com");
+        flag.put("status", status);
+        return flag;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.shared.connectors.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.pull.shared.connectors.bugzilla.Bug;
+import org.jboss.pull.shared.connectors.common.Flag;
+import org.jboss.pull.shared.connectors.common.FlagVocabulary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Time to check the required flags of {@code bugs} bugs, once the way the flag based evaluators did with a copy of the
+ * required flag names per bug, and once with the {@link FlagVocabulary} masks.
+ *
+ * @author navssurtani
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequiredFlagsBenchmark {
+
+    private static final String[] FLAG_NAMES = { "pm_ack", "devel_ack", "qa_ack", "jboss-eap-6.3.0", "jboss-eap-6.2.z",
+            "blocker", "exception", "needinfo", "requires_doc_text", "rhel-6.5.z" };
+    private static final String[] STATUSES = { "+", "+", "+", "-", "?", " " };
+    private static final Set<String> REQUIRED_FLAGS = new HashSet<String>(Arrays.asList("pm_ack", "devel_ack",
+            "qa_ack", "jboss-eap-6.3.0"));
+
+    @Param({ "20000" })
+    public int bugs;
+
+    private List<Bug> bugList;
+    private long requiredFlagMask;
+
+    @Setup(Level.Trial)
+    public void createBugs() {
+        final Random random = new Random(42);
+        bugList = new ArrayList<Bug>(bugs);
+        for (int i = 0; i < bugs; i++) {
+            final Object[] flags = new Object[4 + random.nextInt(FLAG_NAMES.length - 4)];
+            for (int f = 0; f < flags.length; f++) {
+                final Map<String, Object> flag = new HashMap<String, Object>();
+                flag.put("name", FLAG_NAMES[f]);
+                flag.put("setter", "user" + random.nextInt(50) + "@redhat.com");
+                flag.put("status", STATUSES[random.nextInt(STATUSES.length)]);
+                flags[f] = flag;
+            }
+            final Map<String, Object> bugMap = new HashMap<String, Object>();
+            bugMap.put("id", 1000000 + i);
+            bugMap.put("flags", flags);
+            bugList.add(new Bug(bugMap));
+        }
+        requiredFlagMask = FlagVocabulary.mask(REQUIRED_FLAGS);
+    }
+
+    @Benchmark
+    public int nameSets() {
+        int mergeable = 0;
+        for (Bug bug : bugList) {
+            final Set<String> flagsToCheck = new HashSet<String>(REQUIRED_FLAGS);
+            for (Flag flag : bug.getFlags()) {
+                if (flag.getStatus() == Flag.Status.POSITIVE)
+                    flagsToCheck.remove(flag.getName());
+            }
+            if (flagsToCheck.isEmpty())
+                mergeable++;
+        }
+        return mergeable;
+    }
+
+    @Benchmark
+    public int masks() {
+        int mergeable = 0;
+        for (Bug bug : bugList) {
+            if ((requiredFlagMask & ~bug.getPositiveFlagMask()) == 0L)
+                mergeable++;
+        }
+        return mergeable;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(RequiredFlagsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
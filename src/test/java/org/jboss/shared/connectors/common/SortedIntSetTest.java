@@ -0,0 +1,50 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared.connectors.common;
+
+import org.jboss.pull.shared.connectors.common.SortedIntSet;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks that a {@link SortedIntSet} behaves like the {@code HashSet<Integer>} it replaces.
+ */
+@Test
+public class SortedIntSetTest {
+
+    public void testSameAsHashSet() {
+        SortedIntSet set = SortedIntSet.of(new Object[] { 953471, 12, 1000, 12 });
+
+        assertEquals(set, new HashSet<Integer>(Arrays.asList(12, 1000, 953471)));
+        assertEquals(set.size(), 3);
+        assertTrue(set.contains(1000));
+        assertTrue(set.contains(Integer.valueOf(953471)));
+        assertFalse(set.contains(13));
+        assertFalse(set.contains("12"));
+        assertTrue(Arrays.equals(set.toIntArray(), new int[] { 12, 1000, 953471 }));
+        assertSame(SortedIntSet.of(new Object[0]), SortedIntSet.EMPTY);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared.connectors.github;
+
+import org.eclipse.egit.github.core.Comment;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.client.GitHubClient;
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.eclipse.egit.github.core.client.GitHubResponse;
+import org.jboss.pull.shared.connectors.github.CommentStore;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+/**
+ * Checks that the {@link CommentStore} only asks for new comments and merges them into the known ones, and that its
+ * searches read each page at most once.
+ */
+@Test
+public class CommentStoreTest {
+
+    public void testLaterPollsOnlyFetchChanges() throws Exception {
+        GitHubClient client = mock(GitHubClient.class);
+        GitHubResponse firstPoll = response(comment(1, "first", 1000L), comment(2, "second", 2000L));
+        GitHubResponse secondPoll = response(comment(2, "second, edited", 3000L), comment(3, "third", 4000L));
+        when(client.get(any(GitHubRequest.class))).thenReturn(firstPoll, secondPoll);
+
+        CommentStore store = new CommentStore(client, 10);
+        RepositoryId repository = new RepositoryId("uselessorg", "jboss-eap");
+        assertEquals(store.getComments(repository, 2).size(), 2);
+
+        List<Comment> comments = store.getComments(repository, 2);
+        assertEquals(comments.size(), 3);
+        assertEquals(comments.get(1).getBody(), "second, edited");
+        assertEquals(comments.get(2).getBody(), "third");
+
+        ArgumentCaptor<GitHubRequest> requests = ArgumentCaptor.forClass(GitHubRequest.class);
+        verify(client, times(2)).get(requests.capture());
+        assertFalse(requests.getAllValues().get(0).getParams().containsKey("since"));
+        assertEquals(requests.getAllValues().get(1).getParams().get("since"), "1970-01-01T00:00:02Z");
+    }
+
+    public void testLastMatchingSearchedNewestFirst() throws Exception {
+        GitHubClient client = mock(GitHubClient.class);
+        GitHubResponse firstPage = response(comment(1, "merge", 1000L));
+        when(firstPage.getLast()).thenReturn(
+                "https://api.github.com/repos/uselessorg/jboss-eap/issues/2/comments?page=3&per_page=100");
+        GitHubResponse lastPage = response(comment(250, "merge", 5000L), comment(251, "build", 6000L));
+        when(client.get(any(GitHubRequest.class))).thenReturn(firstPage, lastPage);
+
+        CommentStore store = new CommentStore(client, 10);
+        Comment match = store.findLastMatching(new RepositoryId("uselessorg", "jboss-eap"), 2, Pattern.compile("merge"),
+                5);
+
+        assertEquals(match.getId(), 250L);
+        ArgumentCaptor<GitHubRequest> requests = ArgumentCaptor.forClass(GitHubRequest.class);
+        verify(client, times(2)).get(requests.capture());
+        assertEquals(requests.getAllValues().get(1).getParams().get("page"), "3");
+    }
+
+    public void testSinglePageBound() throws Exception {
+        GitHubClient client = mock(GitHubClient.class);
+        GitHubResponse firstPage = response(comment(1, "review", 1000L));
+        when(firstPage.getLast()).thenReturn(
+                "https://api.github.com/repos/uselessorg/jboss-eap/issues/2/comments?page=3&per_page=100");
+        GitHubResponse lastPage = response(comment(250, "merge", 5000L), comment(251, "build", 6000L));
+        when(client.get(any(GitHubRequest.class))).thenReturn(firstPage, lastPage);
+
+        CommentStore store = new CommentStore(client, 10);
+        RepositoryId repository = new RepositoryId("uselessorg", "jboss-eap");
+        assertEquals(store.findLastMatching(repository, 2, Pattern.compile("merge"), 1).getId(), 250L);
+
+        // the first page is outside of the newest page, so it isn't searched
+        when(client.get(any(GitHubRequest.class))).thenReturn(firstPage, lastPage);
+        assertNull(store.findLastMatching(repository, 2, Pattern.compile("review"), 1));
+
+        // unless it is the newest page
+        GitHubResponse onlyPage = response(comment(1, "merge", 1000L));
+        when(client.get(any(GitHubRequest.class))).thenReturn(onlyPage);
+        assertEquals(store.findLastMatching(repository, 3, Pattern.compile("merge"), 1).getId(), 1L);
+    }
+
+    public void testSearchReadsEachPageOnce() throws Exception {
+        GitHubClient client = mock(GitHubClient.class);
+        GitHubResponse firstPage = response(comment(1, "review", 1000L));
+        when(firstPage.getLast()).thenReturn(
+                "https://api.github.com/repos/uselessorg/jboss-eap/issues/2/comments?page=3&per_page=100");
+        GitHubResponse lastPage = response(comment(250, "merge", 5000L), comment(251, "build", 6000L));
+        GitHubResponse middlePage = response(comment(150, "retest", 3000L));
+        when(client.get(any(GitHubRequest.class))).thenReturn(firstPage, lastPage, middlePage);
+
+        CommentStore store = new CommentStore(client, 10);
+        CommentStore.Search search = store.search(new RepositoryId("uselessorg", "jboss-eap"), 2, 5);
+        assertEquals(search.findLast(CommentStore.matching(Pattern.compile("merge"))).getId(), 250L);
+        verify(client, times(2)).get(any(GitHubRequest.class));
+
+        // goes on with the older pages only
+        assertEquals(search.findLast(CommentStore.matching(Pattern.compile("review"))).getId(), 1L);
+        verify(client, times(3)).get(any(GitHubRequest.class));
+
+        assertEquals(search.findLast(CommentStore.matching(Pattern.compile("build"))).getId(), 251L);
+        assertNull(search.findLast(CommentStore.matching(Pattern.compile("release"))));
+        verify(client, times(3)).get(any(GitHubRequest.class));
+    }
+
+    private static GitHubResponse response(Comment... comments) {
+        GitHubResponse response = mock(GitHubResponse.class);
+        when(response.getBody()).thenReturn(Arrays.asList(comments));
+        return response;
+    }
+
+    private static Comment comment(long id, String body, long updatedAt) {
+        Comment comment = new Comment();
+        comment.setId(id);
+        comment.setBody(body);
+        comment.setCreatedAt(new Date(updatedAt));
+        comment.setUpdatedAt(new Date(updatedAt));
+        return comment;
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared.connectors.github;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.client.GitHubRequest;
+import org.jboss.pull.shared.connectors.common.ConcurrencyLimiter;
+import org.jboss.pull.shared.connectors.github.ManagedGitHubClient;
+import org.jboss.pull.shared.connectors.github.RequestScheduler;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks that the {@link ManagedGitHubClient} revalidates the responses it keeps, parses them again when github
+ * answers 304 Not Modified, gives the token of such a call back to the scheduler and keeps only the recently used
+ * responses. The connections are stubbed, answering like github does to conditional requests.
+ */
+@Test
+public class ManagedGitHubClientTest {
+
+    private static final String PULL = "/repos/jbossas/jboss-eap/pulls/1";
+    private static final String LAST_MODIFIED = "Sat, 18 Oct 2014 10:00:00 GMT";
+
+    public void testNotModifiedReplaysParsedBody() throws Exception {
+        StubGitHubClient client = new StubGitHubClient(10, scheduler());
+        client.setResource(PULL, "{\"number\": 1, \"state\": \"open\"}", "\"etag-1\"", LAST_MODIFIED);
+
+        PullRequest first = (PullRequest) client.get(request(PULL)).getBody();
+        // callers get objects of their own
+        first.setState("closed");
+        PullRequest second = (PullRequest) client.get(request(PULL)).getBody();
+
+        assertNotSame(second, first);
+        assertEquals(second.getNumber(), 1);
+        assertEquals(second.getState(), "open");
+
+        assertNull(client.connections.get(0).getRequestProperty("If-None-Match"));
+        assertEquals(client.connections.get(1).getRequestProperty("If-None-Match"), "\"etag-1\"");
+        assertEquals(client.connections.get(1).getRequestProperty("If-Modified-Since"), LAST_MODIFIED);
+        assertEquals(client.connections.get(1).getResponseCode(), HttpURLConnection.HTTP_NOT_MODIFIED);
+        assertEquals(client.getFullResponses(), 1);
+        assertEquals(client.getNotModifiedResponses(), 1);
+
+        // changed on github
+        client.setResource(PULL, "{\"number\": 1, \"state\": \"closed\"}", "\"etag-2\"", null);
+        assertEquals(((PullRequest) client.get(request(PULL)).getBody()).getState(), "closed");
+        assertEquals(client.connections.get(2).getRequestProperty("If-None-Match"), "\"etag-1\"");
+        assertEquals(client.connections.get(2).getResponseCode(), HttpURLConnection.HTTP_OK);
+        assertEquals(client.getFullResponses(), 2);
+        assertEquals(client.getNotModifiedResponses(), 1);
+
+        // the new response is the one revalidated
+        assertEquals(((PullRequest) client.get(request(PULL)).getBody()).getState(), "closed");
+        assertEquals(client.connections.get(3).getRequestProperty("If-None-Match"), "\"etag-2\"");
+        assertNull(client.connections.get(3).getRequestProperty("If-Modified-Since"));
+        assertEquals(client.getNotModifiedResponses(), 2);
+    }
+
+    public void testNotModifiedRefunded() throws Exception {
+        RequestScheduler scheduler = scheduler();
+        StubConnection rateLimit = new StubConnection(null);
+        rateLimit.headers.put("X-RateLimit-Remaining", "100");
+        rateLimit.headers.put("X-RateLimit-Reset",
+                String.valueOf(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 3600));
+        scheduler.update(rateLimit);
+
+        StubGitHubClient client = new StubGitHubClient(10, scheduler);
+        client.setResource(PULL, "{\"number\": 1, \"state\": \"open\"}", "\"etag-1\"", null);
+
+        client.get(request(PULL));
+        assertEquals(scheduler.getRemaining(), 99);
+        client.get(request(PULL));
+        assertEquals(scheduler.getRemaining(), 99);
+        assertEquals(client.getNotModifiedResponses(), 1);
+    }
+
+    public void testLeastRecentlyUsedEvicted() throws Exception {
+        StubGitHubClient client = new StubGitHubClient(2, scheduler());
+        for (String pull : new String[] { "/pulls/1", "/pulls/2", "/pulls/3" }) {
+            client.setResource(pull, "{\"number\": " + pull.substring(7) + "}", "\"" + pull + "\"", null);
+        }
+
+        client.get(request("/pulls/1"));
+        client.get(request("/pulls/2"));
+        // used again, so the second one is the least recently used
+        client.get(request("/pulls/1"));
+        client.get(request("/pulls/3"));
+        assertEquals(client.getNotModifiedResponses(), 1);
+
+        client.get(request("/pulls/1"));
+        assertEquals(client.getNotModifiedResponses(), 2);
+        client.get(request("/pulls/2"));
+        assertNull(client.connections.get(5).getRequestProperty("If-None-Match"));
+        assertEquals(client.getNotModifiedResponses(), 2);
+        assertEquals(client.getFullResponses(), 4);
+    }
+
+    private static RequestScheduler scheduler() {
+        return new RequestScheduler(5000, 100, 0, 0, 1000);
+    }
+
+    private static GitHubRequest request(String uri) {
+        return new GitHubRequest().setUri(uri).setType(PullRequest.class);
+    }
+
+    /**
+     * Answers the GET requests from the resources set, the way github answers conditional requests.
+     */
+    private static class StubGitHubClient extends ManagedGitHubClient {
+        private final Map<String, String[]> resources = new HashMap<String, String[]>();
+        private final List<StubConnection> connections = new ArrayList<StubConnection>();
+
+        private StubGitHubClient(int cacheSize, RequestScheduler scheduler) {
+            super(new ConcurrencyLimiter("test", 0), cacheSize, scheduler);
+        }
+
+        private void setResource(String uri, String body, String etag, String lastModified) {
+            resources.put(uri, new String[] { body, etag, lastModified });
+        }
+
+        @Override
+        protected HttpURLConnection createGet(String uri) throws IOException {
+            final StubConnection connection = new StubConnection(resources.get(uri));
+            connections.add(connection);
+            return connection;
+        }
+    }
+
+    private static class StubConnection extends HttpURLConnection {
+        // body, ETag and Last-Modified
+        private final String[] resource;
+        private final Map<String, String> headers = new HashMap<String, String>();
+
+        private StubConnection(String[] resource) throws IOException {
+            super(new URL("https://api.github.com/"));
+            this.resource = resource;
+        }
+
+        @Override
+        public int getResponseCode() {
+            if (resource == null)
+                return HTTP_NOT_FOUND;
+            final String ifNoneMatch = getRequestProperty("If-None-Match");
+            if (ifNoneMatch != null && ifNoneMatch.equals(resource[1]))
+                return HTTP_NOT_MODIFIED;
+            return HTTP_OK;
+        }
+
+        @Override
+        public String getHeaderField(String name) {
+            if (resource != null && getResponseCode() == HTTP_OK) {
+                if (name.equals("ETag"))
+                    return resource[1];
+                if (name.equals("Last-Modified"))
+                    return resource[2];
+            }
+            return headers.get(name);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (getResponseCode() != HTTP_OK)
+                throw new IOException("No body with " + getResponseCode());
+            return new ByteArrayInputStream(resource[0].getBytes("UTF-8"));
+        }
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public void disconnect() {
+        }
+
+        @Override
+        public boolean usingProxy() {
+            return false;
+        }
+    }
+}
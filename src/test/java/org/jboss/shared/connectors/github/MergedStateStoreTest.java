@@ -0,0 +1,140 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared.connectors.github;
+
+import org.eclipse.egit.github.core.Comment;
+import org.eclipse.egit.github.core.IRepositoryIdProvider;
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.PullRequestMarker;
+import org.eclipse.egit.github.core.service.IssueService;
+import org.eclipse.egit.github.core.service.PullRequestService;
+import org.jboss.pull.shared.connectors.github.GithubHelper;
+import org.jboss.pull.shared.connectors.github.MergedStateStore;
+import org.jboss.pull.shared.connectors.github.PullRequestCoordinates;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+/**
+ * Checks that the {@link MergedStateStore} answers from what it was told, also after being loaded again, and that
+ * {@link GithubHelper} only tells it what github actually answered.
+ */
+@Test
+public class MergedStateStoreTest {
+
+    private static final PullRequestCoordinates MERGED = new PullRequestCoordinates("wildfly", "wildfly", 10, null, null);
+    private static final PullRequestCoordinates CLOSED = new PullRequestCoordinates("wildfly", "wildfly", 11, null, null);
+
+    public void testStatesSurviveReload() throws Exception {
+        File file = File.createTempFile("merged", ".states");
+        file.deleteOnExit();
+
+        MergedStateStore store = MergedStateStore.loadMergedStateStore(file.getPath());
+        assertNull(store.isMerged(MERGED, new Date(1000L)));
+        store.setUnmerged(MERGED, new Date(1000L));
+        store.setMerged(MERGED);
+        store.setUnmerged(CLOSED, new Date(1000L));
+        store.setUnmerged(CLOSED, new Date(2000L));
+
+        store = MergedStateStore.loadMergedStateStore(file.getPath());
+        assertEquals(store.size(), 2);
+        assertEquals(store.isMerged(new PullRequestCoordinates("WildFly", "WildFly", 10, null, null), null),
+                Boolean.TRUE);
+        assertEquals(store.isMerged(CLOSED, new Date(2000L)), Boolean.FALSE);
+        // updated since it was checked
+        assertNull(store.isMerged(CLOSED, new Date(3000L)));
+    }
+
+    public void testMemoryOnly() {
+        MergedStateStore store = MergedStateStore.loadMergedStateStore(null);
+        store.setMerged(MERGED);
+        assertEquals(store.isMerged(MERGED, new Date()), Boolean.TRUE);
+    }
+
+    public void testFailedLookupNotRecorded() throws Exception {
+        final Date updatedAt = new Date(1000L);
+        PullRequest pullRequest = new PullRequest().setNumber(11).setState("closed").setUpdatedAt(updatedAt)
+                .setBase(new PullRequestMarker());
+
+        PullRequestService pullRequestService = mock(PullRequestService.class);
+        IssueService issueService = mock(IssueService.class);
+        when(pullRequestService.isMerged(any(IRepositoryIdProvider.class), anyInt())).thenThrow(
+                new IOException("502 Bad Gateway"));
+        when(issueService.getComments(any(IRepositoryIdProvider.class), anyInt())).thenReturn(new ArrayList<Comment>());
+
+        MergedStateStore store = MergedStateStore.loadMergedStateStore(null);
+        GithubHelper helper = new GithubHelper(pullRequestService, issueService, store);
+        assertFalse(helper.isMerged(pullRequest, CLOSED));
+        assertNull(store.isMerged(CLOSED, updatedAt));
+        assertEquals(store.size(), 0);
+
+        // once github answers, the state is remembered
+        pullRequestService = mock(PullRequestService.class);
+        when(pullRequestService.isMerged(any(IRepositoryIdProvider.class), anyInt())).thenReturn(false);
+        helper = new GithubHelper(pullRequestService, issueService, store);
+        assertFalse(helper.isMerged(pullRequest, CLOSED));
+        assertEquals(store.isMerged(CLOSED, updatedAt), Boolean.FALSE);
+    }
+
+    public void testMergedCommentNotRecorded() throws Exception {
+        final Date updatedAt = new Date(1000L);
+        PullRequest pullRequest = new PullRequest().setNumber(11).setState("closed").setUpdatedAt(updatedAt)
+                .setBase(new PullRequestMarker());
+
+        PullRequestService pullRequestService = mock(PullRequestService.class);
+        IssueService issueService = mock(IssueService.class);
+        when(pullRequestService.isMerged(any(IRepositoryIdProvider.class), anyInt())).thenReturn(false);
+        Comment comment = new Comment();
+        comment.setBody("Merged by hand, thanks");
+        when(issueService.getComments(any(IRepositoryIdProvider.class), anyInt())).thenReturn(Arrays.asList(comment));
+
+        MergedStateStore store = MergedStateStore.loadMergedStateStore(null);
+        GithubHelper helper = new GithubHelper(pullRequestService, issueService, store);
+        assertTrue(helper.isMerged(pullRequest, CLOSED));
+        // github's answer is what is remembered
+        assertEquals(store.isMerged(CLOSED, updatedAt), Boolean.FALSE);
+
+        // the comment is looked at again on every call
+        assertTrue(helper.isMerged(pullRequest, CLOSED));
+        when(issueService.getComments(any(IRepositoryIdProvider.class), anyInt())).thenReturn(new ArrayList<Comment>());
+        assertFalse(helper.isMerged(pullRequest, CLOSED));
+        verify(pullRequestService, times(1)).isMerged(any(IRepositoryIdProvider.class), anyInt());
+
+        // merged according to github
+        pullRequest.setUpdatedAt(new Date(2000L));
+        when(pullRequestService.isMerged(any(IRepositoryIdProvider.class), anyInt())).thenReturn(true);
+        assertTrue(helper.isMerged(pullRequest, CLOSED));
+        assertEquals(store.isMerged(CLOSED, null), Boolean.TRUE);
+    }
+}
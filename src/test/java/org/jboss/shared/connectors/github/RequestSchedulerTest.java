@@ -0,0 +1,71 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared.connectors.github;
+
+import org.jboss.pull.shared.connectors.github.GitHubBudgetExhaustedException;
+import org.jboss.pull.shared.connectors.github.RequestScheduler;
+import org.testng.annotations.Test;
+
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+/**
+ * Checks that the {@link RequestScheduler} keeps the reserves of the rate limit budget for the important calls.
+ */
+@Test
+public class RequestSchedulerTest {
+
+    public void testReservesKeptForImportantCalls() {
+        RequestScheduler scheduler = new RequestScheduler(5000, 10, 5, 20, 1000);
+        scheduler.update(response(10, System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(10)));
+
+        scheduler.acquire(RequestScheduler.Priority.INTERACTIVE);
+        scheduler.acquire(RequestScheduler.Priority.WRITE);
+        try {
+            scheduler.acquire(RequestScheduler.Priority.BACKGROUND);
+            fail("Background calls must not use the reserve");
+        } catch (GitHubBudgetExhaustedException expected) {
+            assertTrue(expected.getRetryAt().getTime() > System.currentTimeMillis());
+        }
+        assertEquals(scheduler.getRemaining(), 8);
+    }
+
+    public void testBudgetIsBackAfterReset() {
+        RequestScheduler scheduler = new RequestScheduler(5000, 10, 5, 20, 1000);
+        scheduler.update(response(0, System.currentTimeMillis() - 1000));
+
+        scheduler.acquire(RequestScheduler.Priority.BACKGROUND);
+        assertEquals(scheduler.getRemaining(), -1);
+    }
+
+    private static HttpURLConnection response(int remaining, long resetAt) {
+        HttpURLConnection response = mock(HttpURLConnection.class);
+        when(response.getHeaderField("X-RateLimit-Remaining")).thenReturn(String.valueOf(remaining));
+        when(response.getHeaderField("X-RateLimit-Reset")).thenReturn(
+                String.valueOf(TimeUnit.MILLISECONDS.toSeconds(resetAt)));
+        return response;
+    }
+}
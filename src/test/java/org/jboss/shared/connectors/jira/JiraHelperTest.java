@@ -0,0 +1,178 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared.connectors.jira;
+
+import org.codehaus.jettison.json.JSONArray;
+import org.codehaus.jettison.json.JSONException;
+import org.codehaus.jettison.json.JSONObject;
+import org.jboss.pull.shared.Constants;
+import org.jboss.pull.shared.connectors.jira.JiraHelper;
+import org.jboss.pull.shared.connectors.jira.JiraIssue;
+import org.testng.annotations.Test;
+
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks the bulk lookups of the {@link JiraHelper} against canned search results: the keys are split into queries
+ * fitting into the search URL, the pages of the results are all read, and an issue which cannot be read is left out
+ * rather than failing the others.
+ */
+@Test
+public class JiraHelperTest {
+
+    private static final String PM_ACK_FIELD = "customfield_12311242";
+    private static final String REQUESTED_FIELDS = "status,resolution,fixVersions," + PM_ACK_FIELD;
+
+    public void testSearchQueriesFitIntoUrl() throws Exception {
+        List<String> keys = new ArrayList<String>();
+        for (int i = 1; i <= 60; i++) {
+            keys.add("WFLY-" + i);
+        }
+        List<String> withDuplicates = new ArrayList<String>(keys);
+        withDuplicates.add("WFLY-1");
+
+        List<String> queries = new CannedJiraHelper(400, 1000).buildSearchQueries(withDuplicates);
+        assertTrue(queries.size() > 1, "Expected several queries: " + queries);
+        List<String> searched = new ArrayList<String>();
+        for (String jql : queries) {
+            assertTrue(searchUrl(jql).length() <= 400, "Too long: " + searchUrl(jql));
+            assertTrue(jql.startsWith("key in (") && jql.endsWith(")"), jql);
+            searched.addAll(Arrays.asList(jql.substring("key in (".length(), jql.length() - 1).split(",")));
+        }
+        // each key once, in the given order
+        assertEquals(searched, keys);
+
+        assertEquals(new CannedJiraHelper(10000, 1000).buildSearchQueries(withDuplicates).size(), 1);
+        assertTrue(new CannedJiraHelper(400, 1000).buildSearchQueries(Collections.<String>emptyList()).isEmpty());
+    }
+
+    public void testAllPagesRead() throws Exception {
+        CannedJiraHelper helper = new CannedJiraHelper(10000, 2);
+        for (int i = 1; i <= 5; i++) {
+            helper.addIssue(issue("WFLY-" + i, "Resolved", "+"));
+        }
+
+        Map<String, JiraIssue> issues = helper.findIssues(Arrays.asList("wfly-1", "WFLY-2", "WFLY-3", "WFLY-4", "WFLY-5"));
+        assertEquals(issues.size(), 5);
+        assertEquals(issues.get("WFLY-3").getStatus(), JiraIssue.IssueStatus.RESOLVED.toString());
+        assertEquals(helper.startAts, Arrays.asList(0, 2, 4));
+    }
+
+    public void testPagesReadPerQuery() throws Exception {
+        // room for two keys per query
+        CannedJiraHelper helper = new CannedJiraHelper(searchUrl("key in (WFLY-1,WFLY-2)").length() + 10, 1);
+        helper.addIssue(issue("WFLY-1", "Resolved", "+"));
+        helper.addIssue(issue("WFLY-2", "Open", "?"));
+        helper.addIssue(issue("WFLY-3", "Closed", "-"));
+
+        Map<String, JiraIssue> issues = helper.findIssues(Arrays.asList("WFLY-1", "WFLY-2", "WFLY-3"));
+        assertEquals(issues.keySet(), new HashSet<String>(Arrays.asList("WFLY-1", "WFLY-2", "WFLY-3")));
+        assertEquals(helper.queries, Arrays.asList("key in (WFLY-1,WFLY-2)", "key in (WFLY-3)"));
+        // two pages of the first query, one of the second
+        assertEquals(helper.startAts, Arrays.asList(0, 1, 0));
+    }
+
+    public void testUnreadableIssueLeftOut() throws Exception {
+        CannedJiraHelper helper = new CannedJiraHelper(10000, 1000);
+        helper.addIssue(issue("WFLY-1", "Resolved", "+"));
+        // a status JiraIssue doesn't know
+        helper.addIssue(issue("WFLY-2", "Waiting for Godot", "+"));
+        // no fields at all
+        helper.addIssue(new JSONObject("{\"key\": \"WFLY-3\"}"));
+        helper.addIssue(issue("WFLY-5", "Closed", "-"));
+
+        Map<String, JiraIssue> issues = helper.findIssues(Arrays.asList("WFLY-1", "WFLY-2", "WFLY-3", "WFLY-5"));
+        assertEquals(issues.size(), 2);
+        assertTrue(issues.containsKey("WFLY-1"));
+        assertFalse(issues.containsKey("WFLY-2"));
+        assertFalse(issues.containsKey("WFLY-3"));
+        assertTrue(issues.containsKey("WFLY-5"));
+    }
+
+    private static JSONObject issue(String key, String status, String pmAck) throws JSONException {
+        return new JSONObject("{\"key\":\"" + key + "\",\"fields\":{\"status\":{\"name\":\"" + status + "\"},"
+                + "\"resolution\":null,\"fixVersions\":[{\"name\":\"9.0.0.Final\"}],"
+                + "\"" + PM_ACK_FIELD + "\":{\"value\":\"" + pmAck + "\"}}}");
+    }
+
+    private static String searchUrl(String jql) throws Exception {
+        return Constants.JIRA_BASE + "/rest/api/2/search?jql=" + URLEncoder.encode(jql, "UTF-8")
+                + "&startAt=0&maxResults=1000&validateQuery=false&fields=" + URLEncoder.encode(REQUESTED_FIELDS, "UTF-8");
+    }
+
+    /**
+     * Serves the search results from the added issues, {@code pageSize} issues per page.
+     */
+    private static class CannedJiraHelper extends JiraHelper {
+        private final int pageSize;
+        private final Map<String, JSONObject> issues = new LinkedHashMap<String, JSONObject>();
+        private final List<String> queries = new ArrayList<String>();
+        private final List<Integer> startAts = new ArrayList<Integer>();
+
+        private CannedJiraHelper(int searchUrlLength, int pageSize) {
+            super(Collections.singletonMap("CDW pm_ack", PM_ACK_FIELD), searchUrlLength);
+            this.pageSize = pageSize;
+        }
+
+        private void addIssue(JSONObject issue) throws JSONException {
+            issues.put(issue.getString("key"), issue);
+        }
+
+        @Override
+        public List<String> buildSearchQueries(Collection<String> keys) {
+            return super.buildSearchQueries(keys);
+        }
+
+        @Override
+        protected JSONObject search(String jql, int startAt) throws JSONException {
+            if (!queries.contains(jql))
+                queries.add(jql);
+            startAts.add(startAt);
+
+            final List<JSONObject> found = new ArrayList<JSONObject>();
+            for (String key : jql.substring("key in (".length(), jql.length() - 1).split(",")) {
+                if (issues.containsKey(key.toUpperCase()))
+                    found.add(issues.get(key.toUpperCase()));
+            }
+            final JSONArray page = new JSONArray();
+            for (int i = startAt; i < Math.min(startAt + pageSize, found.size()); i++) {
+                page.put(found.get(i));
+            }
+            final JSONObject result = new JSONObject();
+            result.put("startAt", startAt);
+            result.put("maxResults", pageSize);
+            result.put("total", found.size());
+            result.put("issues", page);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared.connectors.jira;
+
+import com.atlassian.jira.rest.client.domain.BasicStatus;
+import com.atlassian.jira.rest.client.domain.Field;
+import com.atlassian.jira.rest.client.domain.Issue;
+import com.atlassian.jira.rest.client.domain.Version;
+import org.codehaus.jettison.json.JSONObject;
+import org.jboss.pull.shared.connectors.common.Flag;
+import org.jboss.pull.shared.connectors.jira.JiraIssue;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+/**
+ * Checks that a {@link JiraIssue} read from the raw JSON of a search result is the same as one built by the REST
+ * client, including option fields, null fields, custom fields JIRA doesn't know and a missing resolution.
+ */
+@Test
+public class JiraIssueJsonTest {
+
+    // a trimmed response of /rest/api/2/search
+    private static final String SEARCH_RESULT = "{\"expand\": \"schema,names\", \"startAt\": 0, \"maxResults\": 1000,"
+            + " \"total\": 1, \"issues\": [{"
+            + "  \"id\": \"12490541\", \"self\": \"https://issues.jboss.org/rest/api/2/issue/12490541\", \"key\": \"WFLY-10\","
+            + "  \"fields\": {"
+            + "    \"status\": {\"self\": \"https://issues.jboss.org/rest/api/2/status/10011\", \"name\": \"Pull Request Sent\","
+            + "                 \"id\": \"10011\"},"
+            + "    \"resolution\": null,"
+            + "    \"fixVersions\": [{\"id\": \"12323000\", \"name\": \"8.0.0.Final\", \"archived\": false, \"released\": true},"
+            + "                      {\"id\": \"12322999\", \"name\": \"8.0.0.CR1\", \"archived\": false, \"released\": true}],"
+            + "    \"customfield_12311240\": {\"self\": \"https://issues.jboss.org/rest/api/2/customFieldOption/13000\","
+            + "                               \"value\": \"+\", \"id\": \"13000\"},"
+            + "    \"customfield_12311241\": null,"
+            + "    \"customfield_12311242\": {\"value\": \"?\", \"id\": \"13002\"},"
+            + "    \"customfield_12311243\": \"-\","
+            + "    \"customfield_12311244\": 3"
+            + "  }"
+            + "}]}";
+
+    private static final Map<String, String> FIELD_IDS = new HashMap<String, String>();
+
+    static {
+        FIELD_IDS.put("CDW release", "customfield_12311240");
+        FIELD_IDS.put("CDW pm_ack", "customfield_12311241");
+        FIELD_IDS.put("CDW devel_ack", "customfield_12311242");
+        FIELD_IDS.put("CDW qa_ack", "customfield_12311243");
+        FIELD_IDS.put("CDW blocker", "customfield_12311244");
+        // no id for "CDW exception" nor "Target Release", the fields don't exist in this JIRA
+    }
+
+    public void testParsedFromSearchResult() throws Exception {
+        JiraIssue issue = parse();
+
+        assertEquals(issue.getNumber(), "WFLY-10");
+        assertEquals(issue.getStatus(), JiraIssue.IssueStatus.PULL_REQUEST_SENT.toString());
+        assertEquals(issue.getResolution(), "UNRESOLVED");
+        assertEquals(issue.getTargetRelease(), "UNSET");
+        assertEquals(issue.getFixVersions(), new TreeSet<String>(Arrays.asList("8.0.0.CR1", "8.0.0.Final")));
+        assertEquals(issue.getUrl().toString(), "https://issues.jboss.org/browse/WFLY-10");
+
+        assertEquals(issue.getFlags().size(), 6);
+        assertFlag(issue.getFlags().get(0), "CDW release", Flag.Status.POSITIVE);
+        // null
+        assertFlag(issue.getFlags().get(1), "CDW pm_ack", Flag.Status.UNKNOWN);
+        assertFlag(issue.getFlags().get(2), "CDW devel_ack", Flag.Status.UNSET);
+        // a plain string rather than an option
+        assertFlag(issue.getFlags().get(3), "CDW qa_ack", Flag.Status.NEGATIVE);
+        // not a flag status at all
+        assertFlag(issue.getFlags().get(4), "CDW blocker", Flag.Status.UNKNOWN);
+        // unknown field
+        assertFlag(issue.getFlags().get(5), "CDW exception", Flag.Status.UNKNOWN);
+    }
+
+    public void testSameAsFromRestClient() throws Exception {
+        JSONObject fields = new JSONObject(SEARCH_RESULT).getJSONArray("issues").getJSONObject(0).getJSONObject("fields");
+
+        Issue fromClient = mock(Issue.class);
+        BasicStatus status = mock(BasicStatus.class);
+        when(status.getName()).thenReturn("Pull Request Sent");
+        when(fromClient.getKey()).thenReturn("WFLY-10");
+        when(fromClient.getStatus()).thenReturn(status);
+        when(fromClient.getResolution()).thenReturn(null);
+        when(fromClient.getFixVersions()).thenReturn(Arrays.asList(version("8.0.0.Final"), version("8.0.0.CR1")));
+        for (Map.Entry<String, String> field : FIELD_IDS.entrySet()) {
+            Field value = field(fields.opt(field.getValue()));
+            when(fromClient.getFieldByName(field.getKey())).thenReturn(value);
+        }
+
+        JiraIssue expected = new JiraIssue(fromClient);
+        JiraIssue issue = parse();
+
+        assertEquals(issue.getNumber(), expected.getNumber());
+        assertEquals(issue.getStatus(), expected.getStatus());
+        assertEquals(issue.getResolution(), expected.getResolution());
+        assertEquals(issue.getTargetRelease(), expected.getTargetRelease());
+        assertEquals(issue.getFixVersions(), expected.getFixVersions());
+        assertEquals(issue.getUrl(), expected.getUrl());
+        assertEquals(issue.getFlags(), expected.getFlags());
+    }
+
+    private static JiraIssue parse() throws Exception {
+        return new JiraIssue(new JSONObject(SEARCH_RESULT).getJSONArray("issues").getJSONObject(0), FIELD_IDS);
+    }
+
+    private static void assertFlag(Flag flag, String name, Flag.Status status) {
+        assertEquals(flag.getName(), name);
+        assertEquals(flag.getStatus(), status);
+    }
+
+    private static Version version(String name) {
+        Version version = mock(Version.class);
+        when(version.getName()).thenReturn(name);
+        return version;
+    }
+
+    private static Field field(Object value) {
+        Field field = mock(Field.class);
+        // the REST client keeps JSON nulls as nulls
+        when(field.getValue()).thenReturn(value == JSONObject.NULL ? null : value);
+        return field;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared.evaluators;
+
+import org.jboss.pull.shared.connectors.RedhatPullRequest;
+import org.jboss.pull.shared.evaluators.BasePullEvaluator;
+import org.jboss.pull.shared.spi.PullEvaluator;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks that the {@link PullEvaluator.Mode#FAST_FAIL} mode runs the checks cheapest first and stops at the first
+ * failure, while the {@link PullEvaluator.Mode#DIAGNOSTIC} mode reports every check but the guards.
+ */
+@Test
+public class BasePullEvaluatorTest {
+
+    private static class RecordingEvaluator extends BasePullEvaluator {
+        private final List<String> run = new ArrayList<String>();
+
+        private Check check(final String name, Cost cost, boolean guard, final boolean passes) {
+            return new Check(name, cost, guard) {
+                @Override
+                protected Result check(RedhatPullRequest pull) {
+                    run.add(name);
+                    return new Result(passes, (passes ? "+ " : "- ") + name);
+                }
+            };
+        }
+
+        @Override
+        protected List<Check> createChecks() {
+            return new ArrayList<Check>(Arrays.asList(
+                    check("review", Cost.REMOTE, false, false),
+                    check("upstream", Cost.REMOTE, false, true),
+                    check("bugzilla", Cost.CACHED, false, true),
+                    check("bug reference", Cost.DESCRIPTION, true, true)));
+        }
+    }
+
+    private RecordingEvaluator createEvaluator() {
+        Properties configuration = new Properties();
+        configuration.setProperty("eap6.issue.fix.version", "6.3.0");
+        configuration.setProperty("eap6.github.branch", "6.x");
+        configuration.setProperty("eap6.github.organization.upstream", "wildfly");
+        configuration.setProperty("eap6.github.repo.upstream", "wildfly");
+        configuration.setProperty("eap6.github.branch.upstream", "master");
+
+        RecordingEvaluator evaluator = new RecordingEvaluator();
+        evaluator.init(null, configuration, "eap6");
+        return evaluator;
+    }
+
+    public void testFastFailRunsCheapestFirst() {
+        RecordingEvaluator evaluator = createEvaluator();
+        PullEvaluator.Result result = evaluator.isMergeable(null, PullEvaluator.Mode.FAST_FAIL);
+
+        assertFalse(result.isMergeable());
+        // upstream is not run after the review failed
+        assertEquals(evaluator.run, Arrays.asList("bug reference", "bugzilla", "review"));
+        assertEquals(result.getDescription(), Arrays.asList("+ bug reference", "+ bugzilla", "- review"));
+    }
+
+    public void testDiagnosticRunsAllButGuards() {
+        RecordingEvaluator evaluator = createEvaluator();
+        PullEvaluator.Result result = evaluator.isMergeable(null);
+
+        assertFalse(result.isMergeable());
+        assertEquals(evaluator.run, Arrays.asList("review", "upstream", "bugzilla"));
+        assertEquals(result.getDescription(), Arrays.asList("- review", "+ upstream", "+ bugzilla"));
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared.evaluators;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.jboss.pull.shared.PullHelper;
+import org.jboss.pull.shared.connectors.RedhatPullRequest;
+import org.jboss.pull.shared.connectors.bugzilla.BZHelper;
+import org.jboss.pull.shared.connectors.common.ConcurrencyLimiter;
+import org.jboss.pull.shared.connectors.common.Issue;
+import org.jboss.pull.shared.connectors.github.GithubHelper;
+import org.jboss.pull.shared.connectors.github.PullRequestCoordinates;
+import org.jboss.pull.shared.connectors.jira.JiraHelper;
+import org.jboss.pull.shared.evaluators.EvaluationCache;
+import org.jboss.pull.shared.spi.PullEvaluator;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+/**
+ * Checks that the {@link EvaluationCache} reuses a result only for the same fingerprint and counts what it saved.
+ */
+@Test
+public class EvaluationCacheTest {
+
+    private static final PullRequestCoordinates PULL = new PullRequestCoordinates("jbossas", "jboss-eap", 1, null, null);
+    private static final PullRequestCoordinates OTHER = new PullRequestCoordinates("jbossas", "jboss-eap", 2, null, null);
+
+    public void testReusedForSameFingerprint() {
+        EvaluationCache cache = new EvaluationCache(10);
+        assertNull(cache.get(PULL, "sha1 1000", PullEvaluator.Mode.DIAGNOSTIC));
+        cache.put(PULL, "sha1 1000", new PullEvaluator.Result(true, "+ Pull request has been reviewed"),
+                PullEvaluator.Mode.DIAGNOSTIC, 3);
+
+        PullEvaluator.Result result = cache.get(PULL, "sha1 1000", PullEvaluator.Mode.DIAGNOSTIC);
+        assertNotNull(result);
+        assertTrue(result.isMergeable());
+        assertEquals(result.getDescription().size(), 1);
+
+        // a new commit, comment or issue change
+        assertNull(cache.get(PULL, "sha2 2000", PullEvaluator.Mode.DIAGNOSTIC));
+        assertNull(cache.get(OTHER, "sha1 1000", PullEvaluator.Mode.DIAGNOSTIC));
+
+        assertEquals(cache.getHits(), 1);
+        assertEquals(cache.getMisses(), 3);
+        assertEquals(cache.getSavedCalls(), 3);
+        assertEquals(cache.getHitRate(), 0.25, 0.001);
+    }
+
+    public void testCachedResultIsCopied() {
+        EvaluationCache cache = new EvaluationCache(10);
+        PullEvaluator.Result result = new PullEvaluator.Result(true);
+        cache.put(PULL, "fp", result, PullEvaluator.Mode.DIAGNOSTIC, 0);
+        result.and(new PullEvaluator.Result(false, "- changed by the caller"));
+
+        cache.get(PULL, "fp", PullEvaluator.Mode.DIAGNOSTIC).addDescription("changed by the caller");
+        PullEvaluator.Result cached = cache.get(PULL, "fp", PullEvaluator.Mode.DIAGNOSTIC);
+        assertTrue(cached.isMergeable());
+        assertTrue(cached.getDescription().isEmpty());
+    }
+
+    public void testFastFailResultLacksDescriptions() {
+        EvaluationCache cache = new EvaluationCache(10);
+        cache.put(PULL, "failed", new PullEvaluator.Result(false, "- Missing any bugzilla bug"),
+                PullEvaluator.Mode.FAST_FAIL, 0);
+        assertNotNull(cache.get(PULL, "failed", PullEvaluator.Mode.FAST_FAIL));
+        assertNull(cache.get(PULL, "failed", PullEvaluator.Mode.DIAGNOSTIC));
+
+        // every check passed
+        cache.put(PULL, "passed", new PullEvaluator.Result(true), PullEvaluator.Mode.FAST_FAIL, 0);
+        assertNotNull(cache.get(PULL, "passed", PullEvaluator.Mode.DIAGNOSTIC));
+    }
+
+    public void testLeastRecentlyUsedEvicted() {
+        EvaluationCache cache = new EvaluationCache(1);
+        cache.put(PULL, "fp", new PullEvaluator.Result(true), PullEvaluator.Mode.DIAGNOSTIC, 0);
+        cache.put(OTHER, "fp", new PullEvaluator.Result(true), PullEvaluator.Mode.DIAGNOSTIC, 0);
+        assertEquals(cache.size(), 1);
+        assertNull(cache.get(PULL, "fp", PullEvaluator.Mode.DIAGNOSTIC));
+        assertNotNull(cache.get(OTHER, "fp", PullEvaluator.Mode.DIAGNOSTIC));
+    }
+
+    public void testCallsCountedPerThread() throws Exception {
+        final ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 0);
+        final long before = ConcurrencyLimiter.getCurrentThreadCalls();
+        limiter.acquire();
+        limiter.release();
+
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                limiter.acquire();
+                limiter.release();
+            }
+        };
+        other.start();
+        other.join();
+
+        assertEquals(ConcurrencyLimiter.getCurrentThreadCalls() - before, 1);
+        assertEquals(limiter.getCalls(), 2);
+    }
+
+    public void testRelatedFetchedOnlyIfEvaluationNeededThem() {
+        GithubHelper github = mock(GithubHelper.class);
+        PullRequest upstream = new PullRequest();
+        upstream.setUrl("https://api.github.com/repos/wildfly/wildfly/pulls/5");
+        upstream.setNumber(5);
+        upstream.setState("open");
+        when(github.getPullRequest(any(PullRequestCoordinates.class))).thenReturn(upstream);
+
+        EvaluationCache cache = new EvaluationCache(10);
+        CountingEvaluator descriptionOnly = new CountingEvaluator(false);
+        cache.evaluate(pullRequest(github), descriptionOnly, PullEvaluator.Mode.FAST_FAIL);
+        cache.evaluate(pullRequest(github), descriptionOnly, PullEvaluator.Mode.FAST_FAIL);
+        assertEquals(descriptionOnly.evaluations, 1);
+        verify(github, never()).getPullRequest(any(PullRequestCoordinates.class));
+
+        // the upstream pull request is fetched again to tell whether the result still holds
+        CountingEvaluator byUpstream = new CountingEvaluator(true);
+        cache.clear();
+        cache.evaluate(pullRequest(github), byUpstream, PullEvaluator.Mode.FAST_FAIL);
+        cache.evaluate(pullRequest(github), byUpstream, PullEvaluator.Mode.FAST_FAIL);
+        assertEquals(byUpstream.evaluations, 1);
+        verify(github, times(2)).getPullRequest(any(PullRequestCoordinates.class));
+
+        upstream.setState("closed");
+        cache.evaluate(pullRequest(github), byUpstream, PullEvaluator.Mode.FAST_FAIL);
+        assertEquals(byUpstream.evaluations, 2);
+    }
+
+    public void testResultOfFailedLookupNotCached() {
+        GithubHelper github = mock(GithubHelper.class);
+        EvaluationCache cache = new EvaluationCache(10);
+        CountingEvaluator failedLookup = new CountingEvaluator(false) {
+            @Override
+            public Result isMergeable(RedhatPullRequest pull) {
+                Result result = super.isMergeable(pull);
+                result.setCacheable(false);
+                return result;
+            }
+        };
+        cache.evaluate(pullRequest(github), failedLookup, PullEvaluator.Mode.FAST_FAIL);
+        PullEvaluator.Result result = cache.evaluate(pullRequest(github), failedLookup, PullEvaluator.Mode.FAST_FAIL);
+        assertEquals(failedLookup.evaluations, 2);
+        assertFalse(result.isCacheable());
+        assertEquals(cache.size(), 0);
+
+        // one lookup failing is enough
+        PullEvaluator.Result combined = new PullEvaluator.Result(true).and(result);
+        assertFalse(combined.isCacheable());
+        assertFalse(new PullEvaluator.Result(combined).isCacheable());
+    }
+
+    private static RedhatPullRequest pullRequest(GithubHelper github) {
+        PullRequest pr = new PullRequest();
+        pr.setUrl("https://api.github.com/repos/jbossas/jboss-eap/pulls/1");
+        pr.setNumber(1);
+        pr.setBody("Upstream: https://github.com/wildfly/wildfly/pull/5");
+        return new RedhatPullRequest(pr, mock(BZHelper.class), mock(JiraHelper.class), github);
+    }
+
+    private static class CountingEvaluator implements PullEvaluator {
+        private final boolean readsUpstream;
+        private int evaluations;
+
+        private CountingEvaluator(boolean readsUpstream) {
+            this.readsUpstream = readsUpstream;
+        }
+
+        @Override
+        public void init(PullHelper helper, Properties configuration, String version) {
+        }
+
+        @Override
+        public String getTargetBranch() {
+            return "6.x";
+        }
+
+        @Override
+        public Result isMergeable(RedhatPullRequest pull) {
+            evaluations++;
+            if (readsUpstream)
+                return new Result(!pull.getRelatedPullRequests().isEmpty());
+            return new Result(false, "- Missing any bugzilla bug");
+        }
+
+        @Override
+        public List<? extends Issue> getIssue(RedhatPullRequest pull) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<RedhatPullRequest> getUpstreamPullRequest(RedhatPullRequest pull) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean updateIssueAsMerged(RedhatPullRequest pull) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared.evaluators;
+
+import org.jboss.pull.shared.PullHelper;
+import org.jboss.pull.shared.connectors.RedhatPullRequest;
+import org.jboss.pull.shared.evaluators.EvaluationContext;
+import org.jboss.pull.shared.evaluators.PullEvaluatorFacade;
+import org.jboss.pull.shared.evaluators.RuleBasedPullEvaluator;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.*;
+
+/**
+ * Checks that the {@link EvaluationContext} computes each value of a pull request once, also for concurrent callers,
+ * doesn't keep failures, and that the {@link PullEvaluatorFacade} discards it when the cycle ends.
+ */
+@Test
+public class EvaluationContextTest {
+
+    private static Callable<String> counting(final AtomicInteger calls, final String value) {
+        return new Callable<String>() {
+            @Override
+            public String call() {
+                calls.incrementAndGet();
+                return value;
+            }
+        };
+    }
+
+    public void testComputedOncePerPullRequest() {
+        RedhatPullRequest first = mock(RedhatPullRequest.class);
+        RedhatPullRequest second = mock(RedhatPullRequest.class);
+        EvaluationContext context = new EvaluationContext();
+        AtomicInteger calls = new AtomicInteger();
+
+        assertEquals(context.get(first, "bugs 6.4.0", counting(calls, "a")), "a");
+        assertEquals(context.get(first, "bugs 6.4.0", counting(calls, "b")), "a");
+        assertEquals(context.get(first, "bugs 6.3.0", counting(calls, "c")), "c");
+        assertEquals(context.get(second, "bugs 6.4.0", counting(calls, "d")), "d");
+        // no comment is a value too
+        assertNull(context.get(first, "comment", counting(calls, null)));
+        assertNull(context.get(first, "comment", counting(calls, "e")));
+
+        assertEquals(calls.get(), 4);
+        assertEquals(context.getHits(), 2);
+        assertEquals(context.size(), 2);
+    }
+
+    public void testFailureNotKept() {
+        RedhatPullRequest pull = mock(RedhatPullRequest.class);
+        EvaluationContext context = new EvaluationContext();
+        try {
+            context.get(pull, "merged", new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    throw new IllegalStateException("github is down");
+                }
+            });
+            fail("The failure must be passed on");
+        } catch (IllegalStateException expected) {
+        }
+
+        assertEquals(context.get(pull, "merged", new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return Boolean.TRUE;
+            }
+        }), Boolean.TRUE);
+    }
+
+    public void testConcurrentCallersWait() throws Exception {
+        final RedhatPullRequest pull = mock(RedhatPullRequest.class);
+        final EvaluationContext context = new EvaluationContext();
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    context.get(pull, "upstream", counting(calls, "upstream"));
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(calls.get(), 1);
+    }
+
+    public void testCycleEnds() throws Exception {
+        Properties configuration = new Properties();
+        configuration.setProperty("versions", "eap640");
+        configuration.setProperty("eap640.evaluator", RuleBasedPullEvaluator.class.getName());
+        configuration.setProperty("eap640.issue.fix.version", "6.4.0");
+        configuration.setProperty("eap640.github.branch", "6.x");
+        configuration.setProperty("eap640.github.organization.upstream", "wildfly");
+        configuration.setProperty("eap640.github.repo.upstream", "wildfly");
+        configuration.setProperty("eap640.github.branch.upstream", "master");
+        configuration.setProperty("eap640.rules", "review");
+        final PullEvaluatorFacade facade = new PullEvaluatorFacade(mock(PullHelper.class), configuration);
+
+        final EvaluationContext first = facade.beginCycle();
+        first.get(mock(RedhatPullRequest.class), "merged", counting(new AtomicInteger(), "merged"));
+        try {
+            facade.beginCycle();
+            fail("Cycles of a thread don't nest");
+        } catch (IllegalStateException expected) {
+        }
+
+        // the cycle of another thread is its own and doesn't end this one
+        final EvaluationContext[] other = new EvaluationContext[2];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                other[0] = facade.getContext();
+                EvaluationContext cycle = facade.beginCycle();
+                facade.endCycle(cycle);
+                other[1] = facade.getContext();
+            }
+        };
+        thread.start();
+        thread.join();
+        assertNull(other[0]);
+        assertNull(other[1]);
+        assertSame(facade.getContext(), first);
+        assertEquals(first.size(), 1);
+
+        facade.evaluateAffected(Arrays.asList("953471"));
+        assertSame(facade.getContext(), first);
+
+        facade.endCycle(first);
+        assertNull(facade.getContext());
+        assertEquals(first.size(), 0);
+        // evaluated in a cycle of their own
+        facade.evaluateAffected(Arrays.asList("953471"));
+        assertNull(facade.getContext());
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared.evaluators;
+
+import org.jboss.pull.shared.PullHelper;
+import org.jboss.pull.shared.connectors.RedhatPullRequest;
+import org.jboss.pull.shared.connectors.common.Issue;
+import org.jboss.pull.shared.evaluators.PullEvaluatorFacade;
+import org.jboss.pull.shared.spi.PullEvaluator;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.*;
+
+/**
+ * Checks that {@link PullEvaluatorFacade#evaluateAll(java.util.Collection)} returns the evaluations in the order of
+ * the pull requests however the parallel evaluations finish, and records a failure without affecting the others.
+ */
+@Test
+public class PullEvaluatorFacadeTest {
+
+    public void testEvaluationsInOrderOfPullRequests() {
+        Properties configuration = new Properties();
+        configuration.setProperty("versions", "eap640");
+        configuration.setProperty("eap640.evaluator", OutOfOrderEvaluator.class.getName());
+        configuration.setProperty(PullEvaluatorFacade.EVALUATION_THREADS_PROPERTY, "4");
+        configuration.setProperty(PullEvaluatorFacade.EVALUATION_CACHE_SIZE_PROPERTY, "0");
+        PullEvaluatorFacade facade = new PullEvaluatorFacade(mock(PullHelper.class), configuration);
+
+        OutOfOrderEvaluator.reset();
+        List<RedhatPullRequest> pulls = Arrays.asList(pull(1), pull(2), pull(3), pull(4));
+        List<PullEvaluatorFacade.Evaluation> evaluations = facade.evaluateAll(pulls);
+
+        // the first one waited for the third one to finish
+        assertTrue(OutOfOrderEvaluator.finished.indexOf(3) < OutOfOrderEvaluator.finished.indexOf(1));
+        assertEquals(evaluations.size(), 4);
+        for (int i = 0; i < pulls.size(); i++) {
+            assertSame(evaluations.get(i).getPullRequest(), pulls.get(i));
+        }
+
+        assertFalse(evaluations.get(0).isFailed());
+        assertTrue(evaluations.get(0).getResult().isMergeable());
+        assertTrue(evaluations.get(1).isFailed());
+        assertNull(evaluations.get(1).getResult());
+        assertEquals(evaluations.get(1).getFailure().getMessage(), "Cannot evaluate pull request 2");
+        assertFalse(evaluations.get(2).isFailed());
+        assertFalse(evaluations.get(2).getResult().isMergeable());
+        assertFalse(evaluations.get(3).isFailed());
+        assertTrue(evaluations.get(3).getResult().isMergeable());
+    }
+
+    private static RedhatPullRequest pull(int number) {
+        RedhatPullRequest pull = mock(RedhatPullRequest.class);
+        when(pull.getNumber()).thenReturn(number);
+        when(pull.getTargetBranchTitle()).thenReturn("6.x");
+        return pull;
+    }
+
+    /**
+     * The evaluation of #1 waits for #3 to finish, #2 fails and the odd ones are mergeable.
+     */
+    public static class OutOfOrderEvaluator implements PullEvaluator {
+        private static CountDownLatch thirdFinished;
+        private static List<Integer> finished;
+
+        private static void reset() {
+            thirdFinished = new CountDownLatch(1);
+            finished = Collections.synchronizedList(new ArrayList<Integer>());
+        }
+
+        @Override
+        public void init(PullHelper helper, Properties configuration, String version) {
+        }
+
+        @Override
+        public String getTargetBranch() {
+            return "6.x";
+        }
+
+        @Override
+        public Result isMergeable(RedhatPullRequest pull) {
+            try {
+                if (pull.getNumber() == 1 && !thirdFinished.await(10, TimeUnit.SECONDS))
+                    throw new IllegalStateException("The third pull request wasn't evaluated");
+                if (pull.getNumber() == 2)
+                    throw new IllegalStateException("Cannot evaluate pull request 2");
+                return new Result(pull.getNumber() != 3);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                finished.add(pull.getNumber());
+                if (pull.getNumber() == 3)
+                    thirdFinished.countDown();
+            }
+        }
+
+        @Override
+        public List<? extends Issue> getIssue(RedhatPullRequest pull) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<RedhatPullRequest> getUpstreamPullRequest(RedhatPullRequest pull) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public boolean updateIssueAsMerged(RedhatPullRequest pull) {
+            return false;
+        }
+    }
+}
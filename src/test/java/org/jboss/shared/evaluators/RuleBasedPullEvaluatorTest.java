@@ -0,0 +1,123 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.jboss.shared.evaluators;
+
+import org.eclipse.egit.github.core.PullRequest;
+import org.jboss.pull.shared.connectors.RedhatPullRequest;
+import org.jboss.pull.shared.connectors.bugzilla.BZHelper;
+import org.jboss.pull.shared.connectors.github.GithubHelper;
+import org.jboss.pull.shared.connectors.jira.JiraHelper;
+import org.jboss.pull.shared.evaluators.RuleBasedPullEvaluator;
+import org.jboss.pull.shared.spi.PullEvaluator;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.mockito.Mockito.mock;
+import static org.testng.Assert.*;
+
+/**
+ * Checks that the {@link RuleBasedPullEvaluator} compiles the declared rules into predicates shared through a table and evaluates
+ * them without remote calls when the description already fails them.
+ */
+@Test
+public class RuleBasedPullEvaluatorTest {
+
+    private RuleBasedPullEvaluator createEvaluator(String version, String rules, String flags) {
+        return createEvaluator(new RuleBasedPullEvaluator.PredicateTable(), version, rules, flags);
+    }
+
+    private RuleBasedPullEvaluator createEvaluator(RuleBasedPullEvaluator.PredicateTable predicates, String version,
+                                                   String rules, String flags) {
+        Properties configuration = new Properties();
+        configuration.setProperty(version + ".issue.fix.version", "6.4.0");
+        configuration.setProperty(version + ".github.branch", "6.x");
+        configuration.setProperty(version + ".github.organization.upstream", "wildfly");
+        configuration.setProperty(version + ".github.repo.upstream", "wildfly");
+        configuration.setProperty(version + ".github.branch.upstream", "master");
+        configuration.setProperty(version + ".rules", rules);
+        configuration.setProperty(version + ".required.flags", flags);
+
+        RuleBasedPullEvaluator evaluator = new RuleBasedPullEvaluator();
+        evaluator.setPredicateTable(predicates);
+        evaluator.init(null, configuration, version);
+        return evaluator;
+    }
+
+    private RedhatPullRequest pullRequest(String body) {
+        PullRequest pr = new PullRequest();
+        pr.setUrl("https://api.github.com/repos/jbossas/jboss-eap/pulls/1");
+        pr.setNumber(1);
+        pr.setBody(body);
+        return new RedhatPullRequest(pr, mock(BZHelper.class), mock(JiraHelper.class), mock(GithubHelper.class));
+    }
+
+    public void testPredicatesShared() {
+        RuleBasedPullEvaluator.PredicateTable predicates = new RuleBasedPullEvaluator.PredicateTable();
+        RuleBasedPullEvaluator first = createEvaluator(predicates, "eap640", "review, upstream, fix.version, flags",
+                "pm_ack");
+        RuleBasedPullEvaluator same = createEvaluator(predicates, "eap641", "flags fix.version upstream review",
+                "pm_ack");
+        RuleBasedPullEvaluator other = createEvaluator(predicates, "eap650", "review, upstream, flags",
+                "pm_ack, qa_ack");
+
+        assertSame(first.getPolicy(), same.getPolicy());
+        assertNotSame(first.getPolicy(), other.getPolicy());
+        // the review and upstream predicates are the same, the bugzilla ones differ
+        assertSame(first.getPolicy().getChildren().get(0), other.getPolicy().getChildren().get(0));
+        assertSame(first.getPolicy().getChildren().get(2), other.getPolicy().getChildren().get(2));
+        assertNotSame(first.getPolicy().getChildren().get(4), other.getPolicy().getChildren().get(4));
+
+        // nothing is shared with the evaluators of another table
+        RuleBasedPullEvaluator elsewhere = createEvaluator("eap640", "review, upstream, fix.version, flags", "pm_ack");
+        assertEquals(elsewhere.getPolicy().getKey(), first.getPolicy().getKey());
+        assertNotSame(elsewhere.getPolicy(), first.getPolicy());
+    }
+
+    public void testUnknownRule() {
+        try {
+            createEvaluator("eap640", "review, reviewed", "pm_ack");
+            fail("Unknown rules must be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testFastFailOnDescription() {
+        RuleBasedPullEvaluator evaluator = createEvaluator("eap640", "review, upstream, fix.version", "pm_ack");
+
+        // neither the review comment nor the upstream pull request are looked for
+        PullEvaluator.Result result = evaluator.isMergeable(pullRequest("Nothing referenced."),
+                PullEvaluator.Mode.FAST_FAIL);
+        assertFalse(result.isMergeable());
+        assertEquals(result.getDescription(), Collections.singletonList("- Missing any upstream pull request"));
+    }
+
+    public void testDiagnosticReportsBugzilla() {
+        RuleBasedPullEvaluator evaluator = createEvaluator("eap640", "fix.version, flags", "pm_ack");
+
+        PullEvaluator.Result result = evaluator.isMergeable(pullRequest("Nothing referenced."));
+        assertFalse(result.isMergeable());
+        assertEquals(result.getDescription(), Arrays.asList("- Missing any bugzilla bug"));
+    }
+}